@@ -18,16 +18,28 @@
 package com.airbus_cyber_security.graylog.wizard;
 
 import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ListConditionPlanner;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ListConditionSampleRecorder;
+import com.airbus_cyber_security.graylog.wizard.alert.jobs.AlertRuleJobPoller;
 import com.airbus_cyber_security.graylog.wizard.alert.rest.AlertRuleResource;
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleViewCache;
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleViewReconciler;
+import com.airbus_cyber_security.graylog.wizard.alert.views.EventDefinitionWatcher;
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleViewService;
 import com.airbus_cyber_security.graylog.wizard.audit.AlertWizardAuditEventTypes;
+import com.airbus_cyber_security.graylog.wizard.config.AlertWizardPluginConfiguration;
 import com.airbus_cyber_security.graylog.wizard.config.rest.AlertWizardConfigResource;
+import com.airbus_cyber_security.graylog.wizard.database.LookupCacheUpdater;
 import com.airbus_cyber_security.graylog.wizard.list.business.AlertListService;
+import com.airbus_cyber_security.graylog.wizard.list.functions.AlertListValues;
+import com.airbus_cyber_security.graylog.wizard.list.functions.AlertListValuesLoader;
+import com.airbus_cyber_security.graylog.wizard.list.functions.ListConditionSampler;
+import com.airbus_cyber_security.graylog.wizard.list.functions.WizardInListFunction;
 import com.airbus_cyber_security.graylog.wizard.list.rest.AlertListResource;
 import com.airbus_cyber_security.graylog.wizard.permissions.AlertRuleRestPermissions;
 import org.graylog2.plugin.PluginConfigBean;
 import org.graylog2.plugin.PluginModule;
 
-import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -41,13 +53,26 @@ public class AlertWizardModule extends PluginModule {
      */
     @Override
     public Set<? extends PluginConfigBean> getConfigBeans() {
-        return Collections.emptySet();
+        return Set.of(new AlertWizardPluginConfiguration());
     }
 
     @Override
     protected void configure() {
     	bind(AlertRuleService.class);
         bind(AlertListService.class);
+        // eagerly instantiated so that they subscribe to stream and rule changes at startup
+        bind(AlertRuleViewService.class).asEagerSingleton();
+        bind(AlertRuleViewCache.class).asEagerSingleton();
+        bind(AlertListValues.class).asEagerSingleton();
+        addPeriodical(AlertRuleViewReconciler.class);
+        addPeriodical(EventDefinitionWatcher.class);
+        addPeriodical(AlertRuleJobPoller.class);
+        addPeriodical(LookupCacheUpdater.class);
+        addPeriodical(AlertListValuesLoader.class);
+        addPeriodical(ListConditionPlanner.class);
+        addPeriodical(ListConditionSampleRecorder.class);
+        addMessageFilter(ListConditionSampler.class);
+        addMessageProcessorFunction(WizardInListFunction.NAME, WizardInListFunction.class);
 
         addPermissions(AlertRuleRestPermissions.class);
         addRestResource(AlertRuleResource.class);
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPatterns;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleDeletion;
+import com.airbus_cyber_security.graylog.wizard.alert.model.FieldRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.Pipeline;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ProvisionedEntities;
+import com.airbus_cyber_security.graylog.wizard.alert.model.TriggeringConditions;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.AlertRuleDeletionCollection;
+import com.airbus_cyber_security.graylog.wizard.list.utilities.AlertListUtilsService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deletes several rules at once: the identifiers of all their Graylog entities are gathered first, then each type of
+ * entity is deleted in turn. The usage of each list is updated once, by the sum of the changes of all the rules.
+ *
+ * The stream events are posted through the {@link ClusterEventPublisher}, so that they are coalesced when the caller
+ * opened a batch.
+ */
+public class AlertRuleDeletionService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertRuleDeletionService.class);
+
+    private final AlertRuleService alertRuleService;
+    private final AlertRuleDeletionCollection alertRuleDeletionCollection;
+    private final StreamPipelineService streamPipelineService;
+    private final EventDefinitionService eventDefinitionService;
+    private final NotificationService notificationService;
+    private final AlertListUtilsService alertListUtilsService;
+
+    @Inject
+    public AlertRuleDeletionService(AlertRuleService alertRuleService,
+                                    AlertRuleDeletionCollection alertRuleDeletionCollection,
+                                    StreamPipelineService streamPipelineService,
+                                    EventDefinitionService eventDefinitionService,
+                                    NotificationService notificationService,
+                                    AlertListUtilsService alertListUtilsService) {
+        this.alertRuleService = alertRuleService;
+        this.alertRuleDeletionCollection = alertRuleDeletionCollection;
+        this.streamPipelineService = streamPipelineService;
+        this.eventDefinitionService = eventDefinitionService;
+        this.notificationService = notificationService;
+        this.alertListUtilsService = alertListUtilsService;
+    }
+
+    /**
+     * Deletes the entities an interrupted background job created before it could save its rule.
+     * Entities which are already gone are skipped, so that the cleanup can itself be replayed.
+     */
+    public void delete(ProvisionedEntities entities) {
+        this.streamPipelineService.deleteStreams(entities.streams());
+        this.streamPipelineService.deletePipelines(entities.pipelines(), entities.rules());
+        for (String eventIdentifier: entities.eventDefinitions()) {
+            try {
+                this.eventDefinitionService.delete(eventIdentifier);
+            } catch (RuntimeException e) {
+                LOG.debug("Couldn't delete the event definition {}", eventIdentifier, e);
+            }
+        }
+        for (String notificationIdentifier: entities.notifications()) {
+            try {
+                this.notificationService.delete(notificationIdentifier);
+            } catch (RuntimeException e) {
+                LOG.debug("Couldn't delete the notification {}", notificationIdentifier, e);
+            }
+        }
+        Map<String, Integer> listsUsage = new HashMap<>();
+        for (String listTitle: entities.lists()) {
+            listsUsage.merge(listTitle, -1, Integer::sum);
+        }
+        this.alertListUtilsService.updateUsage(listsUsage);
+    }
+
+    /**
+     * Returns the titles of the deleted rules.
+     */
+    public List<String> delete(List<AlertRule> alerts) {
+        Set<String> streamIdentifiers = new LinkedHashSet<>();
+        List<Pipeline> pipelines = new ArrayList<>();
+        Set<String> eventIdentifiers = new LinkedHashSet<>();
+        Set<String> notificationIdentifiers = new LinkedHashSet<>();
+        Map<String, Integer> listsUsage = new HashMap<>();
+        for (AlertRule alert: alerts) {
+            for (TriggeringConditions conditions: AlertPatterns.getConditions(alert.pattern())) {
+                addIfPresent(streamIdentifiers, conditions.filteringStreamIdentifier());
+                addIfPresent(streamIdentifiers, conditions.outputStreamIdentifier());
+                Pipeline pipeline = conditions.pipeline();
+                if (pipeline == null) {
+                    continue;
+                }
+                pipelines.add(pipeline);
+                if (pipeline.fieldRules() == null) {
+                    continue;
+                }
+                for (FieldRule fieldRule: pipeline.fieldRules()) {
+                    listsUsage.merge(fieldRule.getValue(), -1, Integer::sum);
+                }
+            }
+            for (String eventIdentifier: AlertPatterns.getEventIdentifiers(alert.pattern())) {
+                addIfPresent(eventIdentifiers, eventIdentifier);
+            }
+            addIfPresent(notificationIdentifiers, alert.getNotificationID());
+        }
+
+        // entities are deleted best-effort: a failure leaves an orphan entity, but the rules are still deleted below
+        try {
+            this.streamPipelineService.deleteStreams(streamIdentifiers);
+        } catch (RuntimeException e) {
+            LOG.warn("Couldn't delete the streams {}", streamIdentifiers, e);
+        }
+        // Graylog has no bulk deletion for pipelines, rules, event definitions and notifications
+        List<String> pipelineIdentifiers = new ArrayList<>();
+        List<String> ruleIdentifiers = new ArrayList<>();
+        for (Pipeline pipeline: pipelines) {
+            pipelineIdentifiers.add(pipeline.identifier());
+            ruleIdentifiers.add(pipeline.ruleIdentifier());
+        }
+        try {
+            this.streamPipelineService.deletePipelines(pipelineIdentifiers, ruleIdentifiers);
+        } catch (RuntimeException e) {
+            LOG.warn("Couldn't delete the pipelines {}", pipelineIdentifiers, e);
+        }
+        for (String eventIdentifier: eventIdentifiers) {
+            try {
+                this.eventDefinitionService.delete(eventIdentifier);
+            } catch (RuntimeException e) {
+                LOG.warn("Couldn't delete the event definition {}", eventIdentifier, e);
+            }
+        }
+        for (String notificationIdentifier: notificationIdentifiers) {
+            try {
+                this.notificationService.delete(notificationIdentifier);
+            } catch (RuntimeException e) {
+                LOG.warn("Couldn't delete the notification {}", notificationIdentifier, e);
+            }
+        }
+        this.alertListUtilsService.updateUsage(listsUsage);
+
+        List<String> titles = new ArrayList<>();
+        List<AlertRuleDeletion> deletions = new ArrayList<>();
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+        for (AlertRule alert: alerts) {
+            titles.add(alert.getTitle());
+            deletions.add(AlertRuleDeletion.create(alert.getTitle(), now));
+        }
+        if (titles.isEmpty()) {
+            return titles;
+        }
+        this.alertRuleService.destroy(titles);
+        this.alertRuleDeletionCollection.create(deletions);
+        return titles;
+    }
+
+    private static void addIfPresent(Set<String> identifiers, String identifier) {
+        if (identifier == null || identifier.isEmpty()) {
+            return;
+        }
+        identifiers.add(identifier);
+    }
+}
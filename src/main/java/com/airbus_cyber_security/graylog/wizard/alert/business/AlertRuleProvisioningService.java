@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AggregationAlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleDeletion;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertType;
+import com.airbus_cyber_security.graylog.wizard.alert.model.CorrelationAlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.DisjunctionAlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.TriggeringConditions;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.AlertRuleDeletionCollection;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.AlertRuleDataAssembler;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.Conversions;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.AlertRuleStream;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.requests.AlertRuleRequest;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetDataAlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleViewCache;
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleViewService;
+import com.airbus_cyber_security.graylog.wizard.config.rest.AlertWizardConfig;
+import com.airbus_cyber_security.graylog.wizard.config.rest.AlertWizardConfigurationService;
+import com.airbus_cyber_security.graylog.wizard.config.rest.ImportPolicyType;
+import com.airbus_cyber_security.graylog.wizard.database.TitleLocks;
+import com.airbus_cyber_security.graylog.wizard.database.VersionConflictException;
+import com.mongodb.MongoException;
+import jakarta.ws.rs.BadRequestException;
+import org.bson.types.ObjectId;
+import org.graylog.events.processor.EventProcessorConfig;
+import org.graylog2.database.NotFoundException;
+import org.graylog2.plugin.database.ValidationException;
+import org.graylog2.plugin.database.users.User;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import java.util.Map;
+
+/**
+ * Creates, updates and deletes alert rules together with their Graylog entities, on behalf of the REST resource as
+ * well as of the background provisioning jobs.
+ *
+ * The entities are created for the given user, the owner of the request. Callers are expected to hold the lock of the
+ * titles they create or delete (see {@link TitleLocks}).
+ */
+public class AlertRuleProvisioningService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertRuleProvisioningService.class);
+
+    private final AlertRuleService alertRuleService;
+    private final TriggeringConditionsService triggeringConditionsService;
+    private final AlertWizardConfigurationService configurationService;
+    private final Conversions conversions;
+    private final EventDefinitionService eventDefinitionService;
+    private final NotificationService notificationService;
+    private final AlertRuleDataAssembler alertRuleDataAssembler;
+    private final AlertRuleViewService alertRuleViewService;
+    private final AlertRuleViewCache alertRuleViewCache;
+    private final AlertRuleDeletionCollection alertRuleDeletionCollection;
+    private final ClusterEventPublisher clusterEventPublisher;
+
+    @Inject
+    public AlertRuleProvisioningService(AlertRuleService alertRuleService,
+                                        TriggeringConditionsService triggeringConditionsService,
+                                        AlertWizardConfigurationService configurationService,
+                                        Conversions conversions,
+                                        EventDefinitionService eventDefinitionService,
+                                        NotificationService notificationService,
+                                        AlertRuleDataAssembler alertRuleDataAssembler,
+                                        AlertRuleViewService alertRuleViewService,
+                                        AlertRuleViewCache alertRuleViewCache,
+                                        AlertRuleDeletionCollection alertRuleDeletionCollection,
+                                        ClusterEventPublisher clusterEventPublisher) {
+        this.alertRuleService = alertRuleService;
+        this.triggeringConditionsService = triggeringConditionsService;
+        this.configurationService = configurationService;
+        this.conversions = conversions;
+        this.eventDefinitionService = eventDefinitionService;
+        this.notificationService = notificationService;
+        this.alertRuleDataAssembler = alertRuleDataAssembler;
+        this.alertRuleViewService = alertRuleViewService;
+        this.alertRuleViewCache = alertRuleViewCache;
+        this.alertRuleDeletionCollection = alertRuleDeletionCollection;
+        this.clusterEventPublisher = clusterEventPublisher;
+    }
+
+    /**
+     * Returns the title under which a rule with the given title should be created, according to the import policy.
+     * With the REPLACE policy, the existing rule is deleted. With the RENAME policy, the new title is added to the lock.
+     * The caller should hold the lock of the title until the rule is created.
+     */
+    public String checkImportPolicyAndGetTitle(String title, TitleLocks.Lock lock) {
+        String alertTitle = title;
+        if (this.alertRuleService.isPresent(alertTitle)) {
+            // TODO should be get or default here: it will return null when starting with a fresh instance of graylog
+            // Idem in AlertListRessource. Add a test that creates two alerts with same title
+            AlertWizardConfig configuration = this.configurationService.getConfiguration();
+            ImportPolicyType importPolicy = configuration.accessImportPolicy();
+            if (importPolicy != null && importPolicy.equals(ImportPolicyType.RENAME)) {
+                String newAlertTitle;
+                int i = 1;
+                do {
+                    newAlertTitle = alertTitle + "(" + i + ")";
+                    i++;
+                    // a title locked by another operation is about to be taken
+                } while (this.alertRuleService.isPresent(newAlertTitle) || !lock.tryAdd(newAlertTitle));
+                alertTitle = newAlertTitle;
+            } else if (importPolicy != null && importPolicy.equals(ImportPolicyType.REPLACE)) {
+                try {
+                    this.delete(alertTitle);
+                } catch (MongoException e) {
+                    LOG.error("Failed to replace alert rule");
+                    throw new BadRequestException("Failed to replace alert rule.");
+                }
+            } else {
+                LOG.info("Failed to create alert rule: Alert rule title already exist");
+                throw new BadRequestException("Failed to create alert rule: Alert rule title already exist.");
+            }
+        }
+        return alertTitle;
+    }
+
+    public GetDataAlertRule create(AlertRuleRequest request, String alertTitle, User user) throws ValidationException {
+        try (ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            String notificationIdentifier = this.notificationService.createNotification(alertTitle, user);
+            return this.create(request, alertTitle, notificationIdentifier, user);
+        }
+    }
+
+    // the notification was already created, or cloned, by the caller
+    public GetDataAlertRule create(AlertRuleRequest request, String alertTitle, String notificationIdentifier, User user) throws ValidationException {
+        AlertRule alertRule = this.build(request, alertTitle, notificationIdentifier, user);
+        alertRule = this.alertRuleService.create(alertRule);
+
+        GetDataAlertRule result = this.alertRuleDataAssembler.assemble(alertRule);
+        this.alertRuleViewService.save(result);
+        this.alertRuleViewCache.invalidate(alertTitle);
+        return result;
+    }
+
+    /**
+     * Creates the notification and the Graylog entities of the rule, but does not save the rule itself, so that rules
+     * can be inserted in bulk. The identifier is assigned here, so that rules inserted in bulk need not be read back.
+     */
+    public AlertRule build(AlertRuleRequest request, String alertTitle, User user) throws ValidationException {
+        String notificationIdentifier = this.notificationService.createNotification(alertTitle, user);
+        return this.build(request, alertTitle, notificationIdentifier, user);
+    }
+
+    private AlertRule build(AlertRuleRequest request, String alertTitle, String notificationIdentifier, User user) throws ValidationException {
+        AlertPattern pattern = createAlertPattern(notificationIdentifier, request, alertTitle, user);
+
+        return AlertRule.create(
+                new ObjectId().toHexString(),
+                alertTitle,
+                request.getConditionType(),
+                pattern,
+                notificationIdentifier,
+                DateTime.now(DateTimeZone.UTC),
+                user.getName(),
+                DateTime.now(DateTimeZone.UTC),
+                0);
+    }
+
+    private AlertPattern createAlertPattern(String notificationIdentifier, AlertRuleRequest request, String alertTitle,
+                                            User user) throws ValidationException {
+        AlertType alertType = request.getConditionType();
+
+        TriggeringConditions conditions = this.triggeringConditionsService.createTriggeringConditions(request.getStream(), alertTitle, user.getName(), request.isDisabled());
+
+        switch (alertType) {
+            case THEN:
+            case AND:
+                return createCorrelationAlertPattern(notificationIdentifier, request, alertTitle, user, conditions);
+            case OR:
+                return createDisjunctionAlertPattern(notificationIdentifier, request, alertTitle, user, conditions);
+            default:
+                String description = request.getDescription();
+                Integer priority = request.getPriority();
+                Map<String, Object> conditionParameters = request.conditionParameters();
+                String streamIdentifier = conditions.outputStreamIdentifier();
+                EventProcessorConfig configuration = this.conversions.createEventConfiguration(alertType, conditionParameters, streamIdentifier);
+
+                String eventIdentifier = this.eventDefinitionService.createEvent(alertTitle, description, priority, notificationIdentifier, configuration, user, request.isDisabled());
+
+                return AggregationAlertPattern.builder().conditions(conditions).eventIdentifier(eventIdentifier).build();
+        }
+    }
+
+    private DisjunctionAlertPattern createDisjunctionAlertPattern(String notificationIdentifier, AlertRuleRequest request, String alertTitle, User user, TriggeringConditions conditions) throws ValidationException {
+        String description = request.getDescription();
+        Integer priority = request.getPriority();
+        Map<String, Object> conditionParameters = request.conditionParameters();
+
+        TriggeringConditions conditions2 = this.triggeringConditionsService.createTriggeringConditions(request.getSecondStream(), alertTitle + "#2", user.getName(), request.isDisabled());
+        String streamIdentifier = conditions.outputStreamIdentifier();
+        EventProcessorConfig configuration = this.conversions.createAggregationCondition(streamIdentifier, conditionParameters);
+        String eventIdentifier = this.eventDefinitionService.createEvent(alertTitle, description, priority, notificationIdentifier, configuration, user, request.isDisabled());
+        String streamIdentifier2 = conditions2.outputStreamIdentifier();
+        EventProcessorConfig configuration2 = this.conversions.createAdditionalAggregationCondition(streamIdentifier2, conditionParameters);
+        String eventIdentifier2 = this.eventDefinitionService.createEvent(alertTitle + "#2", description, priority, notificationIdentifier, configuration2, user, request.isDisabled());
+
+        return DisjunctionAlertPattern.builder()
+                .conditions1(conditions).conditions2(conditions2).eventIdentifier1(eventIdentifier).eventIdentifier2(eventIdentifier2)
+                .build();
+    }
+
+    private CorrelationAlertPattern createCorrelationAlertPattern(String notificationIdentifier, AlertRuleRequest request, String alertTitle, User user, TriggeringConditions conditions) throws ValidationException {
+        String description = request.getDescription();
+        Integer priority = request.getPriority();
+        AlertType alertType = request.getConditionType();
+        Map<String, Object> conditionParameters = request.conditionParameters();
+
+        TriggeringConditions conditions2 = this.triggeringConditionsService.createTriggeringConditions(request.getSecondStream(), alertTitle + "#2", user.getName(), request.isDisabled());
+        String streamIdentifier = conditions.outputStreamIdentifier();
+        String streamIdentifier2 = conditions2.outputStreamIdentifier();
+        EventProcessorConfig configuration = this.conversions.createCorrelationCondition(alertType, streamIdentifier, streamIdentifier2, conditionParameters);
+        String eventIdentifier = this.eventDefinitionService.createEvent(alertTitle, description, priority, notificationIdentifier, configuration, user, request.isDisabled());
+        return CorrelationAlertPattern.builder().conditions1(conditions).conditions2(conditions2).eventIdentifier(eventIdentifier).build();
+    }
+
+    private AlertPattern updateAlertPattern(AlertPattern previousAlertPattern, String notificationIdentifier,
+                                            AlertRuleRequest request, AlertType previousAlertType, String title,
+                                            User user) throws ValidationException {
+        AlertRuleStream streamConfiguration = request.getStream();
+        AlertRuleStream streamConfiguration2 = request.getSecondStream();
+        AlertType alertType = request.getConditionType();
+        String userName = user.getName();
+        if (previousAlertType != alertType) {
+            deleteAlertPattern(previousAlertPattern);
+            return createAlertPattern(notificationIdentifier, request, title, user);
+        }
+
+        String title2 = title + "#2";
+        // TODO increase readability: extract three methods?
+        if (previousAlertPattern instanceof CorrelationAlertPattern previousPattern) {
+            TriggeringConditions previousConditions = previousPattern.conditions1();
+            TriggeringConditions conditions = this.triggeringConditionsService.updateTriggeringConditions(previousConditions, title, streamConfiguration, userName, request.isDisabled());
+            TriggeringConditions previousConditions2 = previousPattern.conditions2();
+            TriggeringConditions conditions2 = this.triggeringConditionsService.updateTriggeringConditions(previousConditions2, title2, streamConfiguration2, userName, request.isDisabled());
+
+            String streamIdentifier = conditions.outputStreamIdentifier();
+            String streamIdentifier2 = conditions2.outputStreamIdentifier();
+            EventProcessorConfig configuration = this.conversions.createCorrelationCondition(alertType, streamIdentifier, streamIdentifier2, request.conditionParameters());
+            this.eventDefinitionService.updateEvent(title, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier(), configuration, request.isDisabled());
+
+            return previousPattern.toBuilder().conditions1(conditions).conditions2(conditions2).build();
+        } else if (previousAlertPattern instanceof DisjunctionAlertPattern previousPattern) {
+            TriggeringConditions previousConditions = previousPattern.conditions1();
+            TriggeringConditions conditions = this.triggeringConditionsService.updateTriggeringConditions(previousConditions, title, streamConfiguration, userName, request.isDisabled());
+            TriggeringConditions previousConditions2 = previousPattern.conditions2();
+            TriggeringConditions conditions2 = this.triggeringConditionsService.updateTriggeringConditions(previousConditions2, title2, streamConfiguration2, userName, request.isDisabled());
+
+            String streamIdentifier = conditions.outputStreamIdentifier();
+            EventProcessorConfig configuration = this.conversions.createEventConfiguration(request.getConditionType(), request.conditionParameters(), streamIdentifier);
+            this.eventDefinitionService.updateEvent(title, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier1(), configuration, request.isDisabled());
+
+            String streamIdentifier2 = conditions2.outputStreamIdentifier();
+            EventProcessorConfig configuration2 = this.conversions.createAdditionalAggregationCondition(streamIdentifier2, request.conditionParameters());
+            this.eventDefinitionService.updateEvent(title2, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier2(), configuration2, request.isDisabled());
+
+            return previousPattern.toBuilder().conditions1(conditions).conditions2(conditions2).build();
+        } else if (previousAlertPattern instanceof AggregationAlertPattern previousPattern) {
+            TriggeringConditions previousConditions = previousPattern.conditions();
+            TriggeringConditions conditions = this.triggeringConditionsService.updateTriggeringConditions(previousConditions, title, streamConfiguration, userName, request.isDisabled());
+            String streamIdentifier = conditions.outputStreamIdentifier();
+            EventProcessorConfig configuration = this.conversions.createEventConfiguration(request.getConditionType(), request.conditionParameters(), streamIdentifier);
+            this.eventDefinitionService.updateEvent(title, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier(), configuration, request.isDisabled());
+
+            return previousPattern.toBuilder().conditions(conditions).build();
+        }
+
+        throw new RuntimeException("Unreachable code");
+    }
+
+    public static void checkVersion(AlertRule alert, long expectedVersion) {
+        if (alert.getVersion() != expectedVersion) {
+            throw new VersionConflictException("Alert rule " + alert.getTitle() + " was modified since version " + expectedVersion);
+        }
+    }
+
+    // the expected version is null to apply the request on the current version
+    // throws a VersionConflictException when the rule is not at the expected version, or modified by someone else in the meantime
+    public GetDataAlertRule update(String title, AlertRuleRequest request, Long expectedVersion, User user)
+            throws NotFoundException, ValidationException {
+        AlertRule previousAlert = this.alertRuleService.load(title);
+        if (previousAlert == null) {
+            throw new NotFoundException("Alert <" + title + "> not found!");
+        }
+        return this.update(previousAlert, request, expectedVersion, user);
+    }
+
+    public GetDataAlertRule update(AlertRule previousAlert, AlertRuleRequest request, Long expectedVersion, User user)
+            throws ValidationException {
+        // checked before anything is provisioned
+        if (expectedVersion != null) {
+            checkVersion(previousAlert, expectedVersion);
+        }
+        String title = previousAlert.getTitle();
+        String notificationIdentifier = previousAlert.getNotificationID();
+
+        try (ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            this.notificationService.updateNotification(title, notificationIdentifier);
+
+            AlertType previousAlertType = previousAlert.getAlertType();
+            AlertPattern pattern = updateAlertPattern(previousAlert.pattern(), notificationIdentifier, request,
+                    previousAlertType, title, user);
+
+            AlertRule alertRule = AlertRule.create(
+                    previousAlert.getId(),
+                    title,
+                    request.getConditionType(),
+                    pattern,
+                    previousAlert.getNotificationID(),
+                    previousAlert.getCreatedAt(),
+                    user.getName(),
+                    DateTime.now(DateTimeZone.UTC),
+                    previousAlert.getVersion());
+            alertRule = this.alertRuleService.update(title, alertRule);
+
+            GetDataAlertRule result = this.alertRuleDataAssembler.assemble(alertRule);
+            this.alertRuleViewService.save(result);
+            this.alertRuleViewCache.invalidate(alertRule.getTitle());
+            return result;
+        }
+    }
+
+    private void deleteEvent(String eventIdentifier) {
+        if (eventIdentifier == null) {
+            return;
+        }
+        this.eventDefinitionService.delete(eventIdentifier);
+    }
+
+    private void deleteAlertPattern(AlertPattern alertPattern) {
+        if (alertPattern instanceof CorrelationAlertPattern pattern) {
+            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions1());
+            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions2());
+            deleteEvent(pattern.eventIdentifier());
+        } else if (alertPattern instanceof DisjunctionAlertPattern pattern) {
+            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions1());
+            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions2());
+            deleteEvent(pattern.eventIdentifier1());
+            deleteEvent(pattern.eventIdentifier2());
+        } else if (alertPattern instanceof AggregationAlertPattern pattern) {
+            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions());
+            deleteEvent(pattern.eventIdentifier());
+        }
+    }
+
+    public void delete(String alertTitle) throws MongoException {
+        try (ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            try {
+                AlertRule alertRule = this.alertRuleService.load(alertTitle);
+
+                deleteAlertPattern(alertRule.pattern());
+                if (alertRule.getNotificationID() != null && !alertRule.getNotificationID().isEmpty()) {
+                    this.notificationService.delete(alertRule.getNotificationID());
+                }
+            } catch (NotFoundException e) {
+                LOG.error("Cannot find alert " + alertTitle, e);
+            }
+
+            if (this.alertRuleService.destroy(alertTitle) > 0) {
+                this.alertRuleDeletionCollection.create(AlertRuleDeletion.create(alertTitle, DateTime.now(DateTimeZone.UTC)));
+            }
+            this.alertRuleViewService.remove(alertTitle);
+            this.alertRuleViewCache.invalidate(alertTitle);
+        }
+    }
+}
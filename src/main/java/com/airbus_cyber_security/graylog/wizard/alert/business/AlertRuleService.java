@@ -18,21 +18,33 @@
 package com.airbus_cyber_security.graylog.wizard.alert.business;
 
 import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.database.VersionConflictException;
+import com.airbus_cyber_security.graylog.wizard.database.Versions;
 import com.mongodb.BasicDBObject;
+import com.mongodb.MongoException;
+import org.bson.types.ObjectId;
 import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
 import org.graylog2.database.MongoConnection;
 import org.graylog2.database.NotFoundException;
 import org.graylog2.database.PaginatedDbService;
+import org.graylog2.database.PaginatedList;
+import org.joda.time.DateTime;
 import org.mongojack.DBCursor;
 import org.mongojack.DBQuery;
+import org.mongojack.DBSort;
+import org.mongojack.DBUpdate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 
 // TODO split this into AlertRuleCollection and move it down in the persistence namespace
@@ -41,7 +53,11 @@ public class AlertRuleService extends PaginatedDbService<AlertRule> {
 	private static final String COLLECTION_NAME = "wizard_alerts";
 	private final Validator validator;
 	private static final Logger LOG = LoggerFactory.getLogger(AlertRuleService.class);
+	private static final String ID = "_id";
 	private static final String TITLE = "title";
+	private static final String LAST_MODIFIED = "last_modified";
+	private static final String VERSION = "version";
+	public static final Set<String> SORT_FIELDS = Set.of(TITLE, "alert_type", "created_at", "creator_user_id", LAST_MODIFIED);
 
 	@Inject
 	public AlertRuleService(MongoConnection mongoConnection, MongoJackObjectMapperProvider mapperProvider,
@@ -49,6 +65,11 @@ public class AlertRuleService extends PaginatedDbService<AlertRule> {
 		super(mongoConnection, mapperProvider, AlertRule.class, COLLECTION_NAME);
 		this.validator = validator;
 		this.db.createIndex(new BasicDBObject(TITLE, 1), new BasicDBObject("unique", true));
+		for (String sortField: SORT_FIELDS) {
+			if (!sortField.equals(TITLE)) {
+				this.db.createIndex(new BasicDBObject(sortField, 1));
+			}
+		}
 	}
 
 	public AlertRule create(AlertRule alert) {
@@ -60,6 +81,45 @@ public class AlertRuleService extends PaginatedDbService<AlertRule> {
 		}
 	}
 	
+	/**
+	 * Inserts all rules with a single round trip, then one by one after a failure.
+	 * Returns the rules which could not be inserted, the others are inserted nonetheless.
+	 */
+	public List<AlertRule> createAll(List<AlertRule> alerts) {
+		List<AlertRule> failedAlerts = new ArrayList<>();
+		List<AlertRule> validAlerts = new ArrayList<>();
+		for (AlertRule alert: alerts) {
+			Set<ConstraintViolation<AlertRule>> violations = validator.validate(alert);
+			if (violations.isEmpty()) {
+				validAlerts.add(alert);
+			} else {
+				LOG.error("Alert rule {} failed validation: {}", alert.getTitle(), violations);
+				failedAlerts.add(alert);
+			}
+		}
+		if (validAlerts.isEmpty()) {
+			return failedAlerts;
+		}
+		try {
+			this.db.insert(validAlerts);
+		} catch (MongoException e) {
+			// the insert is ordered: it stopped at the first failure, the rules inserted before it are found by identifier
+			LOG.warn("Failed to insert alert rules at once, inserting them one by one", e);
+			for (AlertRule alert: validAlerts) {
+				if (this.db.findOneById(new ObjectId(alert.getId())) != null) {
+					continue;
+				}
+				try {
+					this.db.insert(alert);
+				} catch (MongoException insertException) {
+					LOG.error("Failed to insert alert rule {}", alert.getTitle(), insertException);
+					failedAlerts.add(alert);
+				}
+			}
+		}
+		return failedAlerts;
+	}
+
 	public AlertRule update(String title, AlertRule alert) {
 		LOG.debug("Alert to be updated [{}]", alert);
 
@@ -67,7 +127,16 @@ public class AlertRuleService extends PaginatedDbService<AlertRule> {
 		if (!violations.isEmpty()) {
 			throw new IllegalArgumentException("Specified object failed validation: " + violations);
 		}
-		// TODO would be easier to just do a this.save, but unfortunately we are using title as identifier. We should use an identifier instead!!!
+		// rules read from the database carry their identifier and version: they are replaced by primary key, provided
+		// nobody wrote them in the meantime
+		if (alert.getId() != null) {
+			AlertRule result = this.db.findAndModify(DBQuery.is(ID, new ObjectId(alert.getId())).and(hasVersion(alert.getVersion())),
+					new BasicDBObject(), new BasicDBObject(), false, alert.nextVersion(), true, false);
+			if (result == null) {
+				throw new VersionConflictException("Alert rule " + alert.getTitle() + " was modified concurrently");
+			}
+			return result;
+		}
 		return this.db.findAndModify(DBQuery.is(TITLE, title), new BasicDBObject(), new BasicDBObject(),
 				                    false, alert, true, false);
 	}
@@ -78,15 +147,123 @@ public class AlertRuleService extends PaginatedDbService<AlertRule> {
 		}
 	}
 
-	public void destroy(String alertTitle) {
-		this.db.remove(DBQuery.is(TITLE, alertTitle)).getN();
+	/**
+	 * Iterates over all rules, fetching batchSize documents per round trip.
+	 * The caller is responsible for closing the cursor.
+	 */
+	public DBCursor<AlertRule> cursor(int batchSize) {
+		return this.db.find(DBQuery.empty()).batchSize(batchSize);
+	}
+
+	/**
+	 * Retrieves one page of rules, whose title starts with the query, sorted on one of the SORT_FIELDS.
+	 */
+	public PaginatedList<AlertRule> searchPaginated(String query, String sortField, boolean ascending, int page, int perPage) {
+		DBQuery.Query filter = DBQuery.empty();
+		if (query != null && !query.isEmpty()) {
+			// an anchored and case sensitive regex is a range scan of the title index
+			filter = DBQuery.regex(TITLE, Pattern.compile("^" + Pattern.quote(query)));
+		}
+		DBSort.SortBuilder sort = ascending ? DBSort.asc(sortField) : DBSort.desc(sortField);
+		// the title is unique, it breaks ties so that pages are stable
+		if (!sortField.equals(TITLE)) {
+			sort = sort.asc(TITLE);
+		}
+		return this.findPaginatedWithQueryAndSort(filter, sort, page, perPage);
+	}
+
+	/**
+	 * Retrieves the rules modified strictly after the given date, oldest first.
+	 */
+	public List<AlertRule> findModifiedSince(DateTime since) {
+		try (DBCursor<AlertRule> cursor = this.db.find(DBQuery.greaterThan(LAST_MODIFIED, since.toDate())).sort(DBSort.asc(LAST_MODIFIED))) {
+			return cursor.toArray();
+		}
+	}
+
+	/**
+	 * Marks the rules as modified, when one of their Graylog entities changed but not the rules themselves.
+	 */
+	public void touch(Collection<String> titles, DateTime lastModified) {
+		if (titles.isEmpty()) {
+			return;
+		}
+		this.db.updateMulti(DBQuery.in(TITLE, titles), DBUpdate.set(LAST_MODIFIED, lastModified.toDate()));
+	}
+
+	public int destroy(String alertTitle) {
+		return this.db.remove(DBQuery.is(TITLE, alertTitle)).getN();
 		// TODO would be simpler: this.delete(alertTitle);
 	}
+
+	public int destroy(Collection<String> titles) {
+		return this.db.remove(DBQuery.in(TITLE, titles)).getN();
+	}
 	
 	public AlertRule load(String title) throws NotFoundException {
 		return this.db.findOne(DBQuery.is(TITLE, title));
 	}
 	
+	// documents written before the version field was introduced have none
+	private static DBQuery.Query hasVersion(long version) {
+		if (version == 0) {
+			return DBQuery.or(DBQuery.is(VERSION, 0L), DBQuery.notExists(VERSION));
+		}
+		return DBQuery.is(VERSION, version);
+	}
+
+	/**
+	 * Returns null when there is no rule with this identifier.
+	 */
+	public AlertRule loadById(String identifier) {
+		if (!ObjectId.isValid(identifier)) {
+			return null;
+		}
+		return this.db.findOneById(new ObjectId(identifier));
+	}
+
+	public List<AlertRule> load(Collection<String> titles) {
+		try (DBCursor<AlertRule> cursor = this.db.find(DBQuery.in(TITLE, titles))) {
+			return cursor.toArray();
+		}
+	}
+
+	/**
+	 * Changes whenever the rule is modified, null when there is no such rule.
+	 */
+	public String getVersion(String title) {
+		return Versions.ofDocument(this.db.getDbCollection(), new BasicDBObject(TITLE, title));
+	}
+
+	/**
+	 * Same as getVersion(title), null as well when the identifier is not a valid ObjectId.
+	 */
+	public String getVersionById(String identifier) {
+		if (!ObjectId.isValid(identifier)) {
+			return null;
+		}
+		return Versions.ofDocument(this.db.getDbCollection(), new BasicDBObject(ID, new ObjectId(identifier)));
+	}
+
+	/**
+	 * Returns those of the titles which are already used by a rule.
+	 */
+	public Set<String> findExistingTitles(Collection<String> titles) {
+		Set<String> result = new HashSet<>();
+		BasicDBObject query = new BasicDBObject(TITLE, new BasicDBObject("$in", titles));
+		// only the title is read
+		try (com.mongodb.DBCursor cursor = this.db.getDbCollection().find(query, new BasicDBObject(TITLE, 1))) {
+			while (cursor.hasNext()) {
+				result.add((String) cursor.next().get(TITLE));
+			}
+		}
+		return result;
+	}
+
+	public long count() {
+		return this.db.count();
+	}
+
 	public boolean isPresent(String title) {
 		return (this.db.getCount(DBQuery.is(TITLE, title)) > 0);
 	}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPatterns;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.TriggeringConditions;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog.events.processor.EventDefinitionDto;
+import org.graylog2.database.MongoConnection;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Enables or disables rules without provisioning them again: only the disabled flag of their streams and the schedule
+ * of their event definitions change.
+ *
+ * The disabled flag of all the streams is written with a single update. The StreamsChangedEvents are posted through
+ * the {@link ClusterEventPublisher}, so that they are coalesced when the caller opened a batch.
+ */
+public class AlertRuleStateService {
+
+    private static final String ID = "_id";
+    private static final String STREAM_DISABLED = "disabled";
+
+    private final AlertRuleService alertRuleService;
+    private final EventDefinitionService eventDefinitionService;
+    private final ClusterEventPublisher clusterEventPublisher;
+    private final MongoCollection<Document> streams;
+
+    @Inject
+    public AlertRuleStateService(AlertRuleService alertRuleService,
+                                 EventDefinitionService eventDefinitionService,
+                                 ClusterEventPublisher clusterEventPublisher,
+                                 MongoConnection mongoConnection) {
+        this.alertRuleService = alertRuleService;
+        this.eventDefinitionService = eventDefinitionService;
+        this.clusterEventPublisher = clusterEventPublisher;
+        this.streams = mongoConnection.getMongoDatabase().getCollection("streams");
+    }
+
+    /**
+     * Returns the titles of the rules which were not already in the requested state.
+     */
+    public Set<String> setDisabled(List<AlertRule> alerts, boolean disabled) {
+        Map<String, List<String>> titlesByStream = new HashMap<>();
+        Map<String, String> titleByEvent = new HashMap<>();
+        for (AlertRule alert: alerts) {
+            for (TriggeringConditions conditions: AlertPatterns.getConditions(alert.pattern())) {
+                addStream(titlesByStream, conditions.filteringStreamIdentifier(), alert.getTitle());
+                addStream(titlesByStream, conditions.outputStreamIdentifier(), alert.getTitle());
+            }
+            for (String eventIdentifier: AlertPatterns.getEventIdentifiers(alert.pattern())) {
+                if (eventIdentifier != null) {
+                    titleByEvent.put(eventIdentifier, alert.getTitle());
+                }
+            }
+        }
+
+        Set<String> result = new HashSet<>();
+        for (String streamIdentifier: this.updateStreams(titlesByStream.keySet(), disabled)) {
+            result.addAll(titlesByStream.get(streamIdentifier));
+            this.clusterEventPublisher.postStreamsChanged(streamIdentifier);
+        }
+
+        EventDefinition.State currentState = disabled ? EventDefinition.State.ENABLED : EventDefinition.State.DISABLED;
+        for (EventDefinitionDto eventDefinition: this.eventDefinitionService.getEventDefinitions(titleByEvent.keySet()).values()) {
+            if (eventDefinition.state() != currentState) {
+                continue;
+            }
+            if (disabled) {
+                this.eventDefinitionService.unschedule(eventDefinition.id());
+            } else {
+                this.eventDefinitionService.schedule(eventDefinition.id());
+            }
+            result.add(titleByEvent.get(eventDefinition.id()));
+        }
+
+        this.alertRuleService.touch(result, DateTime.now(DateTimeZone.UTC));
+        return result;
+    }
+
+    private static void addStream(Map<String, List<String>> titlesByStream, String streamIdentifier, String title) {
+        if (streamIdentifier == null || !ObjectId.isValid(streamIdentifier)) {
+            return;
+        }
+        List<String> titles = titlesByStream.computeIfAbsent(streamIdentifier, key -> new ArrayList<>());
+        if (!titles.contains(title)) {
+            titles.add(title);
+        }
+    }
+
+    // returns the identifiers of the streams which were not already in the requested state
+    private Set<String> updateStreams(Set<String> streamIdentifiers, boolean disabled) {
+        Set<String> result = new HashSet<>();
+        if (streamIdentifiers.isEmpty()) {
+            return result;
+        }
+        List<ObjectId> objectIdentifiers = streamIdentifiers.stream().map(ObjectId::new).toList();
+        List<ObjectId> changedIdentifiers = new ArrayList<>();
+        // a missing disabled field means the stream is enabled
+        Bson inOtherState = disabled ? Filters.ne(STREAM_DISABLED, true) : Filters.eq(STREAM_DISABLED, true);
+        try (MongoCursor<Document> cursor = this.streams.find(Filters.and(Filters.in(ID, objectIdentifiers), inOtherState))
+                .projection(Projections.include(ID))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                ObjectId identifier = cursor.next().getObjectId(ID);
+                changedIdentifiers.add(identifier);
+                result.add(identifier.toHexString());
+            }
+        }
+        if (!changedIdentifiers.isEmpty()) {
+            this.streams.updateMany(Filters.in(ID, changedIdentifiers), Updates.set(STREAM_DISABLED, disabled));
+        }
+        return result;
+    }
+}
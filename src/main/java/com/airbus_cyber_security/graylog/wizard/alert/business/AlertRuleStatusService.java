@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPatterns;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.TriggeringConditions;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog2.database.MongoConnection;
+import org.mongojack.DBCursor;
+
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes whether rules are disabled, without assembling them.
+ *
+ * A rule is disabled when one of its filtering streams is disabled or one of its event definitions is disabled.
+ * Only the disabled flag of streams and the state of event definitions are read, with one projection query each.
+ */
+public class AlertRuleStatusService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String ID = "_id";
+    private static final String STREAM_DISABLED = "disabled";
+    private static final String EVENT_DEFINITION_STATE = "state";
+
+    private final AlertRuleService alertRuleService;
+    private final MongoCollection<Document> streams;
+    private final MongoCollection<Document> eventDefinitions;
+
+    @Inject
+    public AlertRuleStatusService(AlertRuleService alertRuleService, MongoConnection mongoConnection) {
+        this.alertRuleService = alertRuleService;
+        this.streams = mongoConnection.getMongoDatabase().getCollection("streams");
+        this.eventDefinitions = mongoConnection.getMongoDatabase().getCollection("event_definitions");
+    }
+
+    /**
+     * Returns, for each rule title, whether the rule is disabled.
+     */
+    public Map<String, Boolean> getDisabledStates() {
+        Map<String, List<String>> streamIdentifiersByTitle = new HashMap<>();
+        Map<String, List<String>> eventIdentifiersByTitle = new HashMap<>();
+        Set<String> streamIdentifiers = new HashSet<>();
+        Set<String> eventIdentifiers = new HashSet<>();
+        try (DBCursor<AlertRule> cursor = this.alertRuleService.cursor(BATCH_SIZE)) {
+            while (cursor.hasNext()) {
+                AlertRule alert = cursor.next();
+                List<String> alertStreamIdentifiers = getStreamIdentifiers(alert);
+                List<String> alertEventIdentifiers = getEventIdentifiers(alert);
+                streamIdentifiersByTitle.put(alert.getTitle(), alertStreamIdentifiers);
+                eventIdentifiersByTitle.put(alert.getTitle(), alertEventIdentifiers);
+                streamIdentifiers.addAll(alertStreamIdentifiers);
+                eventIdentifiers.addAll(alertEventIdentifiers);
+            }
+        }
+
+        Set<String> disabledStreams = this.findDisabled(this.streams, streamIdentifiers,
+                Filters.eq(STREAM_DISABLED, true));
+        Set<String> disabledEvents = this.findDisabled(this.eventDefinitions, eventIdentifiers,
+                Filters.eq(EVENT_DEFINITION_STATE, EventDefinition.State.DISABLED.name()));
+
+        Map<String, Boolean> result = new HashMap<>();
+        for (String title: streamIdentifiersByTitle.keySet()) {
+            boolean isDisabled = streamIdentifiersByTitle.get(title).stream().anyMatch(disabledStreams::contains)
+                    || eventIdentifiersByTitle.get(title).stream().anyMatch(disabledEvents::contains);
+            result.put(title, isDisabled);
+        }
+        return result;
+    }
+
+    private static List<String> getStreamIdentifiers(AlertRule alert) {
+        List<String> result = new ArrayList<>();
+        for (TriggeringConditions conditions: AlertPatterns.getConditions(alert.pattern())) {
+            if (conditions.filteringStreamIdentifier() != null) {
+                result.add(conditions.filteringStreamIdentifier());
+            }
+        }
+        return result;
+    }
+
+    private static List<String> getEventIdentifiers(AlertRule alert) {
+        List<String> result = new ArrayList<>();
+        for (String eventIdentifier: AlertPatterns.getEventIdentifiers(alert.pattern())) {
+            if (eventIdentifier != null) {
+                result.add(eventIdentifier);
+            }
+        }
+        return result;
+    }
+
+    // identifiers, among the given ones, of the documents which match the disabled filter
+    private Set<String> findDisabled(MongoCollection<Document> collection, Set<String> identifiers, Bson disabledFilter) {
+        Set<String> result = new HashSet<>();
+        List<ObjectId> objectIdentifiers = new ArrayList<>();
+        for (String identifier: identifiers) {
+            if (ObjectId.isValid(identifier)) {
+                objectIdentifiers.add(new ObjectId(identifier));
+            }
+        }
+        if (objectIdentifiers.isEmpty()) {
+            return result;
+        }
+        try (MongoCursor<Document> cursor = collection.find(Filters.and(Filters.in(ID, objectIdentifiers), disabledFilter))
+                .projection(Projections.include(ID))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                result.add(cursor.next().getObjectId(ID).toHexString());
+            }
+        }
+        return result;
+    }
+}
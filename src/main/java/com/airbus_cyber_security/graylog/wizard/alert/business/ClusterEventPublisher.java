@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleChangedEvent;
+import com.airbus_cyber_security.graylog.wizard.alert.views.EventDefinitionsChangedEvent;
+import com.airbus_cyber_security.graylog.wizard.list.functions.AlertListChangedEvent;
+import com.google.common.collect.ImmutableSet;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.lookup.events.CachesUpdated;
+import org.graylog2.lookup.events.DataAdaptersUpdated;
+import org.graylog2.lookup.events.LookupTablesUpdated;
+import org.graylog2.streams.events.StreamDeletedEvent;
+import org.graylog2.streams.events.StreamsChangedEvent;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Posts the change events of the wizard on the ClusterEventBus.
+ *
+ * Inside a batch, events are not posted right away but collected and deduplicated, then posted once per entity type
+ * when the outermost batch is closed: every node rebuilds its stream router, reloads its lookup tables and drops its
+ * cached rules a single time for the whole operation.
+ */
+@Singleton
+public class ClusterEventPublisher {
+
+    public interface Operation<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Scope of a wizard operation, to be used in a try-with-resources. Nested batches join the outermost one.
+     */
+    public interface Batch extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ClusterEventBus clusterEventBus;
+    private final ThreadLocal<PendingEvents> pendingEvents = new ThreadLocal<>();
+
+    @Inject
+    public ClusterEventPublisher(ClusterEventBus clusterEventBus) {
+        this.clusterEventBus = clusterEventBus;
+    }
+
+    public void postStreamsChanged(String streamIdentifier) {
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(StreamsChangedEvent.create(streamIdentifier));
+            return;
+        }
+        pending.changedStreams.add(streamIdentifier);
+    }
+
+    public void postStreamDeleted(String streamIdentifier) {
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(StreamDeletedEvent.create(streamIdentifier));
+            return;
+        }
+        pending.deletedStreams.add(streamIdentifier);
+    }
+
+    public void postAlertRulesChanged(Collection<String> titles) {
+        if (titles.isEmpty()) {
+            return;
+        }
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(AlertRuleChangedEvent.create(Set.copyOf(titles)));
+            return;
+        }
+        pending.changedAlertRules.addAll(titles);
+    }
+
+    public void postAlertListsChanged(Collection<String> titles) {
+        if (titles.isEmpty()) {
+            return;
+        }
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(AlertListChangedEvent.create(Set.copyOf(titles)));
+            return;
+        }
+        pending.changedAlertLists.addAll(titles);
+    }
+
+    public void postEventDefinitionsChanged(Collection<String> identifiers) {
+        if (identifiers.isEmpty()) {
+            return;
+        }
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(EventDefinitionsChangedEvent.create(Set.copyOf(identifiers)));
+            return;
+        }
+        pending.changedEventDefinitions.addAll(identifiers);
+    }
+
+    public void postDataAdapterUpdated(String dataAdapterIdentifier) {
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(DataAdaptersUpdated.create(dataAdapterIdentifier));
+            return;
+        }
+        pending.updatedDataAdapters.add(dataAdapterIdentifier);
+    }
+
+    public void postCacheUpdated(String cacheIdentifier) {
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(CachesUpdated.create(cacheIdentifier));
+            return;
+        }
+        pending.updatedCaches.add(cacheIdentifier);
+    }
+
+    public void postLookupTableUpdated(String lookupTableIdentifier, String lookupTableName) {
+        PendingEvents pending = this.pendingEvents.get();
+        if (pending == null) {
+            this.clusterEventBus.post(LookupTablesUpdated.create(Set.of(lookupTableIdentifier), Set.of(lookupTableName)));
+            return;
+        }
+        pending.updatedLookupTableIdentifiers.add(lookupTableIdentifier);
+        pending.updatedLookupTableNames.add(lookupTableName);
+    }
+
+    /**
+     * Opens a batch: the events produced until it is closed are posted when it closes, even if the operation fails.
+     */
+    public Batch batch() {
+        if (this.pendingEvents.get() != null) {
+            return () -> {};
+        }
+        PendingEvents pending = new PendingEvents();
+        this.pendingEvents.set(pending);
+        return () -> {
+            this.pendingEvents.remove();
+            this.publish(pending);
+        };
+    }
+
+    /**
+     * Runs the operation inside a batch.
+     */
+    public <T, E extends Exception> T deferred(Operation<T, E> operation) throws E {
+        try (Batch batch = this.batch()) {
+            return operation.run();
+        }
+    }
+
+    // data adapters and caches are posted before the lookup tables which use them
+    private void publish(PendingEvents pending) {
+        if (!pending.updatedDataAdapters.isEmpty()) {
+            this.clusterEventBus.post(DataAdaptersUpdated.create(ImmutableSet.copyOf(pending.updatedDataAdapters)));
+        }
+        if (!pending.updatedCaches.isEmpty()) {
+            this.clusterEventBus.post(CachesUpdated.create(ImmutableSet.copyOf(pending.updatedCaches)));
+        }
+        if (!pending.updatedLookupTableIdentifiers.isEmpty()) {
+            this.clusterEventBus.post(LookupTablesUpdated.create(ImmutableSet.copyOf(pending.updatedLookupTableIdentifiers),
+                    ImmutableSet.copyOf(pending.updatedLookupTableNames)));
+        }
+        if (!pending.changedStreams.isEmpty()) {
+            this.clusterEventBus.post(StreamsChangedEvent.create(ImmutableSet.copyOf(pending.changedStreams)));
+        }
+        for (String streamIdentifier: pending.deletedStreams) {
+            this.clusterEventBus.post(StreamDeletedEvent.create(streamIdentifier));
+        }
+        if (!pending.changedEventDefinitions.isEmpty()) {
+            this.clusterEventBus.post(EventDefinitionsChangedEvent.create(pending.changedEventDefinitions));
+        }
+        if (!pending.changedAlertRules.isEmpty()) {
+            this.clusterEventBus.post(AlertRuleChangedEvent.create(pending.changedAlertRules));
+        }
+        if (!pending.changedAlertLists.isEmpty()) {
+            this.clusterEventBus.post(AlertListChangedEvent.create(pending.changedAlertLists));
+        }
+    }
+
+    private static class PendingEvents {
+        private final Set<String> changedStreams = new LinkedHashSet<>();
+        private final Set<String> deletedStreams = new LinkedHashSet<>();
+        private final Set<String> changedEventDefinitions = new LinkedHashSet<>();
+        private final Set<String> changedAlertRules = new LinkedHashSet<>();
+        private final Set<String> changedAlertLists = new LinkedHashSet<>();
+        private final Set<String> updatedDataAdapters = new LinkedHashSet<>();
+        private final Set<String> updatedCaches = new LinkedHashSet<>();
+        private final Set<String> updatedLookupTableIdentifiers = new LinkedHashSet<>();
+        private final Set<String> updatedLookupTableNames = new LinkedHashSet<>();
+    }
+}
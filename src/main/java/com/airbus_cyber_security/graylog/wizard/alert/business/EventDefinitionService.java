@@ -28,12 +28,17 @@ import org.graylog.events.processor.EventDefinition;
 import org.graylog.events.processor.EventDefinitionDto;
 import org.graylog.events.processor.EventDefinitionHandler;
 import org.graylog.events.processor.EventProcessorConfig;
-import org.graylog.security.UserContext;
+import org.graylog2.plugin.database.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 // TODO I am not sure to like this name EventDefinitionHandler? EventDefinitionBusiness? EventDefinitionOperations?
 public class EventDefinitionService {
@@ -46,30 +51,48 @@ public class EventDefinitionService {
 
     private final AlertWizardConfigurationService configurationService;
 
+    private final ProvisioningJournal provisioningJournal;
+
+    private final ClusterEventPublisher clusterEventPublisher;
+
     @Inject
     public EventDefinitionService(EventDefinitionHandler eventDefinitionHandler,
                                   DBEventDefinitionService eventDefinitionService,
-                                  AlertWizardConfigurationService configurationService) {
+                                  AlertWizardConfigurationService configurationService,
+                                  ProvisioningJournal provisioningJournal,
+                                  ClusterEventPublisher clusterEventPublisher) {
         this.eventDefinitionHandler = eventDefinitionHandler;
         this.eventDefinitionService = eventDefinitionService;
         this.configurationService = configurationService;
+        this.provisioningJournal = provisioningJournal;
+        this.clusterEventPublisher = clusterEventPublisher;
     }
 
     public Optional<EventDefinitionDto> getEventDefinition(String eventDefinitionIdentifier) {
         return this.eventDefinitionService.get(eventDefinitionIdentifier);
     }
 
-    private String createEventFromDto(EventDefinitionDto eventDefinition, UserContext userContext, boolean disabled) {
+    public Map<String, EventDefinitionDto> getEventDefinitions(Set<String> eventDefinitionIdentifiers) {
+        if (eventDefinitionIdentifiers.isEmpty()) {
+            return Map.of();
+        }
+        try (Stream<EventDefinitionDto> eventDefinitions = this.eventDefinitionService.streamByIds(eventDefinitionIdentifiers)) {
+            return eventDefinitions.collect(Collectors.toMap(EventDefinitionDto::id, Function.identity()));
+        }
+    }
+
+    private String createEventFromDto(EventDefinitionDto eventDefinition, User user, boolean disabled) {
         EventDefinitionDto result;
         if (disabled) {
-           result = this.eventDefinitionHandler.createWithoutSchedule(eventDefinition, Optional.of(userContext.getUser()));
+           result = this.eventDefinitionHandler.createWithoutSchedule(eventDefinition, Optional.of(user));
         } else {
-            result = this.eventDefinitionHandler.create(eventDefinition, Optional.of(userContext.getUser()));
+            result = this.eventDefinitionHandler.create(eventDefinition, Optional.of(user));
         }
+        this.provisioningJournal.recordEventDefinition(result.id());
         return result.id();
     }
 
-    public String createEvent(String alertTitle, String description, Integer priority, String notificationIdentifier, EventProcessorConfig configuration, UserContext userContext, boolean disabled) {
+    public String createEvent(String alertTitle, String description, Integer priority, String notificationIdentifier, EventProcessorConfig configuration, User user, boolean disabled) {
         LOG.debug("Create Event: " + alertTitle);
         EventNotificationHandler.Config notificationConfiguration = EventNotificationHandler.Config.builder()
                 .notificationId(notificationIdentifier)
@@ -91,7 +114,7 @@ public class EventDefinitionService {
                         .build())
                 .build();
 
-        return this.createEventFromDto(eventDefinition, userContext, disabled);
+        return this.createEventFromDto(eventDefinition, user, disabled);
     }
 
     public void updateEvent(String alertTitle, String description, Integer priority, String eventIdentifier, EventProcessorConfig configuration, boolean disabled) {
@@ -120,6 +143,16 @@ public class EventDefinitionService {
         this.eventDefinitionHandler.update(updatedEvent, !disabled);
     }
 
+    public void schedule(String identifier) {
+        this.eventDefinitionHandler.schedule(identifier);
+        this.clusterEventPublisher.postEventDefinitionsChanged(Set.of(identifier));
+    }
+
+    public void unschedule(String identifier) {
+        this.eventDefinitionHandler.unschedule(identifier);
+        this.clusterEventPublisher.postEventDefinitionsChanged(Set.of(identifier));
+    }
+
     public void delete(String identifier) {
         this.eventDefinitionHandler.delete(identifier);
     }
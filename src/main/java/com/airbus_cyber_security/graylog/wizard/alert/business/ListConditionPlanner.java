@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPatterns;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.FieldRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListCondition;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListConditionStatistics;
+import com.airbus_cyber_security.graylog.wizard.alert.model.Pipeline;
+import com.airbus_cyber_security.graylog.wizard.alert.model.TriggeringConditions;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.ListConditionStatisticsCollection;
+import com.airbus_cyber_security.graylog.wizard.database.TitleLocks;
+import org.graylog2.database.NotFoundException;
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Periodically computes the ratios of the list conditions from the samples of all nodes (see
+ * {@link com.airbus_cyber_security.graylog.wizard.list.functions.ListConditionSampler}) and, when they drifted
+ * significantly since the rules were planned, stores them and rewrites the pipeline rules which test these conditions,
+ * so that their most selective conditions come first.
+ */
+public class ListConditionPlanner extends Periodical {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ListConditionPlanner.class);
+    // smaller variations of the hit ratio of a list do not justify reloading the pipeline rules
+    private static final double MAXIMUM_DRIFT = 0.1;
+    // below this number of samples since the previous measure, the ratios of a condition are not significant
+    private static final long MINIMUM_SAMPLES = 1000;
+
+    private final ListConditionStatisticsCollection statisticsCollection;
+    private final AlertRuleService alertRuleService;
+    private final TriggeringConditionsService triggeringConditionsService;
+    private final FieldRulesUtilities fieldRulesUtilities;
+    private final TitleLocks titleLocks;
+
+    @Inject
+    public ListConditionPlanner(ListConditionStatisticsCollection statisticsCollection,
+                                AlertRuleService alertRuleService,
+                                TriggeringConditionsService triggeringConditionsService,
+                                FieldRulesUtilities fieldRulesUtilities,
+                                TitleLocks titleLocks) {
+        this.statisticsCollection = statisticsCollection;
+        this.alertRuleService = alertRuleService;
+        this.triggeringConditionsService = triggeringConditionsService;
+        this.fieldRulesUtilities = fieldRulesUtilities;
+        this.titleLocks = titleLocks;
+    }
+
+    @Override
+    public boolean runsForever() {
+        return false;
+    }
+
+    @Override
+    public boolean stopOnGracefulShutdown() {
+        return true;
+    }
+
+    @Override
+    public boolean leaderOnly() {
+        return true;
+    }
+
+    @Override
+    public boolean startOnThisNode() {
+        return true;
+    }
+
+    @Override
+    public boolean isDaemon() {
+        return true;
+    }
+
+    @Override
+    public int getInitialDelaySeconds() {
+        return 600;
+    }
+
+    @Override
+    public int getPeriodSeconds() {
+        return 600;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    public void doRun() {
+        try {
+            this.plan();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to plan the list conditions of the alert rules", e);
+        }
+    }
+
+    private void plan() {
+        List<AlertRule> alerts = this.alertRuleService.all();
+        Set<ListCondition> testedConditions = new HashSet<>();
+        for (AlertRule alert: alerts) {
+            for (TriggeringConditions conditions: AlertPatterns.getConditions(alert.pattern())) {
+                testedConditions.addAll(this.getListConditions(conditions));
+            }
+        }
+
+        Set<ListCondition> driftedConditions = new HashSet<>();
+        Set<ListCondition> knownConditions = new HashSet<>();
+        for (ListConditionStatistics statistics: this.statisticsCollection.all()) {
+            ListCondition condition = statistics.condition();
+            knownConditions.add(condition);
+            if (!testedConditions.contains(condition)) {
+                this.statisticsCollection.delete(condition);
+                continue;
+            }
+            if (statistics.getSampled() < MINIMUM_SAMPLES) {
+                continue;
+            }
+            this.statisticsCollection.consumeSamples(statistics);
+            double presentRatio = (double) statistics.getPresent() / statistics.getSampled();
+            double hitRatio = (double) statistics.getHits() / statistics.getSampled();
+            if (hasDrifted(statistics.getPlannedPresentRatio(), presentRatio) || hasDrifted(statistics.getPlannedHitRatio(), hitRatio)) {
+                this.statisticsCollection.plan(condition, presentRatio, hitRatio);
+                driftedConditions.add(condition);
+            }
+        }
+        // the nodes start sampling the conditions of the new rules
+        for (ListCondition condition: testedConditions) {
+            if (!knownConditions.contains(condition)) {
+                this.statisticsCollection.register(condition);
+            }
+        }
+        if (driftedConditions.isEmpty()) {
+            return;
+        }
+        LOG.debug("Planning the rules again for the list conditions {}", driftedConditions);
+
+        for (AlertRule alert: alerts) {
+            if (!this.testsAnyCondition(alert, driftedConditions)) {
+                continue;
+            }
+            String alertTitle = alert.getTitle();
+            // the rule is read again under its lock, so that the plan does not overwrite a concurrent update
+            try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, alertTitle)) {
+                AlertRule currentAlert = this.alertRuleService.load(alertTitle);
+                if (currentAlert == null) {
+                    continue;
+                }
+                this.replan(currentAlert, driftedConditions);
+            } catch (NotFoundException e) {
+                LOG.debug("Couldn't find the alert rule {} when planning", alertTitle, e);
+            }
+        }
+    }
+
+    private static boolean hasDrifted(Double plannedRatio, double ratio) {
+        return plannedRatio == null || Math.abs(plannedRatio - ratio) > MAXIMUM_DRIFT;
+    }
+
+    private void replan(AlertRule alert, Set<ListCondition> driftedConditions) {
+        List<TriggeringConditions> conditions = AlertPatterns.getConditions(alert.pattern());
+        for (int i = 0; i < conditions.size(); i++) {
+            if (!this.testsAnyCondition(conditions.get(i), driftedConditions)) {
+                continue;
+            }
+            // the second conditions of a rule are named after the rule with the suffix #2
+            String title = (i == 0) ? alert.getTitle() : alert.getTitle() + "#2";
+            try {
+                this.triggeringConditionsService.replanTriggeringConditions(conditions.get(i), title);
+            } catch (NotFoundException e) {
+                LOG.debug("Couldn't find the pipeline rule of {} when planning", title, e);
+            }
+        }
+    }
+
+    private Set<ListCondition> getListConditions(TriggeringConditions conditions) {
+        Set<ListCondition> result = new HashSet<>();
+        Pipeline pipeline = conditions.pipeline();
+        if (pipeline == null || pipeline.fieldRules() == null) {
+            return result;
+        }
+        for (FieldRule fieldRule: pipeline.fieldRules()) {
+            if (this.fieldRulesUtilities.isListFieldRule(fieldRule)) {
+                result.add(ListCondition.of(fieldRule));
+            }
+        }
+        return result;
+    }
+
+    private boolean testsAnyCondition(AlertRule alert, Set<ListCondition> listConditions) {
+        for (TriggeringConditions conditions: AlertPatterns.getConditions(alert.pattern())) {
+            if (this.testsAnyCondition(conditions, listConditions)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean testsAnyCondition(TriggeringConditions conditions, Set<ListCondition> listConditions) {
+        for (ListCondition condition: this.getListConditions(conditions)) {
+            if (listConditions.contains(condition)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
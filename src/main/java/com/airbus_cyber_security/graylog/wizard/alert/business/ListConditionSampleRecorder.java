@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListCondition;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListConditionStatistics;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.ListConditionStatisticsCollection;
+import com.airbus_cyber_security.graylog.wizard.list.functions.ListConditionSampler;
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds the samples taken on this node to the statistics shared by all nodes, and tells the sampler which list
+ * conditions the alert rules currently test (see {@link ListConditionPlanner}).
+ */
+public class ListConditionSampleRecorder extends Periodical {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ListConditionSampleRecorder.class);
+
+    private final ListConditionSampler listConditionSampler;
+    private final ListConditionStatisticsCollection statisticsCollection;
+
+    @Inject
+    public ListConditionSampleRecorder(ListConditionSampler listConditionSampler,
+                                       ListConditionStatisticsCollection statisticsCollection) {
+        this.listConditionSampler = listConditionSampler;
+        this.statisticsCollection = statisticsCollection;
+    }
+
+    @Override
+    public boolean runsForever() {
+        return false;
+    }
+
+    @Override
+    public boolean stopOnGracefulShutdown() {
+        return true;
+    }
+
+    @Override
+    public boolean leaderOnly() {
+        return false;
+    }
+
+    @Override
+    public boolean startOnThisNode() {
+        return true;
+    }
+
+    @Override
+    public boolean isDaemon() {
+        return true;
+    }
+
+    @Override
+    public int getInitialDelaySeconds() {
+        return 60;
+    }
+
+    @Override
+    public int getPeriodSeconds() {
+        return 60;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    public void doRun() {
+        try {
+            this.record();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to record the samples of the list conditions", e);
+        }
+    }
+
+    private void record() {
+        for (Map.Entry<ListCondition, ListConditionSampler.Samples> entry: this.listConditionSampler.drain().entrySet()) {
+            ListConditionSampler.Samples samples = entry.getValue();
+            this.statisticsCollection.addSamples(entry.getKey(), samples.sampled(), samples.present(), samples.hits());
+        }
+        Set<ListCondition> conditions = new HashSet<>();
+        for (ListConditionStatistics statistics: this.statisticsCollection.all()) {
+            conditions.add(statistics.condition());
+        }
+        this.listConditionSampler.setConditions(conditions);
+    }
+}
@@ -23,14 +23,19 @@ import com.airbus_cyber_security.graylog.wizard.database.Description;
 import org.graylog.events.notifications.DBNotificationService;
 import org.graylog.events.notifications.NotificationDto;
 import org.graylog.events.notifications.NotificationResourceHandler;
-import org.graylog.security.UserContext;
 import org.graylog2.database.NotFoundException;
 import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.graylog2.plugin.database.users.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class NotificationService {
 
@@ -39,22 +44,35 @@ public class NotificationService {
     private final DBNotificationService notificationService;
     private final NotificationResourceHandler notificationHandler;
     private final ClusterConfigService clusterConfigService;
+    private final ProvisioningJournal provisioningJournal;
 
     @Inject
     public NotificationService(NotificationResourceHandler notificationHandler,
                                DBNotificationService notificationService,
-                               ClusterConfigService clusterConfigService) {
+                               ClusterConfigService clusterConfigService,
+                               ProvisioningJournal provisioningJournal) {
         this.notificationHandler = notificationHandler;
         this.notificationService = notificationService;
         this.clusterConfigService = clusterConfigService;
+        this.provisioningJournal = provisioningJournal;
     }
 
     public Optional<NotificationDto> get(String notificationIdentifier) {
         return this.notificationService.get(notificationIdentifier);
     }
 
-    private String create(NotificationDto notification, UserContext userContext) {
-        NotificationDto result = this.notificationHandler.create(notification, Optional.ofNullable(userContext.getUser()));
+    public Map<String, NotificationDto> get(Set<String> notificationIdentifiers) {
+        if (notificationIdentifiers.isEmpty()) {
+            return Map.of();
+        }
+        try (Stream<NotificationDto> notifications = this.notificationService.streamByIds(notificationIdentifiers)) {
+            return notifications.collect(Collectors.toMap(NotificationDto::id, Function.identity()));
+        }
+    }
+
+    private String create(NotificationDto notification, User user) {
+        NotificationDto result = this.notificationHandler.create(notification, Optional.ofNullable(user));
+        this.provisioningJournal.recordNotification(result.id());
         return result.id();
     }
 
@@ -75,7 +93,7 @@ public class NotificationService {
         return configuration.accessAggregationTime();
     }
 
-    public String createNotification(String alertTitle, UserContext userContext) {
+    public String createNotification(String alertTitle, User user) {
         LoggingNotificationConfig loggingNotificationConfig = LoggingNotificationConfig.builder()
                 .singleMessage(false)
                 .logBody(this.getDefaultLogBody())
@@ -86,7 +104,7 @@ public class NotificationService {
                 .title(alertTitle)
                 .description(Description.COMMENT_ALERT_WIZARD)
                 .build();
-        return this.create(notification, userContext);
+        return this.create(notification, user);
     }
 
     public void updateNotification(String title, String notificationIdentifier) {
@@ -105,7 +123,11 @@ public class NotificationService {
         }
     }
 
-    public String cloneNotification(String notificationID, String alertTitle, UserContext userContext) throws NotFoundException {
+    public void delete(String notificationIdentifier) {
+        this.notificationHandler.delete(notificationIdentifier);
+    }
+
+    public String cloneNotification(String notificationID, String alertTitle, User user) throws NotFoundException {
         Optional<NotificationDto> optSourceNotification = get(notificationID);
         if (optSourceNotification.isPresent()) {
             NotificationDto sourceNotification = optSourceNotification.get();
@@ -114,7 +136,7 @@ public class NotificationService {
                     .title(alertTitle)
                     .description(sourceNotification.description())
                     .build();
-            return this.create(clonedNotification, userContext);
+            return this.create(clonedNotification, user);
         } else {
             throw new NotFoundException("No notification found for ID: " + notificationID);
         }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.alert.business;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.ProvisionedEntities;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.AlertRuleJobCollection;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records each Graylog entity created while a rule is provisioned, as soon as it is created, so that an attempt which
+ * fails or is interrupted half way can be cleaned up.
+ *
+ * Entities are kept in memory for the duration of a scope, and also pushed on the document of a background job when
+ * the scope belongs to one, so that they survive the node. Like the batches of {@link ClusterEventPublisher}, scopes
+ * are tracked per thread: the services which create the entities record them unconditionally, and nothing is recorded
+ * outside of a scope. A nested scope hides the enclosing one until it is closed.
+ */
+@Singleton
+public class ProvisioningJournal {
+
+    /**
+     * Scope of the provisioning of a rule, to be used in a try-with-resources.
+     */
+    public interface Scope extends AutoCloseable {
+        // the entities recorded so far
+        ProvisionedEntities entities();
+
+        @Override
+        void close();
+    }
+
+    private final AlertRuleJobCollection collection;
+    private final ThreadLocal<Recording> recording = new ThreadLocal<>();
+
+    @Inject
+    public ProvisioningJournal(AlertRuleJobCollection collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Opens a scope whose entities are also recorded on the given job.
+     */
+    public Scope open(String jobIdentifier) {
+        Recording recording = new Recording(jobIdentifier, this.recording.get());
+        this.recording.set(recording);
+        return recording;
+    }
+
+    /**
+     * Opens a scope whose entities are only kept in memory.
+     */
+    public Scope open() {
+        return this.open(null);
+    }
+
+    public void recordStream(String streamIdentifier) {
+        this.record(ProvisionedEntities.FIELD_STREAMS, streamIdentifier);
+    }
+
+    public void recordPipeline(String pipelineIdentifier) {
+        this.record(ProvisionedEntities.FIELD_PIPELINES, pipelineIdentifier);
+    }
+
+    public void recordRule(String ruleIdentifier) {
+        this.record(ProvisionedEntities.FIELD_RULES, ruleIdentifier);
+    }
+
+    public void recordEventDefinition(String eventDefinitionIdentifier) {
+        this.record(ProvisionedEntities.FIELD_EVENT_DEFINITIONS, eventDefinitionIdentifier);
+    }
+
+    public void recordNotification(String notificationIdentifier) {
+        this.record(ProvisionedEntities.FIELD_NOTIFICATIONS, notificationIdentifier);
+    }
+
+    public void recordListUsage(String listTitle) {
+        this.record(ProvisionedEntities.FIELD_LISTS, listTitle);
+    }
+
+    private void record(String field, String identifier) {
+        Recording recording = this.recording.get();
+        if (recording == null) {
+            return;
+        }
+        recording.entities.computeIfAbsent(field, key -> new ArrayList<>()).add(identifier);
+        if (recording.jobIdentifier != null) {
+            this.collection.recordProvisioned(recording.jobIdentifier, field, identifier, DateTime.now(DateTimeZone.UTC));
+        }
+    }
+
+    private class Recording implements Scope {
+        private final String jobIdentifier;
+        private final Recording enclosing;
+        private final Map<String, List<String>> entities = new HashMap<>();
+
+        private Recording(String jobIdentifier, Recording enclosing) {
+            this.jobIdentifier = jobIdentifier;
+            this.enclosing = enclosing;
+        }
+
+        @Override
+        public ProvisionedEntities entities() {
+            return ProvisionedEntities.create(this.entities.get(ProvisionedEntities.FIELD_STREAMS),
+                    this.entities.get(ProvisionedEntities.FIELD_PIPELINES),
+                    this.entities.get(ProvisionedEntities.FIELD_RULES),
+                    this.entities.get(ProvisionedEntities.FIELD_EVENT_DEFINITIONS),
+                    this.entities.get(ProvisionedEntities.FIELD_NOTIFICATIONS),
+                    this.entities.get(ProvisionedEntities.FIELD_LISTS));
+        }
+
+        @Override
+        public void close() {
+            if (this.enclosing == null) {
+                ProvisioningJournal.this.recording.remove();
+            } else {
+                ProvisioningJournal.this.recording.set(this.enclosing);
+            }
+        }
+    }
+}
@@ -24,15 +24,15 @@ import com.google.common.collect.Maps;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.BadRequestException;
 import org.bson.types.ObjectId;
-import org.graylog2.events.ClusterEventBus;
+import org.graylog2.database.NotFoundException;
 import org.graylog2.indexer.IndexSetRegistry;
 import org.graylog2.plugin.database.ValidationException;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
+import org.graylog2.plugin.streams.StreamRuleType;
 import org.graylog2.rest.resources.streams.requests.CreateStreamRequest;
 import org.graylog2.streams.StreamRuleImpl;
 import org.graylog2.streams.StreamRuleService;
-import org.graylog2.streams.events.StreamsChangedEvent;
 import org.graylog2.streams.StreamService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +42,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class StreamFacade {
 
@@ -50,19 +51,22 @@ public class StreamFacade {
     private final StreamService streamService;
     private final String indexSetID;
     private final StreamRuleService streamRuleService;
-    private final ClusterEventBus clusterEventBus;
+    private final ClusterEventPublisher clusterEventPublisher;
     private final FieldRulesUtilities fieldRulesUtilities;
+    private final ProvisioningJournal provisioningJournal;
 
     @Inject
     public StreamFacade(org.graylog2.streams.StreamService streamService,
                         StreamRuleService streamRuleService,
-                        ClusterEventBus clusterEventBus,
+                        ClusterEventPublisher clusterEventPublisher,
                         IndexSetRegistry indexSetRegistry,
-                        FieldRulesUtilities fieldRulesUtilities) {
+                        FieldRulesUtilities fieldRulesUtilities,
+                        ProvisioningJournal provisioningJournal) {
         this.streamService = streamService;
         this.streamRuleService = streamRuleService;
-        this.clusterEventBus = clusterEventBus;
+        this.clusterEventPublisher = clusterEventPublisher;
         this.fieldRulesUtilities = fieldRulesUtilities;
+        this.provisioningJournal = provisioningJournal;
         this.indexSetID = indexSetRegistry.getDefault().getConfig().id();
     }
 
@@ -83,52 +87,122 @@ public class StreamFacade {
             throw new BadRequestException("Assigned index set must be writable!");
         }
         this.streamService.save(stream);
+        this.provisioningJournal.recordStream(stream.getId());
 
         return stream;
     }
 
-    public void updateStream(Stream stream, AlertRuleStream alertRuleStream, String title) throws ValidationException {
-        LOG.debug("Update Stream: " + stream.getId());
-        stream.setTitle(title);
-        try {
-            stream.setMatchingType(alertRuleStream.getMatchingType());
-        } catch (IllegalArgumentException e) {
-            throw new BadRequestException("Invalid matching type '" + alertRuleStream.getMatchingType()
-                    + "' specified. Should be one of: " + Arrays.toString(Stream.MatchingType.values()));
+    /**
+     * Renames a stream, without posting any event since the title has no effect on routing.
+     */
+    public void updateStreamTitle(String streamIdentifier, String title) throws NotFoundException, ValidationException {
+        Stream stream = this.streamService.load(streamIdentifier);
+        if (title.equals(stream.getTitle())) {
+            return;
         }
+        stream.setTitle(title);
         this.streamService.save(stream);
+    }
 
-        //TODO do it better (don't destroy if update)
-        // Destroy existing stream rules
-        for (StreamRule streamRule: stream.getStreamRules()) {
-            this.streamRuleService.destroy(streamRule);
+    /**
+     * Only writes what differs from the current state of the stream: stream rules which are already present are kept,
+     * and modified rules are updated in place. StreamsChangedEvent is only posted when the routing changes.
+     */
+    public void updateStream(Stream stream, AlertRuleStream alertRuleStream, String title) throws ValidationException {
+        LOG.debug("Update Stream: " + stream.getId());
+        boolean isMatchingTypeChanged = !alertRuleStream.getMatchingType().equals(stream.getMatchingType());
+        if (!title.equals(stream.getTitle()) || isMatchingTypeChanged) {
+            stream.setTitle(title);
+            try {
+                stream.setMatchingType(alertRuleStream.getMatchingType());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid matching type '" + alertRuleStream.getMatchingType()
+                        + "' specified. Should be one of: " + Arrays.toString(Stream.MatchingType.values()));
+            }
+            this.streamService.save(stream);
         }
-        // Create stream rules.
+
         List<FieldRule> streamFieldRules = this.getStreamFieldRules(alertRuleStream.getFieldRules());
-        createStreamRule(streamFieldRules, stream.getId());
+        boolean areStreamRulesChanged = this.updateStreamRules(stream, streamFieldRules);
 
-        this.clusterEventBus.post(StreamsChangedEvent.create(stream.getId()));
+        if (isMatchingTypeChanged || areStreamRulesChanged) {
+            this.clusterEventPublisher.postStreamsChanged(stream.getId());
+        }
     }
 
-    private void createStreamRule(List<FieldRule> fieldRules, String streamID) throws ValidationException {
+    // returns whether any stream rule was created, modified or deleted
+    private boolean updateStreamRules(Stream stream, List<FieldRule> fieldRules) throws ValidationException {
+        List<StreamRule> unmatchedStreamRules = new ArrayList<>(stream.getStreamRules());
+        List<FieldRule> unmatchedFieldRules = new ArrayList<>();
         for (FieldRule fieldRule: fieldRules) {
-            Map<String, Object> streamRuleData = Maps.newHashMapWithExpectedSize(6);
+            StreamRule identicalStreamRule = null;
+            for (StreamRule streamRule: unmatchedStreamRules) {
+                if (isSame(streamRule, fieldRule)) {
+                    identicalStreamRule = streamRule;
+                    break;
+                }
+            }
+            if (identicalStreamRule == null) {
+                unmatchedFieldRules.add(fieldRule);
+            } else {
+                unmatchedStreamRules.remove(identicalStreamRule);
+            }
+        }
 
-            if (fieldRule.getType() >= 0) {
-                streamRuleData.put(StreamRuleImpl.FIELD_TYPE, fieldRule.getType());
-                streamRuleData.put(StreamRuleImpl.FIELD_INVERTED, false);
+        if (unmatchedStreamRules.isEmpty() && unmatchedFieldRules.isEmpty()) {
+            return false;
+        }
+
+        int index = 0;
+        for (FieldRule fieldRule: unmatchedFieldRules) {
+            if (index < unmatchedStreamRules.size()) {
+                StreamRule streamRule = unmatchedStreamRules.get(index);
+                streamRule.setField(fieldRule.getField());
+                streamRule.setType(StreamRuleType.fromInteger(innerAbs(fieldRule.getType())));
+                streamRule.setInverted(fieldRule.getType() < 0);
+                streamRule.setValue(fieldRule.getValue());
+                this.streamRuleService.save(streamRule);
+                index++;
             } else {
-                streamRuleData.put(StreamRuleImpl.FIELD_TYPE, innerAbs(fieldRule.getType()));
-                streamRuleData.put(StreamRuleImpl.FIELD_INVERTED, true);
+                this.createStreamRule(fieldRule, stream.getId());
             }
-            streamRuleData.put(StreamRuleImpl.FIELD_FIELD, fieldRule.getField());
-            streamRuleData.put(StreamRuleImpl.FIELD_VALUE, fieldRule.getValue());
-            streamRuleData.put(StreamRuleImpl.FIELD_STREAM_ID, new ObjectId(streamID));
-            streamRuleData.put(StreamRuleImpl.FIELD_DESCRIPTION, Description.COMMENT_ALERT_WIZARD);
+        }
+        for (StreamRule streamRule: unmatchedStreamRules.subList(index, unmatchedStreamRules.size())) {
+            this.streamRuleService.destroy(streamRule);
+        }
+        return true;
+    }
+
+    private boolean isSame(StreamRule streamRule, FieldRule fieldRule) {
+        return streamRule.getField().equals(fieldRule.getField())
+                && streamRule.getType().toInteger() == innerAbs(fieldRule.getType())
+                && streamRule.getInverted() == (fieldRule.getType() < 0)
+                && Objects.equals(streamRule.getValue(), fieldRule.getValue());
+    }
 
-            StreamRule newStreamRule = this.streamRuleService.create(streamRuleData);
-            this.streamRuleService.save(newStreamRule);
+    private void createStreamRule(List<FieldRule> fieldRules, String streamID) throws ValidationException {
+        for (FieldRule fieldRule: fieldRules) {
+            this.createStreamRule(fieldRule, streamID);
+        }
+    }
+
+    private void createStreamRule(FieldRule fieldRule, String streamID) throws ValidationException {
+        Map<String, Object> streamRuleData = Maps.newHashMapWithExpectedSize(6);
+
+        if (fieldRule.getType() >= 0) {
+            streamRuleData.put(StreamRuleImpl.FIELD_TYPE, fieldRule.getType());
+            streamRuleData.put(StreamRuleImpl.FIELD_INVERTED, false);
+        } else {
+            streamRuleData.put(StreamRuleImpl.FIELD_TYPE, innerAbs(fieldRule.getType()));
+            streamRuleData.put(StreamRuleImpl.FIELD_INVERTED, true);
         }
+        streamRuleData.put(StreamRuleImpl.FIELD_FIELD, fieldRule.getField());
+        streamRuleData.put(StreamRuleImpl.FIELD_VALUE, fieldRule.getValue());
+        streamRuleData.put(StreamRuleImpl.FIELD_STREAM_ID, new ObjectId(streamID));
+        streamRuleData.put(StreamRuleImpl.FIELD_DESCRIPTION, Description.COMMENT_ALERT_WIZARD);
+
+        StreamRule newStreamRule = this.streamRuleService.create(streamRuleData);
+        this.streamRuleService.save(newStreamRule);
     }
 
     // TODO most probably move up (this is a rather a conversion in the rest layer)
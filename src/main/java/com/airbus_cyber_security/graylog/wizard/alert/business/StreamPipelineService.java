@@ -18,8 +18,14 @@
 package com.airbus_cyber_security.graylog.wizard.alert.business;
 
 import com.airbus_cyber_security.graylog.wizard.alert.model.FieldRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListCondition;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListConditionStatistics;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.ListConditionStatisticsCollection;
+import com.airbus_cyber_security.graylog.wizard.config.AlertWizardPluginConfiguration;
 import com.airbus_cyber_security.graylog.wizard.database.Description;
-import com.airbus_cyber_security.graylog.wizard.database.LookupService;
+import com.airbus_cyber_security.graylog.wizard.database.TitleLocks;
+import com.airbus_cyber_security.graylog.wizard.list.functions.WizardInListFunction;
+import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.graylog.plugins.pipelineprocessor.db.PipelineDao;
 import org.graylog.plugins.pipelineprocessor.db.PipelineService;
@@ -28,23 +34,31 @@ import org.graylog.plugins.pipelineprocessor.db.RuleDao;
 import org.graylog.plugins.pipelineprocessor.db.RuleService;
 import org.graylog.plugins.pipelineprocessor.rest.PipelineConnections;
 import org.graylog2.database.NotFoundException;
-import org.graylog2.events.ClusterEventBus;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.streams.StreamGuardException;
 import org.graylog2.streams.StreamService;
-import org.graylog2.streams.events.StreamDeletedEvent;
-import org.graylog2.streams.events.StreamsChangedEvent;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 // TODO move stream related code into StreamFacade
 //      and rename to PipelineFacade
@@ -53,30 +67,95 @@ public class StreamPipelineService {
     private static final Logger LOG = LoggerFactory.getLogger(StreamPipelineService.class);
     private static final String RANDOM_CHARS = "0123456789abcdef";
     private static final int RANDOM_COUNT = 24;
+    private static final String CONSOLIDATED_PIPELINE_TITLE = "alert-wizard";
+    private static final String RULE_REFERENCE_PREFIX = "rule \"";
+    private static final String RULE_REFERENCE_SUFFIX = "\"";
+    private static final String FLAG_FIELD_PREFIX = "alert_wizard_flag_";
+    private static final String FLAG_RULE_TITLE_PREFIX = "wizard flag ";
+    private static final String CLEANUP_RULE_TITLE = "wizard flags cleanup";
+    private static final Pattern FLAG_REFERENCE = Pattern.compile("has_field\\(\"(" + FLAG_FIELD_PREFIX + "[0-9a-f]+)\"\\)");
 
     private final StreamService streamService;
-    private final ClusterEventBus clusterEventBus;
+    private final ClusterEventPublisher clusterEventPublisher;
     private final RuleService ruleService;
     private final PipelineService pipelineService;
-    private final LookupService lookupService;
     private final PipelineStreamConnectionsService pipelineStreamConnectionsService;
     private final FieldRulesUtilities fieldRulesUtilities;
+    private final ListConditionStatisticsCollection statisticsCollection;
+    private final TitleLocks titleLocks;
+    private final ProvisioningJournal provisioningJournal;
+    private final boolean consolidatedPipeline;
 
     @Inject
     public StreamPipelineService(StreamService streamService,
-                                 ClusterEventBus clusterEventBus,
+                                 ClusterEventPublisher clusterEventPublisher,
                                  RuleService ruleService,
                                  PipelineService pipelineService,
-                                 LookupService lookupService,
                                  PipelineStreamConnectionsService pipelineStreamConnectionsService,
-                                 FieldRulesUtilities fieldRulesUtilities) {
+                                 FieldRulesUtilities fieldRulesUtilities,
+                                 ListConditionStatisticsCollection statisticsCollection,
+                                 TitleLocks titleLocks,
+                                 ProvisioningJournal provisioningJournal,
+                                 @Named(AlertWizardPluginConfiguration.CONSOLIDATED_PIPELINE) boolean consolidatedPipeline) {
         this.streamService = streamService;
-        this.clusterEventBus = clusterEventBus;
+        this.clusterEventPublisher = clusterEventPublisher;
         this.ruleService = ruleService;
         this.pipelineService = pipelineService;
         this.pipelineStreamConnectionsService = pipelineStreamConnectionsService;
-        this.lookupService = lookupService;
         this.fieldRulesUtilities = fieldRulesUtilities;
+        this.statisticsCollection = statisticsCollection;
+        this.titleLocks = titleLocks;
+        this.provisioningJournal = provisioningJournal;
+        this.consolidatedPipeline = consolidatedPipeline;
+    }
+
+    private static String getRuleTitle(String alertTitle) {
+        return "function " + alertTitle;
+    }
+
+    /**
+     * The flag of a (field, list) pair is set on the message by a single rule of the first stage of the consolidated
+     * pipeline, so that the membership is evaluated once per message however many rules test it.
+     */
+    private static String getFlagField(FieldRule fieldRule) {
+        String pair = fieldRule.getField() + "\n" + fieldRule.getValue();
+        return FLAG_FIELD_PREFIX + Hashing.sha256().hashString(pair, StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+
+    private static String getFlagRuleTitle(String flagField) {
+        return FLAG_RULE_TITLE_PREFIX + flagField;
+    }
+
+    // must be called while holding the lock of the consolidated pipeline
+    private String createFlagRule(FieldRule fieldRule) {
+        String flagField = getFlagField(fieldRule);
+        String title = getFlagRuleTitle(flagField);
+        try {
+            this.ruleService.loadByName(title);
+            return flagField;
+        } catch (NotFoundException e) {
+            LOG.debug("Creating flag rule {} for field {} and list {}", title, fieldRule.getField(), fieldRule.getValue());
+        }
+        String source = "rule \"" + title + "\"\nwhen\n"
+                + "  has_field(\"" + fieldRule.getField() + "\") AND "
+                + WizardInListFunction.NAME + "(\"" + fieldRule.getValue() + "\",$message." + fieldRule.getField() + ")\n"
+                + "then\n  set_field(\"" + flagField + "\", true);\nend";
+        this.saveRule(title, source);
+        return flagField;
+    }
+
+    private RuleDao saveRule(String title, String source) {
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+        String ruleID = RandomStringUtils.random(RANDOM_COUNT, RANDOM_CHARS);
+        return this.ruleService.save(RuleDao.create(ruleID, title, Description.COMMENT_ALERT_WIZARD, source, now, now, null, null));
+    }
+
+    private String createSharedStringField(FieldRule fieldRule, boolean negate) {
+        String flagField = this.createFlagRule(fieldRule);
+        if (negate) {
+            return "  (has_field(\"" + fieldRule.getField() + "\") AND NOT has_field(\"" + flagField + "\"))\n";
+        }
+        return "  (has_field(\"" + flagField + "\"))\n";
     }
 
     private String createStringField(FieldRule fieldRule, boolean negate) {
@@ -86,16 +165,60 @@ public class StreamPipelineService {
         if (negate) {
             rule += "NOT ";
         }
-        String lookupTableName = this.lookupService.getLookupTableName(fieldRule.getValue());
-        rule += "is_not_null(lookup_value(\"" + lookupTableName + "\",$message." + fieldRule.getField() + "))";
+        // reads the list values from memory rather than through the lookup table of the list
+        rule += WizardInListFunction.NAME + "(\"" + fieldRule.getValue() + "\",$message." + fieldRule.getField() + ")";
         return rule + ")\n";
     }
 
-    private String createRuleSource(String alertTitle, List<FieldRule> listfieldRule, Stream.MatchingType matchingType, String targetStreamIdentifier){
+    // probability that the condition holds for a message, conditions which were never measured are assumed to split evenly
+    // the planned ratios are read from the database, so that all nodes write the same rule for the same conditions
+    private double getPassRatio(FieldRule fieldRule, Map<ListCondition, ListConditionStatistics> conditionsStatistics) {
+        if (!this.fieldRulesUtilities.isListFieldRule(fieldRule)) {
+            return 0.5;
+        }
+        ListConditionStatistics statistics = conditionsStatistics.get(ListCondition.of(fieldRule));
+        if (statistics == null || statistics.getPlannedHitRatio() == null || statistics.getPlannedPresentRatio() == null) {
+            return 0.5;
+        }
+        if (this.fieldRulesUtilities.hasTypeNotInList(fieldRule)) {
+            // the field must be present, with a value which does not belong to the list
+            return statistics.getPlannedPresentRatio() - statistics.getPlannedHitRatio();
+        }
+        return statistics.getPlannedHitRatio();
+    }
+
+    /**
+     * Orders the list conditions so that the evaluation of the rule stops as early as possible: the conditions which
+     * most often fail come first when they are all required, the ones which most often hold when any one is enough.
+     * The sort is stable, so that the order of the request is kept as long as nothing was measured.
+     */
+    private List<FieldRule> planListConditions(List<FieldRule> listfieldRule, Stream.MatchingType matchingType) {
+        List<FieldRule> result = new ArrayList<>(listfieldRule);
+        Set<ListCondition> conditions = new HashSet<>();
+        for (FieldRule fieldRule: listfieldRule) {
+            if (this.fieldRulesUtilities.isListFieldRule(fieldRule)) {
+                conditions.add(ListCondition.of(fieldRule));
+            }
+        }
+        // the statistics of all the conditions of the rule are read at once
+        Map<ListCondition, ListConditionStatistics> conditionsStatistics = this.statisticsCollection.load(conditions);
+        Map<FieldRule, Double> passRatios = new HashMap<>();
+        for (FieldRule fieldRule: listfieldRule) {
+            passRatios.put(fieldRule, this.getPassRatio(fieldRule, conditionsStatistics));
+        }
+        Comparator<FieldRule> byPassRatio = Comparator.comparingDouble(passRatios::get);
+        if (matchingType.equals(Stream.MatchingType.OR)) {
+            byPassRatio = byPassRatio.reversed();
+        }
+        result.sort(byPassRatio);
+        return result;
+    }
+
+    private String createRuleSource(String alertTitle, List<FieldRule> listfieldRule, Stream.MatchingType matchingType, String targetStreamIdentifier, boolean shared){
         StringBuilder fields = new StringBuilder();
 
         int nbList = 0;
-        for (FieldRule fieldRule: listfieldRule) {
+        for (FieldRule fieldRule: this.planListConditions(listfieldRule, matchingType)) {
             if (!this.fieldRulesUtilities.isListFieldRule(fieldRule)) {
                 continue;
             }
@@ -105,20 +228,63 @@ public class StreamPipelineService {
             }
             nbList++;
             boolean negate = this.fieldRulesUtilities.hasTypeNotInList(fieldRule);
-            fields.append(createStringField(fieldRule, negate));
+            if (shared) {
+                fields.append(createSharedStringField(fieldRule, negate));
+            } else {
+                fields.append(createStringField(fieldRule, negate));
+            }
         }
 
-        return "rule \"function " + alertTitle + "\"\nwhen\n" + fields + "then\n  route_to_stream(\"" + alertTitle + "\", \"" + targetStreamIdentifier + "\");\nend";
+        return "rule \"" + getRuleTitle(alertTitle) + "\"\nwhen\n" + fields + "then\n  route_to_stream(\"" + alertTitle + "\", \"" + targetStreamIdentifier + "\");\nend";
     }
 
-    public RuleDao createPipelineRule(String alertTitle, List<FieldRule> listfieldRule, Stream.MatchingType matchingType, String targetStreamIdentifier) {
-        DateTime now = DateTime.now(DateTimeZone.UTC);
+    /**
+     * In consolidated mode, the rules reading from the default stream test the flags computed in the first stage of
+     * the consolidated pipeline, instead of evaluating the list membership themselves.
+     */
+    public RuleDao createPipelineRule(String alertTitle, List<FieldRule> listfieldRule, Stream.MatchingType matchingType,
+                                      String targetStreamIdentifier, String inputStreamIdentifier) {
+        if (!this.isConsolidated(inputStreamIdentifier)) {
+            String ruleSource = createRuleSource(alertTitle, listfieldRule, matchingType, targetStreamIdentifier, false);
+            RuleDao rule = this.saveRule(getRuleTitle(alertTitle), ruleSource);
+            this.provisioningJournal.recordRule(rule.id());
+            return rule;
+        }
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.PIPELINES, CONSOLIDATED_PIPELINE_TITLE)) {
+            String ruleSource = createRuleSource(alertTitle, listfieldRule, matchingType, targetStreamIdentifier, true);
+            RuleDao rule = this.saveRule(getRuleTitle(alertTitle), ruleSource);
+            this.provisioningJournal.recordRule(rule.id());
+            this.refreshConsolidatedPipeline();
+            return rule;
+        }
+    }
 
-        String ruleID = RandomStringUtils.random(RANDOM_COUNT, RANDOM_CHARS);
-        String ruleSource = createRuleSource(alertTitle, listfieldRule, matchingType, targetStreamIdentifier);
-        RuleDao cr = RuleDao.create(ruleID, "function " + alertTitle, Description.COMMENT_ALERT_WIZARD, ruleSource, now, now, null, null);
+    /**
+     * Rewrites the source of an existing pipeline rule. The rule is only saved when its title or source differ,
+     * so that the pipeline interpreter is not reloaded needlessly.
+     */
+    public RuleDao updatePipelineRule(String ruleIdentifier, String alertTitle, List<FieldRule> listfieldRule, Stream.MatchingType matchingType,
+                                      String targetStreamIdentifier, String inputStreamIdentifier) throws NotFoundException {
+        if (!this.isConsolidated(inputStreamIdentifier)) {
+            return this.updatePipelineRule(ruleIdentifier, alertTitle, listfieldRule, matchingType, targetStreamIdentifier, false);
+        }
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.PIPELINES, CONSOLIDATED_PIPELINE_TITLE)) {
+            RuleDao rule = this.updatePipelineRule(ruleIdentifier, alertTitle, listfieldRule, matchingType, targetStreamIdentifier, true);
+            this.refreshConsolidatedPipeline();
+            return rule;
+        }
+    }
 
-        return ruleService.save(cr);
+    private RuleDao updatePipelineRule(String ruleIdentifier, String alertTitle, List<FieldRule> listfieldRule, Stream.MatchingType matchingType,
+                                       String targetStreamIdentifier, boolean shared) throws NotFoundException {
+        RuleDao rule = this.ruleService.load(ruleIdentifier);
+        String title = getRuleTitle(alertTitle);
+        String ruleSource = createRuleSource(alertTitle, listfieldRule, matchingType, targetStreamIdentifier, shared);
+        if (title.equals(rule.title()) && ruleSource.equals(rule.source())) {
+            return rule;
+        }
+        RuleDao updatedRule = rule.toBuilder().title(title).source(ruleSource).modifiedAt(DateTime.now(DateTimeZone.UTC)).build();
+        return this.ruleService.save(updatedRule);
     }
 
     private String createPipelineStringSource(String alertTitle, Stream.MatchingType matchingType) {
@@ -128,14 +294,242 @@ public class StreamPipelineService {
         } else {
             match="all";
         }
-        return "pipeline \""+alertTitle+"\"\nstage 0 match "+match+"\nrule \"function "+alertTitle+"\"\nend";
+        return "pipeline \""+alertTitle+"\"\nstage 0 match "+match+"\nrule \""+getRuleTitle(alertTitle)+"\"\nend";
+    }
+
+    private static void appendStage(StringBuilder source, int stage, String match, Collection<String> ruleTitles) {
+        source.append("stage ").append(stage).append(" match ").append(match).append("\n");
+        for (String ruleTitle: ruleTitles) {
+            source.append(RULE_REFERENCE_PREFIX).append(ruleTitle).append(RULE_REFERENCE_SUFFIX).append("\n");
+        }
+    }
+
+    /**
+     * Without flags, the rules form a single stage. Otherwise the flags are set in stage 0, tested by the rules in
+     * stage 1 and removed in stage 2, so that they are never stored. All the stages pass whatever the rules matched,
+     * since a message which matches no rule must still have its flags removed.
+     */
+    private String createConsolidatedPipelineStringSource(Collection<String> ruleTitles, Collection<String> flagFields) {
+        StringBuilder source = new StringBuilder("pipeline \"" + CONSOLIDATED_PIPELINE_TITLE + "\"\n");
+        if (flagFields.isEmpty()) {
+            appendStage(source, 0, "either", ruleTitles);
+            return source.append("end").toString();
+        }
+        List<String> flagRuleTitles = new ArrayList<>();
+        for (String flagField: flagFields) {
+            flagRuleTitles.add(getFlagRuleTitle(flagField));
+        }
+        appendStage(source, 0, "pass", flagRuleTitles);
+        appendStage(source, 1, "pass", ruleTitles);
+        appendStage(source, 2, "pass", List.of(CLEANUP_RULE_TITLE));
+        return source.append("end").toString();
+    }
+
+    private static boolean isFunctionRuleTitle(String ruleTitle) {
+        return !ruleTitle.startsWith(FLAG_RULE_TITLE_PREFIX) && !ruleTitle.equals(CLEANUP_RULE_TITLE);
+    }
+
+    private static Set<String> extractRuleReferences(String pipelineSource) {
+        Set<String> ruleTitles = new LinkedHashSet<>();
+        for (String line: pipelineSource.split("\n")) {
+            String reference = line.trim();
+            if (reference.startsWith(RULE_REFERENCE_PREFIX) && reference.endsWith(RULE_REFERENCE_SUFFIX)) {
+                ruleTitles.add(reference.substring(RULE_REFERENCE_PREFIX.length(), reference.length() - RULE_REFERENCE_SUFFIX.length()));
+            }
+        }
+        return ruleTitles;
+    }
+
+    private Set<String> extractRuleTitles(String pipelineSource) {
+        Set<String> ruleTitles = extractRuleReferences(pipelineSource);
+        ruleTitles.removeIf(ruleTitle -> !isFunctionRuleTitle(ruleTitle));
+        return ruleTitles;
+    }
+
+    private static Set<String> extractFlagRuleTitles(String pipelineSource) {
+        Set<String> ruleTitles = extractRuleReferences(pipelineSource);
+        ruleTitles.removeIf(ruleTitle -> !ruleTitle.startsWith(FLAG_RULE_TITLE_PREFIX));
+        return ruleTitles;
+    }
+
+    /**
+     * Collects the flags tested by the given rules, deletes the flag rules of the pipeline nobody tests anymore and
+     * rewrites the rule which removes the flags. Only the rules named in the pipeline are loaded, with a single query.
+     * Must be called while holding the lock of the consolidated pipeline.
+     */
+    private Set<String> updateFlagRules(PipelineDao pipeline, Set<String> ruleTitles) {
+        Set<String> previousFlagRuleTitles = extractFlagRuleTitles(pipeline.source());
+        Set<String> ruleNames = new HashSet<>(ruleTitles);
+        ruleNames.addAll(previousFlagRuleTitles);
+        ruleNames.add(CLEANUP_RULE_TITLE);
+
+        Set<String> flagFields = new TreeSet<>();
+        List<RuleDao> flagRules = new ArrayList<>();
+        RuleDao cleanupRule = null;
+        for (RuleDao rule: this.ruleService.loadNamed(ruleNames)) {
+            if (!isGenerated(rule.description())) {
+                continue;
+            }
+            if (ruleTitles.contains(rule.title())) {
+                Matcher matcher = FLAG_REFERENCE.matcher(rule.source());
+                while (matcher.find()) {
+                    flagFields.add(matcher.group(1));
+                }
+            } else if (CLEANUP_RULE_TITLE.equals(rule.title())) {
+                cleanupRule = rule;
+            } else if (previousFlagRuleTitles.contains(rule.title())) {
+                flagRules.add(rule);
+            }
+        }
+
+        for (RuleDao flagRule: flagRules) {
+            if (!flagFields.contains(flagRule.title().substring(FLAG_RULE_TITLE_PREFIX.length()))) {
+                this.ruleService.delete(flagRule.id());
+            }
+        }
+
+        if (flagFields.isEmpty()) {
+            if (cleanupRule != null) {
+                this.ruleService.delete(cleanupRule.id());
+            }
+            return flagFields;
+        }
+        StringBuilder source = new StringBuilder("rule \"" + CLEANUP_RULE_TITLE + "\"\nwhen\n  true\nthen\n");
+        for (String flagField: flagFields) {
+            source.append("  remove_field(\"").append(flagField).append("\");\n");
+        }
+        String cleanupSource = source.append("end").toString();
+        if (cleanupRule == null) {
+            this.saveRule(CLEANUP_RULE_TITLE, cleanupSource);
+        } else if (!cleanupSource.equals(cleanupRule.source())) {
+            this.ruleService.save(cleanupRule.toBuilder().source(cleanupSource).modifiedAt(DateTime.now(DateTimeZone.UTC)).build());
+        }
+        return flagFields;
+    }
+
+    // must be called while holding the lock of the consolidated pipeline
+    private PipelineDao saveConsolidatedPipeline(PipelineDao pipeline, Set<String> ruleTitles) {
+        Set<String> flagFields = this.updateFlagRules(pipeline, ruleTitles);
+        String source = createConsolidatedPipelineStringSource(ruleTitles, flagFields);
+        if (source.equals(pipeline.source())) {
+            return pipeline;
+        }
+        PipelineDao updatedPipeline = pipeline.toBuilder().source(source).modifiedAt(DateTime.now(DateTimeZone.UTC)).build();
+        return this.pipelineService.save(updatedPipeline);
+    }
+
+    // must be called while holding the lock of the consolidated pipeline
+    private void refreshConsolidatedPipeline() {
+        PipelineDao pipeline = this.loadConsolidatedPipeline();
+        if (pipeline == null) {
+            return;
+        }
+        this.saveConsolidatedPipeline(pipeline, this.extractRuleTitles(pipeline.source()));
+    }
+
+    /**
+     * Rules reading from the default stream are gathered in a single pipeline when the consolidated mode is enabled.
+     * Rules reading from their own filtering stream keep a pipeline of their own, connected to that stream.
+     */
+    private boolean isConsolidated(String inputStreamIdentifier) {
+        return this.consolidatedPipeline && Stream.DEFAULT_STREAM_ID.equals(inputStreamIdentifier);
+    }
+
+    private static boolean isGenerated(String description) {
+        return Description.COMMENT_ALERT_WIZARD.equals(description);
+    }
+
+    private PipelineDao loadPipelineByTitle(String title) {
+        try {
+            return this.pipelineService.loadByName(title);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    // a pipeline with the same title which was not generated by the wizard belongs to a user, it is never modified
+    private PipelineDao loadConsolidatedPipeline() {
+        PipelineDao pipeline = this.loadPipelineByTitle(CONSOLIDATED_PIPELINE_TITLE);
+        if (pipeline == null || !isGenerated(pipeline.description())) {
+            return null;
+        }
+        return pipeline;
+    }
+
+    private void checkConsolidatedPipelineTitleIsFree() {
+        if (this.loadPipelineByTitle(CONSOLIDATED_PIPELINE_TITLE) != null) {
+            throw new IllegalStateException("A pipeline named " + CONSOLIDATED_PIPELINE_TITLE + " which was not generated by the alert wizard already exists, rename it to use the consolidated pipeline");
+        }
+    }
+
+    private PipelineDao addToConsolidatedPipeline(String ruleTitle) {
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.PIPELINES, CONSOLIDATED_PIPELINE_TITLE)) {
+            PipelineDao pipeline = this.loadConsolidatedPipeline();
+            if (pipeline == null) {
+                this.checkConsolidatedPipelineTitleIsFree();
+                return this.createPipeline(CONSOLIDATED_PIPELINE_TITLE, createConsolidatedPipelineStringSource(List.of(ruleTitle), List.of()), Stream.DEFAULT_STREAM_ID);
+            }
+            Set<String> ruleTitles = this.extractRuleTitles(pipeline.source());
+            if (!ruleTitles.add(ruleTitle)) {
+                return pipeline;
+            }
+            return this.saveConsolidatedPipeline(pipeline, ruleTitles);
+        }
+    }
+
+    /**
+     * Removes several rules from the consolidated pipeline with a single save.
+     * The pipeline is deleted, and disconnected from the default stream, once it has no rule left.
+     */
+    private void removeFromConsolidatedPipeline(Collection<String> ruleTitles) {
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.PIPELINES, CONSOLIDATED_PIPELINE_TITLE)) {
+            PipelineDao pipeline = this.loadConsolidatedPipeline();
+            if (pipeline == null) {
+                return;
+            }
+            Set<String> remainingRuleTitles = this.extractRuleTitles(pipeline.source());
+            if (!remainingRuleTitles.removeAll(ruleTitles)) {
+                return;
+            }
+            if (remainingRuleTitles.isEmpty()) {
+                this.updateFlagRules(pipeline, remainingRuleTitles);
+                this.pipelineService.delete(pipeline.id());
+                this.disconnectPipeline(pipeline.id(), Stream.DEFAULT_STREAM_ID);
+                return;
+            }
+            this.saveConsolidatedPipeline(pipeline, remainingRuleTitles);
+        }
+    }
+
+    private void disconnectPipeline(String pipelineIdentifier, String inputStreamIdentifier) {
+        try {
+            PipelineConnections connections = this.pipelineStreamConnectionsService.load(inputStreamIdentifier);
+            Set<String> pipelineIds = new HashSet<>(connections.pipelineIds());
+            if (pipelineIds.remove(pipelineIdentifier)) {
+                this.pipelineStreamConnectionsService.save(PipelineConnections.create(connections.id(), inputStreamIdentifier, pipelineIds));
+            }
+        } catch (NotFoundException e) {
+            LOG.debug("Couldn't find the pipeline connections of stream {}", inputStreamIdentifier, e);
+        }
     }
 
     public PipelineDao createPipeline(String title, Stream.MatchingType matchingType, String inputStreamIdentifier) {
+        PipelineDao pipeline;
+        if (this.isConsolidated(inputStreamIdentifier)) {
+            pipeline = this.addToConsolidatedPipeline(getRuleTitle(title));
+        } else {
+            pipeline = this.createPipeline(title, createPipelineStringSource(title, matchingType), inputStreamIdentifier);
+        }
+        // the consolidated pipeline is recorded as well: its deletion only removes the rules of the job from it
+        this.provisioningJournal.recordPipeline(pipeline.id());
+        return pipeline;
+    }
+
+    private PipelineDao createPipeline(String title, String source, String inputStreamIdentifier) {
         DateTime now = DateTime.now(DateTimeZone.UTC);
 
         String pipelineID = RandomStringUtils.random(RANDOM_COUNT, RANDOM_CHARS);
-        PipelineDao cr = PipelineDao.create(pipelineID, title, Description.COMMENT_ALERT_WIZARD, createPipelineStringSource(title, matchingType), now, now);
+        PipelineDao cr = PipelineDao.create(pipelineID, title, Description.COMMENT_ALERT_WIZARD, source, now, now);
         PipelineDao save = pipelineService.save(cr);
 
         Set<String> pipelineIds;
@@ -154,12 +548,90 @@ public class StreamPipelineService {
         return save;
     }
 
+    // fails when the pipeline or its rule were deleted, without writing anything
+    public void checkPipelineExists(String pipelineIdentifier, String ruleIdentifier) throws NotFoundException {
+        this.pipelineService.load(pipelineIdentifier);
+        this.ruleService.load(ruleIdentifier);
+    }
+
+    /**
+     * Rewrites the source of an existing pipeline, keeping its identifier and its stream connections.
+     * The pipeline is only saved when its title or source differ.
+     * In consolidated mode, a rule which still has a pipeline of its own on the default stream is moved into the
+     * consolidated pipeline. Once the mode is disabled, a rule of the consolidated pipeline is moved into a pipeline of
+     * its own. So the returned pipeline may differ from the given one.
+     */
+    public PipelineDao updatePipeline(String pipelineIdentifier, String title, Stream.MatchingType matchingType, String inputStreamIdentifier) throws NotFoundException {
+        PipelineDao pipeline = this.pipelineService.load(pipelineIdentifier);
+        boolean inConsolidatedPipeline = CONSOLIDATED_PIPELINE_TITLE.equals(pipeline.title()) && isGenerated(pipeline.description());
+        if (this.isConsolidated(inputStreamIdentifier)) {
+            if (inConsolidatedPipeline) {
+                return this.addToConsolidatedPipeline(getRuleTitle(title));
+            }
+            PipelineDao consolidatedPipeline = this.addToConsolidatedPipeline(getRuleTitle(title));
+            this.pipelineService.delete(pipelineIdentifier);
+            this.disconnectPipeline(pipelineIdentifier, inputStreamIdentifier);
+            return consolidatedPipeline;
+        }
+        String source = createPipelineStringSource(title, matchingType);
+        if (inConsolidatedPipeline) {
+            this.removeFromConsolidatedPipeline(List.of(getRuleTitle(title)));
+            return this.createPipeline(title, source, inputStreamIdentifier);
+        }
+        if (title.equals(pipeline.title()) && source.equals(pipeline.source())) {
+            return pipeline;
+        }
+        PipelineDao updatedPipeline = pipeline.toBuilder().title(title).source(source).modifiedAt(DateTime.now(DateTimeZone.UTC)).build();
+        return this.pipelineService.save(updatedPipeline);
+    }
+
     public void deletePipeline(String pipelineID, String ruleID){
-        if (pipelineID != null && !pipelineID.isEmpty()) {
-            pipelineService.delete(pipelineID);
+        this.deletePipelines(Collections.singletonList(pipelineID), Collections.singletonList(ruleID));
+    }
+
+    /**
+     * Deletes pipelines and their rules.
+     * In consolidated mode, the rules which belong to the consolidated pipeline are removed from it with a single save,
+     * the consolidated pipeline itself is only deleted once it is empty.
+     */
+    public void deletePipelines(Collection<String> pipelineIdentifiers, Collection<String> ruleIdentifiers) {
+        PipelineDao consolidatedPipeline = null;
+        if (this.consolidatedPipeline) {
+            consolidatedPipeline = this.loadConsolidatedPipeline();
+        }
+        boolean consolidated = false;
+        for (String pipelineIdentifier: new LinkedHashSet<>(pipelineIdentifiers)) {
+            if (pipelineIdentifier == null || pipelineIdentifier.isEmpty()) {
+                continue;
+            }
+            if (consolidatedPipeline != null && pipelineIdentifier.equals(consolidatedPipeline.id())) {
+                consolidated = true;
+                continue;
+            }
+            this.pipelineService.delete(pipelineIdentifier);
+        }
+
+        List<String> ruleIdentifiersToDelete = new ArrayList<>();
+        List<String> ruleTitles = new ArrayList<>();
+        for (String ruleIdentifier: ruleIdentifiers) {
+            if (ruleIdentifier == null || ruleIdentifier.isEmpty()) {
+                continue;
+            }
+            ruleIdentifiersToDelete.add(ruleIdentifier);
+            if (!consolidated) {
+                continue;
+            }
+            try {
+                ruleTitles.add(this.ruleService.load(ruleIdentifier).title());
+            } catch (NotFoundException e) {
+                LOG.debug("Couldn't find the rule when deleting", e);
+            }
+        }
+        if (consolidated) {
+            this.removeFromConsolidatedPipeline(ruleTitles);
         }
-        if (ruleID != null && !ruleID.isEmpty()) {
-            ruleService.delete(ruleID);
+        for (String ruleIdentifier: ruleIdentifiersToDelete) {
+            this.ruleService.delete(ruleIdentifier);
         }
     }
 
@@ -167,13 +639,32 @@ public class StreamPipelineService {
         try {
             Stream stream = this.streamService.load(streamIdentifier);
             this.streamService.destroy(stream);
-            this.clusterEventBus.post(StreamsChangedEvent.create(stream.getId()));
-            this.clusterEventBus.post(StreamDeletedEvent.create(stream.getId()));
+            this.clusterEventPublisher.postStreamsChanged(stream.getId());
+            this.clusterEventPublisher.postStreamDeleted(stream.getId());
         } catch(NotFoundException | StreamGuardException e) {
             LOG.debug("Couldn't find the stream when deleting", e);
         }
     }
 
+    /**
+     * Deletes several streams, loading them all with a single query.
+     * The stream events are posted through the ClusterEventPublisher, so that they are coalesced in a batch.
+     */
+    public void deleteStreams(Collection<String> streamIdentifiers) {
+        if (streamIdentifiers.isEmpty()) {
+            return;
+        }
+        for (Stream stream: this.streamService.loadByIds(streamIdentifiers)) {
+            try {
+                this.streamService.destroy(stream);
+                this.clusterEventPublisher.postStreamsChanged(stream.getId());
+                this.clusterEventPublisher.postStreamDeleted(stream.getId());
+            } catch(NotFoundException | StreamGuardException e) {
+                LOG.debug("Couldn't find the stream when deleting", e);
+            }
+        }
+    }
+
     // TODO maybe should just split (in Conversions) the fieldRules into stream field rules and list field rules
     public List<FieldRule> extractPipelineFieldRules(List<FieldRule> listFieldRule){
         List<FieldRule> listPipelineFieldRule = new ArrayList<>();
@@ -196,4 +687,19 @@ public class StreamPipelineService {
             return null;
         }
     }
+
+    /**
+     * Loads all the given streams with a single query.
+     * Streams which do not exist anymore are absent from the result (see issue 105).
+     */
+    public Map<String, Stream> loadStreams(Collection<String> streamIdentifiers) {
+        Map<String, Stream> result = new HashMap<>();
+        if (streamIdentifiers.isEmpty()) {
+            return result;
+        }
+        for (Stream stream: this.streamService.loadByIds(streamIdentifiers)) {
+            result.put(stream.getId(), stream);
+        }
+        return result;
+    }
 }
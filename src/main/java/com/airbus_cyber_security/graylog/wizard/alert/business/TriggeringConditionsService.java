@@ -25,9 +25,12 @@ import com.airbus_cyber_security.graylog.wizard.list.utilities.AlertListUtilsSer
 import jakarta.inject.Inject;
 import org.graylog.plugins.pipelineprocessor.db.PipelineDao;
 import org.graylog.plugins.pipelineprocessor.db.RuleDao;
+import org.graylog2.database.NotFoundException;
 import org.graylog2.plugin.database.ValidationException;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -36,6 +39,20 @@ import java.util.List;
 
 public class TriggeringConditionsService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(TriggeringConditionsService.class);
+
+    // the four ways the filtering stream, the pipeline and the output stream can be laid out
+    private enum Shape {
+        // no list field rules: no pipeline, the filtering stream (if any) is the output stream
+        STREAM_ONLY,
+        // only list field rules: a pipeline on the default stream routes to a dedicated output stream
+        LISTS_ONLY,
+        // stream and list field rules with OR: a pipeline on the default stream routes to the filtering stream
+        STREAM_OR_LISTS,
+        // stream and list field rules with AND: a pipeline on the filtering stream routes to a dedicated output stream
+        STREAM_AND_LISTS
+    }
+
     private final StreamPipelineService streamPipelineService;
     private final StreamFacade streamService;
     private final AlertListUtilsService alertListUtilsService;
@@ -87,6 +104,15 @@ public class TriggeringConditionsService {
                                                             AlertRuleStream streamConfiguration, String userName, boolean disabled) throws ValidationException {
         String filteringStreamIdentifier = this.updateFilteringString(previousConditions, title, streamConfiguration, userName, disabled);
 
+        Shape shape = this.getShape(streamConfiguration);
+        if (shape != Shape.STREAM_ONLY && shape == this.getShape(previousConditions)) {
+            try {
+                return this.updateTriggeringConditionsInPlace(previousConditions, title, streamConfiguration, filteringStreamIdentifier);
+            } catch (NotFoundException e) {
+                LOG.debug("Could not update the triggering conditions of {} in place, recreating them", title, e);
+            }
+        }
+
         // second part of the condition here is probably incorrect...
         if (previousConditions.outputStreamIdentifier() != null
                 && !previousConditions.outputStreamIdentifier().equals(previousConditions.filteringStreamIdentifier())) {
@@ -97,6 +123,96 @@ public class TriggeringConditionsService {
         return createTriggeringConditionsFromStream(streamConfiguration, title, filteringStreamIdentifier, userName, disabled);
     }
 
+    /**
+     * Keeps the pipeline, its rule and the output stream: only their sources and titles are rewritten.
+     * The stream connections are left untouched, since the shape of the conditions does not change.
+     * All these entities are checked before any is written, so that when one is missing, the conditions are recreated
+     * from entities which were left as they were.
+     */
+    private TriggeringConditions updateTriggeringConditionsInPlace(TriggeringConditions previousConditions, String title,
+                                                                   AlertRuleStream streamConfiguration, String filteringStreamIdentifier)
+            throws NotFoundException, ValidationException {
+        List<FieldRule> fieldRulesWithList = this.streamPipelineService.extractPipelineFieldRules(streamConfiguration.getFieldRules());
+        Stream.MatchingType matchingType = streamConfiguration.getMatchingType();
+        Pipeline previousPipeline = previousConditions.pipeline();
+        String outputStreamIdentifier = previousConditions.outputStreamIdentifier();
+        if (this.streamPipelineService.loadStream(outputStreamIdentifier) == null) {
+            throw new NotFoundException("Output stream <" + outputStreamIdentifier + "> not found!");
+        }
+        this.streamPipelineService.checkPipelineExists(previousPipeline.identifier(), previousPipeline.ruleIdentifier());
+
+        if (!outputStreamIdentifier.equals(filteringStreamIdentifier)) {
+            this.streamService.updateStreamTitle(outputStreamIdentifier, title + " output");
+        }
+        String inputStreamIdentifier = (this.getShape(streamConfiguration) == Shape.STREAM_AND_LISTS) ? filteringStreamIdentifier : Stream.DEFAULT_STREAM_ID;
+        PipelineDao graylogPipeline = this.streamPipelineService.updatePipeline(previousPipeline.identifier(), title, matchingType, inputStreamIdentifier);
+        this.streamPipelineService.updatePipelineRule(previousPipeline.ruleIdentifier(), title, fieldRulesWithList, matchingType, outputStreamIdentifier, inputStreamIdentifier);
+        this.updateListsUsage(this.nullSafe(previousPipeline.fieldRules()), fieldRulesWithList);
+
+        Pipeline pipeline = previousPipeline.toBuilder().identifier(graylogPipeline.id()).fieldRules(fieldRulesWithList).build();
+        return TriggeringConditions.builder()
+                .filteringStreamIdentifier(filteringStreamIdentifier)
+                .matchingType(matchingType)
+                .outputStreamIdentifier(outputStreamIdentifier)
+                .pipeline(pipeline)
+                .build();
+    }
+
+    private void updateListsUsage(Collection<FieldRule> previousFieldRules, List<FieldRule> fieldRules) {
+        List<String> addedLists = new ArrayList<>();
+        for (FieldRule fieldRule: fieldRules) {
+            addedLists.add(fieldRule.getValue());
+        }
+        for (FieldRule previousFieldRule: previousFieldRules) {
+            if (!addedLists.remove(previousFieldRule.getValue())) {
+                this.alertListUtilsService.decrementUsage(previousFieldRule.getValue());
+            }
+        }
+        for (String list: addedLists) {
+            this.alertListUtilsService.incrementUsage(list);
+        }
+    }
+
+    private Shape getShape(AlertRuleStream streamConfiguration) {
+        if (this.streamPipelineService.extractPipelineFieldRules(streamConfiguration.getFieldRules()).isEmpty()) {
+            return Shape.STREAM_ONLY;
+        }
+        if (!this.fieldRulesUtilities.hasStreamRules(streamConfiguration.getFieldRules())) {
+            return Shape.LISTS_ONLY;
+        }
+        if (streamConfiguration.getMatchingType().equals(Stream.MatchingType.OR)) {
+            return Shape.STREAM_OR_LISTS;
+        }
+        return Shape.STREAM_AND_LISTS;
+    }
+
+    private Shape getShape(TriggeringConditions conditions) {
+        if (conditions.pipeline() == null) {
+            return Shape.STREAM_ONLY;
+        }
+        if (conditions.filteringStreamIdentifier() == null) {
+            return Shape.LISTS_ONLY;
+        }
+        if (conditions.filteringStreamIdentifier().equals(conditions.outputStreamIdentifier())) {
+            return Shape.STREAM_OR_LISTS;
+        }
+        return Shape.STREAM_AND_LISTS;
+    }
+
+    /**
+     * Rewrites the pipeline rule of the conditions, so that its list conditions follow the latest hit ratios.
+     * The rule is only saved when the order of its conditions changes.
+     */
+    public void replanTriggeringConditions(TriggeringConditions conditions, String title) throws NotFoundException {
+        Pipeline pipeline = conditions.pipeline();
+        if (pipeline == null || this.nullSafe(pipeline.fieldRules()).size() < 2) {
+            return;
+        }
+        String inputStreamIdentifier = (this.getShape(conditions) == Shape.STREAM_AND_LISTS) ? conditions.filteringStreamIdentifier() : Stream.DEFAULT_STREAM_ID;
+        this.streamPipelineService.updatePipelineRule(pipeline.ruleIdentifier(), title, pipeline.fieldRules(), conditions.matchingType(),
+                conditions.outputStreamIdentifier(), inputStreamIdentifier);
+    }
+
     public void deleteTriggeringConditions(TriggeringConditions conditions) {
         if (conditions.filteringStreamIdentifier() != null) {
             this.streamPipelineService.deleteStreamFromIdentifier(conditions.filteringStreamIdentifier());
@@ -107,16 +223,17 @@ public class TriggeringConditionsService {
         deletePipelineIfAny(conditions.pipeline());
     }
 
-    public List<FieldRule> getFieldRules(TriggeringConditions conditions) {
+    /**
+     * @param filteringStream the filtering stream of the conditions, already loaded by the caller, or null if there is none
+     */
+    public List<FieldRule> getFieldRules(TriggeringConditions conditions, Stream filteringStream) {
         List<FieldRule> fieldRules = new ArrayList<>();
         if (conditions.pipeline() != null) {
             List<FieldRule> pipelineFieldRules = conditions.pipeline().fieldRules();
             fieldRules.addAll(pipelineFieldRules);
         }
-        String streamIdentifier = conditions.filteringStreamIdentifier();
-        Stream stream = this.streamPipelineService.loadStream(streamIdentifier);
-        if (stream != null) {
-            fieldRules.addAll(this.getListFieldRule(stream.getStreamRules()));
+        if (filteringStream != null) {
+            fieldRules.addAll(this.getListFieldRule(filteringStream.getStreamRules()));
         }
         return fieldRules;
     }
@@ -131,13 +248,11 @@ public class TriggeringConditionsService {
         }
     }
 
-    public boolean isDisabled(TriggeringConditions conditions) {
-        String streamIdentifier = conditions.filteringStreamIdentifier();
-        Stream stream = this.streamPipelineService.loadStream(streamIdentifier);
-        if (stream == null) {
+    public boolean isDisabled(Stream filteringStream) {
+        if (filteringStream == null) {
             return false;
         }
-        return stream.getDisabled();
+        return filteringStream.getDisabled();
     }
 
     private TriggeringConditions createTriggeringConditionsFromStream(AlertRuleStream streamConfiguration, String title,
@@ -164,14 +279,14 @@ public class TriggeringConditionsService {
         if (!this.fieldRulesUtilities.hasStreamRules(streamConfiguration.getFieldRules())) {
             PipelineDao graylogPipeline = this.streamPipelineService.createPipeline(title, matchingType, Stream.DEFAULT_STREAM_ID);
             Stream outputStream = this.streamService.createStream(matchingType, title + " output", userName, disabled);
-            RuleDao pipelineRule = this.streamPipelineService.createPipelineRule(title, fieldRulesWithList, matchingType, outputStream.getId());
+            RuleDao pipelineRule = this.streamPipelineService.createPipelineRule(title, fieldRulesWithList, matchingType, outputStream.getId(), Stream.DEFAULT_STREAM_ID);
             Pipeline pipeline = Pipeline.builder()
                     .identifier(graylogPipeline.id()).ruleIdentifier(pipelineRule.id()).fieldRules(fieldRulesWithList)
                     .build();
             return builder.outputStreamIdentifier(outputStream.getId()).pipeline(pipeline).build();
         } else if (matchingType.equals(Stream.MatchingType.OR)) {
             PipelineDao graylogPipeline = this.streamPipelineService.createPipeline(title, matchingType, Stream.DEFAULT_STREAM_ID);
-            RuleDao pipelineRule = this.streamPipelineService.createPipelineRule(title, fieldRulesWithList, matchingType, filteringStreamIdentifier);
+            RuleDao pipelineRule = this.streamPipelineService.createPipelineRule(title, fieldRulesWithList, matchingType, filteringStreamIdentifier, Stream.DEFAULT_STREAM_ID);
             Pipeline pipeline = Pipeline.builder()
                     .identifier(graylogPipeline.id()).ruleIdentifier(pipelineRule.id()).fieldRules(fieldRulesWithList)
                     .build();
@@ -179,7 +294,7 @@ public class TriggeringConditionsService {
         } else {
             PipelineDao graylogPipeline = this.streamPipelineService.createPipeline(title, matchingType, filteringStreamIdentifier);
             Stream outputStream = this.streamService.createStream(matchingType, title + " output", userName, disabled);
-            RuleDao pipelineRule = this.streamPipelineService.createPipelineRule(title, fieldRulesWithList, matchingType, outputStream.getId());
+            RuleDao pipelineRule = this.streamPipelineService.createPipelineRule(title, fieldRulesWithList, matchingType, outputStream.getId(), filteringStreamIdentifier);
             Pipeline pipeline = Pipeline.builder()
                     .identifier(graylogPipeline.id()).ruleIdentifier(pipelineRule.id()).fieldRules(fieldRulesWithList)
                     .build();
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.jobs;
+
+import org.graylog2.plugin.periodical.Periodical;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+
+/**
+ * Runs on every node: resumes the jobs interrupted by a restart, then regularly claims the pending jobs.
+ */
+public class AlertRuleJobPoller extends Periodical {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertRuleJobPoller.class);
+    // a running job which has not progressed for that long is considered abandoned by its node
+    private static final int STALE_MINUTES = 30;
+
+    private final AlertRuleJobService alertRuleJobService;
+    private boolean started = false;
+
+    @Inject
+    public AlertRuleJobPoller(AlertRuleJobService alertRuleJobService) {
+        this.alertRuleJobService = alertRuleJobService;
+    }
+
+    @Override
+    public boolean runsForever() {
+        return false;
+    }
+
+    @Override
+    public boolean stopOnGracefulShutdown() {
+        return true;
+    }
+
+    @Override
+    public boolean leaderOnly() {
+        return false;
+    }
+
+    @Override
+    public boolean startOnThisNode() {
+        return true;
+    }
+
+    @Override
+    public boolean isDaemon() {
+        return true;
+    }
+
+    @Override
+    public int getInitialDelaySeconds() {
+        return 0;
+    }
+
+    @Override
+    public int getPeriodSeconds() {
+        return 5;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    public void doRun() {
+        try {
+            if (!this.started) {
+                this.alertRuleJobService.requeueInterruptedJobs();
+                this.started = true;
+            }
+            this.alertRuleJobService.requeueStaleJobs(DateTime.now(DateTimeZone.UTC).minusMinutes(STALE_MINUTES));
+            this.alertRuleJobService.runPendingJobs();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to run the pending alert rule jobs", e);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.jobs;
+
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleDeletionService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleProvisioningService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ClusterEventPublisher;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ProvisioningJournal;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleJob;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ProvisionedEntities;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.AlertRuleJobCollection;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.requests.AlertRuleRequest;
+import com.airbus_cyber_security.graylog.wizard.config.AlertWizardPluginConfiguration;
+import com.airbus_cyber_security.graylog.wizard.database.TitleLocks;
+import com.airbus_cyber_security.graylog.wizard.database.VersionConflictException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.bson.types.ObjectId;
+import org.graylog2.plugin.database.users.User;
+import org.graylog2.plugin.system.NodeId;
+import org.graylog2.shared.users.UserService;
+import org.graylog2.system.shutdown.GracefulShutdownHook;
+import org.graylog2.system.shutdown.GracefulShutdownService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the provisioning of alert rules in the background, on a bounded pool of threads.
+ *
+ * Jobs are persisted before they are queued, and claimed atomically before they run, so that each job runs on a single
+ * node. Jobs which do not fit in the queue stay pending until {@link AlertRuleJobPoller} picks them up. Jobs which
+ * were running when a node stopped are put back into the pending state and run again: the update and delete operations
+ * converge to the same result when replayed. A creation records on its job each entity as soon as it is created (see
+ * {@link ProvisioningJournal}): it is not replayed when its rule was already saved, otherwise the entities of the
+ * interrupted attempt are deleted before it runs again, or when it fails. Jobs are given up after
+ * {@link #MAXIMUM_ATTEMPTS} attempts, so that a job which brings its node down is not resumed forever.
+ */
+@Singleton
+public class AlertRuleJobService implements GracefulShutdownHook {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertRuleJobService.class);
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+    private static final int MAXIMUM_CONFLICT_RETRIES = 3;
+    static final int MAXIMUM_ATTEMPTS = 3;
+
+    private final AlertRuleJobCollection collection;
+    private final AlertRuleService alertRuleService;
+    private final AlertRuleDeletionService alertRuleDeletionService;
+    private final ProvisioningJournal provisioningJournal;
+    private final ClusterEventPublisher clusterEventPublisher;
+    private final AlertRuleProvisioningService alertRuleProvisioningService;
+    private final TitleLocks titleLocks;
+    private final UserService userService;
+    private final String nodeIdentifier;
+    private final ThreadPoolExecutor executor;
+
+    @Inject
+    public AlertRuleJobService(AlertRuleJobCollection collection,
+                               AlertRuleService alertRuleService,
+                               AlertRuleDeletionService alertRuleDeletionService,
+                               ProvisioningJournal provisioningJournal,
+                               ClusterEventPublisher clusterEventPublisher,
+                               AlertRuleProvisioningService alertRuleProvisioningService,
+                               TitleLocks titleLocks,
+                               UserService userService,
+                               NodeId nodeId,
+                               GracefulShutdownService gracefulShutdownService,
+                               @Named(AlertWizardPluginConfiguration.JOB_THREADS) int jobThreads) {
+        this.collection = collection;
+        this.alertRuleService = alertRuleService;
+        this.alertRuleDeletionService = alertRuleDeletionService;
+        this.provisioningJournal = provisioningJournal;
+        this.clusterEventPublisher = clusterEventPublisher;
+        this.alertRuleProvisioningService = alertRuleProvisioningService;
+        this.titleLocks = titleLocks;
+        this.userService = userService;
+        this.nodeIdentifier = nodeId.getNodeId();
+        this.executor = new ThreadPoolExecutor(jobThreads, jobThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobThreads * QUEUE_SIZE_PER_THREAD),
+                new ThreadFactoryBuilder().setNameFormat("alert-wizard-job-%d").setDaemon(true).build());
+        gracefulShutdownService.register(this);
+    }
+
+    // the jobs which did not complete are still pending in the database, so they are resumed after the restart
+    @Override
+    public void doGracefulShutdown() {
+        this.executor.shutdownNow();
+    }
+
+    public AlertRuleJob submit(AlertRuleJob.Type type, String title, AlertRuleRequest request, User user) {
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+        AlertRuleJob job = this.collection.create(AlertRuleJob.builder()
+                .type(type)
+                .state(AlertRuleJob.State.PENDING)
+                .title(title)
+                .request(request)
+                .userId(user.getId())
+                .userName(user.getName())
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        String jobIdentifier = job.id();
+        try {
+            this.executor.execute(() -> this.collection.claim(jobIdentifier, this.nodeIdentifier, DateTime.now(DateTimeZone.UTC))
+                    .ifPresent(this::run));
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Job queue is full, alert rule job {} stays pending", jobIdentifier);
+        }
+        return job;
+    }
+
+    public Optional<AlertRuleJob> get(String jobIdentifier) {
+        if (!ObjectId.isValid(jobIdentifier)) {
+            return Optional.empty();
+        }
+        return this.collection.get(jobIdentifier);
+    }
+
+    // to be called when this node starts
+    public void requeueInterruptedJobs() {
+        int count = this.collection.requeue(this.nodeIdentifier);
+        if (count > 0) {
+            LOG.info("Resuming {} alert rule jobs interrupted by the restart of this node", count);
+        }
+    }
+
+    public void requeueStaleJobs(DateTime before) {
+        int count = this.collection.requeueStale(before);
+        if (count > 0) {
+            LOG.warn("Resuming {} alert rule jobs which were running on a node which stopped", count);
+        }
+    }
+
+    /**
+     * Claims pending jobs as long as there is room left in the queue.
+     */
+    public void runPendingJobs() {
+        while (this.executor.getQueue().remainingCapacity() > 0) {
+            Optional<AlertRuleJob> claimedJob = this.collection.claimNext(this.nodeIdentifier, DateTime.now(DateTimeZone.UTC));
+            if (claimedJob.isEmpty()) {
+                return;
+            }
+            AlertRuleJob job = claimedJob.get();
+            try {
+                this.executor.execute(() -> this.run(job));
+            } catch (RejectedExecutionException e) {
+                this.collection.update(job.toBuilder().state(AlertRuleJob.State.PENDING).nodeId(null).build());
+                return;
+            }
+        }
+    }
+
+    private void run(AlertRuleJob job) {
+        if (job.attempts() > MAXIMUM_ATTEMPTS) {
+            LOG.error("Alert rule job {} on {} was interrupted {} times, giving up", job.id(), job.title(), MAXIMUM_ATTEMPTS);
+            this.fail(job, "Interrupted " + MAXIMUM_ATTEMPTS + " times");
+            return;
+        }
+        try {
+            String alertTitle = this.provision(job);
+            // reloaded, since the provisioning updated the job in the meantime
+            AlertRuleJob provisionedJob = this.collection.get(job.id()).orElse(job);
+            DateTime now = DateTime.now(DateTimeZone.UTC);
+            // the entities now belong to the rule
+            this.collection.update(provisionedJob.toBuilder().alertTitle(alertTitle).provisioned(null)
+                    .state(AlertRuleJob.State.SUCCEEDED).updatedAt(now).finishedAt(now).build());
+        } catch (Exception e) {
+            LOG.error("Alert rule job {} on {} failed", job.id(), job.title(), e);
+            this.fail(job, e.getMessage());
+        }
+    }
+
+    private void fail(AlertRuleJob job, String error) {
+        AlertRuleJob failedJob = this.collection.get(job.id()).orElse(job);
+        try {
+            this.discardProvisionedEntities(failedJob);
+        } catch (RuntimeException e) {
+            LOG.error("Couldn't delete the entities created by the alert rule job {}", job.id(), e);
+        }
+        failedJob = this.collection.get(job.id()).orElse(failedJob);
+        DateTime now = DateTime.now(DateTimeZone.UTC);
+        this.collection.update(failedJob.toBuilder().state(AlertRuleJob.State.FAILED).error(error).updatedAt(now).finishedAt(now).build());
+    }
+
+    /**
+     * Deletes the entities recorded by a creation which did not go as far as saving its rule.
+     */
+    private void discardProvisionedEntities(AlertRuleJob job) {
+        ProvisionedEntities entities = job.provisioned();
+        if (entities == null) {
+            return;
+        }
+        String alertTitle = job.alertTitle();
+        if (alertTitle != null && this.alertRuleService.isPresent(alertTitle)) {
+            return;
+        }
+        LOG.info("Deleting the entities created by the interrupted alert rule job {} on {}", job.id(), job.title());
+        try (ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            this.alertRuleDeletionService.delete(entities);
+        }
+        this.collection.forgetProvisioned(job.id());
+    }
+
+    // returns the title of the provisioned rule
+    private String provision(AlertRuleJob job) throws Exception {
+        switch (job.type()) {
+            case CREATE:
+                try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, job.title())) {
+                    String alertTitle = job.alertTitle();
+                    if (alertTitle == null) {
+                        alertTitle = this.alertRuleProvisioningService.checkImportPolicyAndGetTitle(job.title(), lock);
+                        // remembered so that a replay of the job does not apply the import policy a second time
+                        this.collection.update(job.toBuilder().alertTitle(alertTitle).updatedAt(DateTime.now(DateTimeZone.UTC)).build());
+                    } else if (!lock.tryAdd(alertTitle)) {
+                        // the title given by the import policy on the previous attempt
+                        throw new IllegalStateException("Title " + alertTitle + " is locked by another operation");
+                    } else if (this.alertRuleService.isPresent(alertTitle)) {
+                        // the previous attempt went as far as saving the rule
+                        return alertTitle;
+                    } else {
+                        this.discardProvisionedEntities(job);
+                    }
+                    User user = this.loadUser(job);
+                    try (ProvisioningJournal.Scope scope = this.provisioningJournal.open(job.id())) {
+                        this.alertRuleProvisioningService.create(job.request(), alertTitle, user);
+                    }
+                    return alertTitle;
+                }
+            case UPDATE:
+                try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, job.title())) {
+                    this.update(job, this.loadUser(job));
+                }
+                return job.title();
+            case DELETE:
+                try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, job.title())) {
+                    this.alertRuleProvisioningService.delete(job.title());
+                }
+                return job.title();
+            default:
+                throw new IllegalStateException("Unknown job type " + job.type());
+        }
+    }
+
+    // the entities are created on behalf of the user who submitted the job
+    private User loadUser(AlertRuleJob job) {
+        User user = this.userService.loadById(job.userId());
+        if (user == null) {
+            throw new IllegalStateException("User " + job.userName() + " who submitted the job does not exist anymore");
+        }
+        return user;
+    }
+
+    // the first attempt only applies the request on the version it was made on. A resumed attempt may already have
+    // written the rule, so it is applied on the current version instead, the rule is loaded again and the request
+    // applied anew when someone else modified it in the meantime
+    private void update(AlertRuleJob job, User user) throws Exception {
+        if (job.attempts() <= 1) {
+            this.alertRuleProvisioningService.update(job.title(), job.request(), job.request().getVersion(), user);
+            return;
+        }
+        for (int retry = 0; ; retry++) {
+            try {
+                this.alertRuleProvisioningService.update(job.title(), job.request(), null, user);
+                return;
+            } catch (VersionConflictException e) {
+                if (retry == MAXIMUM_CONFLICT_RETRIES) {
+                    throw e;
+                }
+                LOG.debug("Alert rule {} was modified concurrently, retrying job {}", job.title(), job.id());
+            }
+        }
+    }
+}
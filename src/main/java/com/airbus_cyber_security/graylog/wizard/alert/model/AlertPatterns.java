@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Traversals common to all kinds of alert patterns.
+ */
+public class AlertPatterns {
+
+    public static List<TriggeringConditions> getConditions(AlertPattern alertPattern) {
+        if (alertPattern instanceof CorrelationAlertPattern pattern) {
+            return List.of(pattern.conditions1(), pattern.conditions2());
+        } else if (alertPattern instanceof DisjunctionAlertPattern pattern) {
+            return List.of(pattern.conditions1(), pattern.conditions2());
+        } else if (alertPattern instanceof AggregationAlertPattern pattern) {
+            return List.of(pattern.conditions());
+        }
+        return List.of();
+    }
+
+    public static List<String> getEventIdentifiers(AlertPattern alertPattern) {
+        List<String> result = new ArrayList<>();
+        if (alertPattern instanceof CorrelationAlertPattern pattern) {
+            result.add(pattern.eventIdentifier());
+        } else if (alertPattern instanceof DisjunctionAlertPattern pattern) {
+            result.add(pattern.eventIdentifier1());
+            result.add(pattern.eventIdentifier2());
+        } else if (alertPattern instanceof AggregationAlertPattern pattern) {
+            result.add(pattern.eventIdentifier());
+        }
+        return result;
+    }
+}
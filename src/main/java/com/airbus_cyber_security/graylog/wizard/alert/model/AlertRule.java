@@ -19,9 +19,12 @@ package com.airbus_cyber_security.graylog.wizard.alert.model;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 import org.joda.time.DateTime;
+import org.mongojack.Id;
+import org.mongojack.ObjectId;
 
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
@@ -32,7 +35,13 @@ import jakarta.validation.constraints.NotNull;
 @JsonAutoDetect
 public abstract class AlertRule {
 
-    // TODO should add an identifier and work with it (see Notification or EventDefinition)
+    // null until the rule is stored, omitted so that replacing a rule by title keeps its identifier
+    @Id
+    @ObjectId
+    @JsonProperty("id")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Nullable
+    public abstract String getId();
 
     @JsonProperty("title")
     @NotNull
@@ -64,17 +73,28 @@ public abstract class AlertRule {
     @Nullable
     public abstract DateTime getLastModified();
 
+    // incremented by each write, so that concurrent modifications are detected (missing, hence 0, in older documents)
+    @JsonProperty("version")
+    public abstract long getVersion();
+
+    // the rule as it should be written over the current version
+    public AlertRule nextVersion() {
+        return create(getId(), getTitle(), getAlertType(), pattern(), getNotificationID(), getCreatedAt(),
+                getCreatorUserId(), getLastModified(), getVersion() + 1);
+    }
+
     // TODO should replace the create functions by a Builder (see EventDefinitionDTO)
     @JsonCreator
-    public static AlertRule create(@JsonProperty("_id") String objectId,
+    public static AlertRule create(@Id @ObjectId @JsonProperty("_id") String objectId,
                                    @JsonProperty("title") String title,
                                    @JsonProperty("alert_type") AlertType alertType,
                                    @JsonProperty("alert_pattern") AlertPattern pattern,
                                    @JsonProperty("notification") String notificationID,
                                    @JsonProperty("created_at") DateTime createdAt,
                                    @JsonProperty("creator_user_id") String creatorUserId,
-                                   @JsonProperty("last_modified") DateTime lastModified){
-        return create(title, alertType, pattern, notificationID, createdAt, creatorUserId, lastModified);
+                                   @JsonProperty("last_modified") DateTime lastModified,
+                                   @JsonProperty("version") long version){
+        return new AutoValue_AlertRule(objectId, title, alertType, pattern, notificationID, createdAt, creatorUserId, lastModified, version);
     }
 	
 	public static AlertRule create(
@@ -85,6 +105,6 @@ public abstract class AlertRule {
             DateTime createdAt,
             String creatorUserId,
             DateTime lastModified) {
-		return new AutoValue_AlertRule(title, alertType, pattern, notificationID, createdAt, creatorUserId, lastModified);
+		return create(null, title, alertType, pattern, notificationID, createdAt, creatorUserId, lastModified, 0);
 	}
 }
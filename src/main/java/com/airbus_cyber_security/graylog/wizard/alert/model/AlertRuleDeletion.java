@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.model;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.joda.time.DateTime;
+
+import jakarta.validation.constraints.NotNull;
+
+// tombstone of a deleted alert rule
+@AutoValue
+@JsonAutoDetect
+public abstract class AlertRuleDeletion {
+
+    @JsonProperty("title")
+    @NotNull
+    public abstract String getTitle();
+
+    @JsonProperty("deleted_at")
+    @NotNull
+    public abstract DateTime getDeletedAt();
+
+    @JsonCreator
+    public static AlertRuleDeletion create(@JsonProperty("_id") String objectId,
+                                           @JsonProperty("title") String title,
+                                           @JsonProperty("deleted_at") DateTime deletedAt) {
+        return create(title, deletedAt);
+    }
+
+    public static AlertRuleDeletion create(String title, DateTime deletedAt) {
+        return new AutoValue_AlertRuleDeletion(title, deletedAt);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.model;
+
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.requests.AlertRuleRequest;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.NotNull;
+import org.joda.time.DateTime;
+import org.mongojack.Id;
+import org.mongojack.ObjectId;
+
+/**
+ * Provisioning of an alert rule which runs in the background, see the async parameter of the alert rules endpoints.
+ */
+@AutoValue
+@JsonAutoDetect
+@JsonDeserialize(builder = AlertRuleJob.Builder.class)
+public abstract class AlertRuleJob {
+
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    public enum State {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_TYPE = "type";
+    public static final String FIELD_STATE = "state";
+    public static final String FIELD_TITLE = "title";
+    public static final String FIELD_ALERT_TITLE = "alert_title";
+    public static final String FIELD_REQUEST = "request";
+    public static final String FIELD_USER_ID = "user_id";
+    public static final String FIELD_USER_NAME = "user_name";
+    public static final String FIELD_NODE_ID = "node_id";
+    public static final String FIELD_ATTEMPTS = "attempts";
+    public static final String FIELD_ERROR = "error";
+    public static final String FIELD_CREATED_AT = "created_at";
+    public static final String FIELD_UPDATED_AT = "updated_at";
+    public static final String FIELD_FINISHED_AT = "finished_at";
+    public static final String FIELD_PROVISIONED = "provisioned";
+
+    @Id
+    @ObjectId
+    @Nullable
+    @JsonProperty(FIELD_ID)
+    public abstract String id();
+
+    @JsonProperty(FIELD_TYPE)
+    @NotNull
+    public abstract Type type();
+
+    @JsonProperty(FIELD_STATE)
+    @NotNull
+    public abstract State state();
+
+    // title of the rule as given in the request path or body
+    @JsonProperty(FIELD_TITLE)
+    @NotNull
+    public abstract String title();
+
+    // title under which the rule is created, after the import policy has been applied
+    @JsonProperty(FIELD_ALERT_TITLE)
+    @Nullable
+    public abstract String alertTitle();
+
+    // absent for deletions
+    @JsonProperty(FIELD_REQUEST)
+    @Nullable
+    public abstract AlertRuleRequest request();
+
+    @JsonProperty(FIELD_USER_ID)
+    @NotNull
+    public abstract String userId();
+
+    @JsonProperty(FIELD_USER_NAME)
+    @NotNull
+    public abstract String userName();
+
+    // node which runs the job
+    @JsonProperty(FIELD_NODE_ID)
+    @Nullable
+    public abstract String nodeId();
+
+    @JsonProperty(FIELD_ATTEMPTS)
+    public abstract int attempts();
+
+    @JsonProperty(FIELD_ERROR)
+    @Nullable
+    public abstract String error();
+
+    @JsonProperty(FIELD_CREATED_AT)
+    @NotNull
+    public abstract DateTime createdAt();
+
+    @JsonProperty(FIELD_UPDATED_AT)
+    @NotNull
+    public abstract DateTime updatedAt();
+
+    @JsonProperty(FIELD_FINISHED_AT)
+    @Nullable
+    public abstract DateTime finishedAt();
+
+    // entities created by the current attempt of a creation, until the rule is saved
+    @JsonProperty(FIELD_PROVISIONED)
+    @Nullable
+    public abstract ProvisionedEntities provisioned();
+
+    public static Builder builder() {
+        return Builder.create();
+    }
+
+    public abstract Builder toBuilder();
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonCreator
+        public static Builder create() {
+            return new AutoValue_AlertRuleJob.Builder().attempts(0);
+        }
+
+        @Id
+        @ObjectId
+        @JsonProperty(FIELD_ID)
+        public abstract Builder id(String id);
+
+        @JsonProperty(FIELD_TYPE)
+        public abstract Builder type(Type type);
+
+        @JsonProperty(FIELD_STATE)
+        public abstract Builder state(State state);
+
+        @JsonProperty(FIELD_TITLE)
+        public abstract Builder title(String title);
+
+        @JsonProperty(FIELD_ALERT_TITLE)
+        public abstract Builder alertTitle(String alertTitle);
+
+        @JsonProperty(FIELD_REQUEST)
+        public abstract Builder request(AlertRuleRequest request);
+
+        @JsonProperty(FIELD_USER_ID)
+        public abstract Builder userId(String userId);
+
+        @JsonProperty(FIELD_USER_NAME)
+        public abstract Builder userName(String userName);
+
+        @JsonProperty(FIELD_NODE_ID)
+        public abstract Builder nodeId(String nodeId);
+
+        @JsonProperty(FIELD_ATTEMPTS)
+        public abstract Builder attempts(int attempts);
+
+        @JsonProperty(FIELD_ERROR)
+        public abstract Builder error(String error);
+
+        @JsonProperty(FIELD_CREATED_AT)
+        public abstract Builder createdAt(DateTime createdAt);
+
+        @JsonProperty(FIELD_UPDATED_AT)
+        public abstract Builder updatedAt(DateTime updatedAt);
+
+        @JsonProperty(FIELD_FINISHED_AT)
+        public abstract Builder finishedAt(DateTime finishedAt);
+
+        @JsonProperty(FIELD_PROVISIONED)
+        public abstract Builder provisioned(ProvisionedEntities provisioned);
+
+        public abstract AlertRuleJob build();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.alert.model;
+
+import com.google.auto.value.AutoValue;
+
+// test of the value of a message field against a list, whatever the rule it belongs to
+@AutoValue
+public abstract class ListCondition {
+
+    public abstract String list();
+
+    public abstract String field();
+
+    public static ListCondition create(String list, String field) {
+        return new AutoValue_ListCondition(list, field);
+    }
+
+    public static ListCondition of(FieldRule fieldRule) {
+        return create(fieldRule.getValue(), fieldRule.getField());
+    }
+}
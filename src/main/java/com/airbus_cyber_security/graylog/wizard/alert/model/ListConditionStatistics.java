@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.alert.model;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Counts of the messages sampled for a {@link ListCondition} since the previous planning, with the ratios the
+ * pipeline rules are currently planned with, so that every node orders the conditions the same way.
+ */
+@AutoValue
+@JsonAutoDetect
+@JsonIgnoreProperties(ignoreUnknown = true)
+public abstract class ListConditionStatistics {
+
+    public static final String FIELD_LIST = "list";
+    public static final String FIELD_FIELD = "field";
+    public static final String FIELD_SAMPLED = "sampled";
+    public static final String FIELD_PRESENT = "present";
+    public static final String FIELD_HITS = "hits";
+    public static final String FIELD_PLANNED_PRESENT_RATIO = "planned_present_ratio";
+    public static final String FIELD_PLANNED_HIT_RATIO = "planned_hit_ratio";
+
+    @JsonProperty(FIELD_LIST)
+    @NotNull
+    public abstract String getList();
+
+    @JsonProperty(FIELD_FIELD)
+    @NotNull
+    public abstract String getField();
+
+    // number of sampled messages
+    @JsonProperty(FIELD_SAMPLED)
+    public abstract long getSampled();
+
+    // number of sampled messages which have the field
+    @JsonProperty(FIELD_PRESENT)
+    public abstract long getPresent();
+
+    // number of sampled messages whose field value belongs to the list
+    @JsonProperty(FIELD_HITS)
+    public abstract long getHits();
+
+    @JsonProperty(FIELD_PLANNED_PRESENT_RATIO)
+    @Nullable
+    public abstract Double getPlannedPresentRatio();
+
+    @JsonProperty(FIELD_PLANNED_HIT_RATIO)
+    @Nullable
+    public abstract Double getPlannedHitRatio();
+
+    public ListCondition condition() {
+        return ListCondition.create(this.getList(), this.getField());
+    }
+
+    @JsonCreator
+    public static ListConditionStatistics create(@JsonProperty("_id") String objectId,
+                                                 @JsonProperty(FIELD_LIST) String list,
+                                                 @JsonProperty(FIELD_FIELD) String field,
+                                                 @JsonProperty(FIELD_SAMPLED) long sampled,
+                                                 @JsonProperty(FIELD_PRESENT) long present,
+                                                 @JsonProperty(FIELD_HITS) long hits,
+                                                 @JsonProperty(FIELD_PLANNED_PRESENT_RATIO) Double plannedPresentRatio,
+                                                 @JsonProperty(FIELD_PLANNED_HIT_RATIO) Double plannedHitRatio) {
+        return new AutoValue_ListConditionStatistics(list, field, sampled, present, hits, plannedPresentRatio, plannedHitRatio);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.alert.model;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+
+/**
+ * Graylog entities created so far while provisioning a rule, stored on its {@link AlertRuleJob} for background jobs.
+ * Lists appear once per increment of their usage.
+ */
+@AutoValue
+@JsonAutoDetect
+@JsonIgnoreProperties(ignoreUnknown = true)
+public abstract class ProvisionedEntities {
+
+    public static final String FIELD_STREAMS = "streams";
+    public static final String FIELD_PIPELINES = "pipelines";
+    public static final String FIELD_RULES = "rules";
+    public static final String FIELD_EVENT_DEFINITIONS = "event_definitions";
+    public static final String FIELD_NOTIFICATIONS = "notifications";
+    public static final String FIELD_LISTS = "lists";
+
+    @JsonProperty(FIELD_STREAMS)
+    public abstract List<String> streams();
+
+    @JsonProperty(FIELD_PIPELINES)
+    public abstract List<String> pipelines();
+
+    @JsonProperty(FIELD_RULES)
+    public abstract List<String> rules();
+
+    @JsonProperty(FIELD_EVENT_DEFINITIONS)
+    public abstract List<String> eventDefinitions();
+
+    @JsonProperty(FIELD_NOTIFICATIONS)
+    public abstract List<String> notifications();
+
+    @JsonProperty(FIELD_LISTS)
+    public abstract List<String> lists();
+
+    @JsonCreator
+    public static ProvisionedEntities create(@JsonProperty(FIELD_STREAMS) List<String> streams,
+                                             @JsonProperty(FIELD_PIPELINES) List<String> pipelines,
+                                             @JsonProperty(FIELD_RULES) List<String> rules,
+                                             @JsonProperty(FIELD_EVENT_DEFINITIONS) List<String> eventDefinitions,
+                                             @JsonProperty(FIELD_NOTIFICATIONS) List<String> notifications,
+                                             @JsonProperty(FIELD_LISTS) List<String> lists) {
+        // fields are pushed one at a time, so that the others may still be missing
+        return new AutoValue_ProvisionedEntities(nullSafe(streams), nullSafe(pipelines), nullSafe(rules),
+                nullSafe(eventDefinitions), nullSafe(notifications), nullSafe(lists));
+    }
+
+    private static List<String> nullSafe(List<String> values) {
+        return (values == null) ? List.of() : List.copyOf(values);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.persistence;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleDeletion;
+import com.mongodb.BasicDBObject;
+import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.database.PaginatedDbService;
+import org.joda.time.DateTime;
+import org.mongojack.DBCursor;
+import org.mongojack.DBQuery;
+
+import jakarta.inject.Inject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log of the deleted alert rules, so that clients can synchronize incrementally.
+ * Entries are removed by MongoDB after RETENTION_DAYS.
+ */
+public class AlertRuleDeletionCollection extends PaginatedDbService<AlertRuleDeletion> {
+
+    public static final int RETENTION_DAYS = 30;
+
+    private static final String COLLECTION_NAME = "wizard_alert_deletions";
+    private static final String DELETED_AT = "deleted_at";
+
+    @Inject
+    public AlertRuleDeletionCollection(MongoConnection mongoConnection, MongoJackObjectMapperProvider mapperProvider) {
+        super(mongoConnection, mapperProvider, AlertRuleDeletion.class, COLLECTION_NAME);
+        this.db.createIndex(new BasicDBObject(DELETED_AT, 1),
+                new BasicDBObject("expireAfterSeconds", TimeUnit.DAYS.toSeconds(RETENTION_DAYS)));
+    }
+
+    public AlertRuleDeletion create(AlertRuleDeletion deletion) {
+        return this.save(deletion);
+    }
+
+    public void create(List<AlertRuleDeletion> deletions) {
+        if (deletions.isEmpty()) {
+            return;
+        }
+        this.db.insert(deletions);
+    }
+
+    public List<AlertRuleDeletion> findDeletedSince(DateTime since) {
+        try (DBCursor<AlertRuleDeletion> cursor = this.db.find(DBQuery.greaterThan(DELETED_AT, since.toDate())).sort(new BasicDBObject(DELETED_AT, 1))) {
+            return cursor.toArray();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.persistence;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleJob;
+import com.mongodb.BasicDBObject;
+import org.bson.types.ObjectId;
+import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.database.PaginatedDbService;
+import org.joda.time.DateTime;
+import org.mongojack.DBQuery;
+import org.mongojack.DBSort;
+import org.mongojack.DBUpdate;
+
+import jakarta.inject.Inject;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alert rule provisioning jobs. Jobs are claimed atomically by the node which runs them.
+ * Finished jobs are removed by MongoDB after RETENTION_DAYS.
+ */
+public class AlertRuleJobCollection extends PaginatedDbService<AlertRuleJob> {
+
+    public static final int RETENTION_DAYS = 7;
+
+    private static final String COLLECTION_NAME = "wizard_jobs";
+    private static final String ID = "_id";
+
+    @Inject
+    public AlertRuleJobCollection(MongoConnection mongoConnection, MongoJackObjectMapperProvider mapperProvider) {
+        super(mongoConnection, mapperProvider, AlertRuleJob.class, COLLECTION_NAME);
+        this.db.createIndex(new BasicDBObject(AlertRuleJob.FIELD_STATE, 1).append(AlertRuleJob.FIELD_CREATED_AT, 1));
+        // unfinished jobs have no finished_at field, so they never expire
+        this.db.createIndex(new BasicDBObject(AlertRuleJob.FIELD_FINISHED_AT, 1),
+                new BasicDBObject("expireAfterSeconds", TimeUnit.DAYS.toSeconds(RETENTION_DAYS)));
+    }
+
+    public AlertRuleJob create(AlertRuleJob job) {
+        return this.save(job);
+    }
+
+    public AlertRuleJob update(AlertRuleJob job) {
+        return this.save(job);
+    }
+
+    /**
+     * Appends the identifier of an entity the job just created to one of the lists of its provisioned entities.
+     * The job is not read back, so that entities are recorded at the cost of a single write each.
+     */
+    public void recordProvisioned(String jobIdentifier, String field, String entityIdentifier, DateTime now) {
+        DBUpdate.Builder update = DBUpdate.push(AlertRuleJob.FIELD_PROVISIONED + "." + field, entityIdentifier)
+                .set(AlertRuleJob.FIELD_UPDATED_AT, now.toDate());
+        this.db.update(DBQuery.is(ID, new ObjectId(jobIdentifier)), update);
+    }
+
+    public void forgetProvisioned(String jobIdentifier) {
+        this.db.update(DBQuery.is(ID, new ObjectId(jobIdentifier)), DBUpdate.unset(AlertRuleJob.FIELD_PROVISIONED));
+    }
+
+    /**
+     * Atomically moves a pending job to the running state on the given node.
+     * Returns empty if the job does not exist or was already claimed.
+     */
+    public Optional<AlertRuleJob> claim(String jobIdentifier, String nodeIdentifier, DateTime now) {
+        DBQuery.Query query = DBQuery.is(ID, new ObjectId(jobIdentifier)).is(AlertRuleJob.FIELD_STATE, AlertRuleJob.State.PENDING.name());
+        return Optional.ofNullable(this.claim(query, nodeIdentifier, now));
+    }
+
+    /**
+     * Atomically moves the oldest pending job to the running state on the given node.
+     */
+    public Optional<AlertRuleJob> claimNext(String nodeIdentifier, DateTime now) {
+        DBQuery.Query query = DBQuery.is(AlertRuleJob.FIELD_STATE, AlertRuleJob.State.PENDING.name());
+        return Optional.ofNullable(this.claim(query, nodeIdentifier, now));
+    }
+
+    private AlertRuleJob claim(DBQuery.Query query, String nodeIdentifier, DateTime now) {
+        DBUpdate.Builder update = DBUpdate.set(AlertRuleJob.FIELD_STATE, AlertRuleJob.State.RUNNING.name())
+                .set(AlertRuleJob.FIELD_NODE_ID, nodeIdentifier)
+                .set(AlertRuleJob.FIELD_UPDATED_AT, now.toDate())
+                .inc(AlertRuleJob.FIELD_ATTEMPTS);
+        return this.db.findAndModify(query, null, DBSort.asc(AlertRuleJob.FIELD_CREATED_AT), false, update, true, false);
+    }
+
+    /**
+     * Puts back into the pending state the jobs which were running on the given node, typically before it restarted.
+     */
+    public int requeue(String nodeIdentifier) {
+        DBQuery.Query query = DBQuery.is(AlertRuleJob.FIELD_STATE, AlertRuleJob.State.RUNNING.name()).is(AlertRuleJob.FIELD_NODE_ID, nodeIdentifier);
+        return this.requeue(query);
+    }
+
+    /**
+     * Puts back into the pending state the running jobs which have not progressed since the given date,
+     * for instance because the node which ran them is gone.
+     */
+    public int requeueStale(DateTime before) {
+        DBQuery.Query query = DBQuery.is(AlertRuleJob.FIELD_STATE, AlertRuleJob.State.RUNNING.name()).lessThan(AlertRuleJob.FIELD_UPDATED_AT, before.toDate());
+        return this.requeue(query);
+    }
+
+    private int requeue(DBQuery.Query query) {
+        DBUpdate.Builder update = DBUpdate.set(AlertRuleJob.FIELD_STATE, AlertRuleJob.State.PENDING.name()).unset(AlertRuleJob.FIELD_NODE_ID);
+        return this.db.updateMulti(query, update).getN();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.alert.persistence;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListCondition;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListConditionStatistics;
+import com.mongodb.BasicDBObject;
+import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.database.PaginatedDbService;
+import org.mongojack.DBCursor;
+import org.mongojack.DBQuery;
+import org.mongojack.DBUpdate;
+
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of the list conditions of the alert rules, one document per list and field.
+ * Counts are only ever incremented or decremented, so that the samples of all nodes add up without reading them first.
+ */
+public class ListConditionStatisticsCollection extends PaginatedDbService<ListConditionStatistics> {
+
+    private static final String COLLECTION_NAME = "wizard_list_conditions";
+
+    @Inject
+    public ListConditionStatisticsCollection(MongoConnection mongoConnection, MongoJackObjectMapperProvider mapperProvider) {
+        super(mongoConnection, mapperProvider, ListConditionStatistics.class, COLLECTION_NAME);
+        this.db.createIndex(new BasicDBObject(ListConditionStatistics.FIELD_LIST, 1).append(ListConditionStatistics.FIELD_FIELD, 1),
+                new BasicDBObject("unique", true));
+    }
+
+    private static DBQuery.Query is(ListCondition condition) {
+        return DBQuery.is(ListConditionStatistics.FIELD_LIST, condition.list()).is(ListConditionStatistics.FIELD_FIELD, condition.field());
+    }
+
+    public List<ListConditionStatistics> all() {
+        try (DBCursor<ListConditionStatistics> cursor = this.db.find(DBQuery.empty())) {
+            return cursor.toArray();
+        }
+    }
+
+    /**
+     * Loads the statistics of several conditions with a single query.
+     * Conditions which were never registered are absent from the result.
+     */
+    public Map<ListCondition, ListConditionStatistics> load(Collection<ListCondition> conditions) {
+        Map<ListCondition, ListConditionStatistics> result = new HashMap<>();
+        if (conditions.isEmpty()) {
+            return result;
+        }
+        List<DBQuery.Query> queries = new ArrayList<>();
+        for (ListCondition condition: conditions) {
+            queries.add(is(condition));
+        }
+        try (DBCursor<ListConditionStatistics> cursor = this.db.find(DBQuery.or(queries.toArray(new DBQuery.Query[0])))) {
+            while (cursor.hasNext()) {
+                ListConditionStatistics statistics = cursor.next();
+                result.put(statistics.condition(), statistics);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the document of the condition if it does not exist yet, so that nodes start sampling it.
+     */
+    public void register(ListCondition condition) {
+        this.db.update(is(condition), DBUpdate.inc(ListConditionStatistics.FIELD_SAMPLED, 0), true, false);
+    }
+
+    public void addSamples(ListCondition condition, long sampled, long present, long hits) {
+        DBUpdate.Builder update = DBUpdate.inc(ListConditionStatistics.FIELD_SAMPLED, sampled)
+                .inc(ListConditionStatistics.FIELD_PRESENT, present)
+                .inc(ListConditionStatistics.FIELD_HITS, hits);
+        this.db.update(is(condition), update);
+    }
+
+    /**
+     * Subtracts the samples which were just measured, samples added concurrently by other nodes are kept for the next
+     * measure.
+     */
+    public void consumeSamples(ListConditionStatistics statistics) {
+        this.addSamples(statistics.condition(), -statistics.getSampled(), -statistics.getPresent(), -statistics.getHits());
+    }
+
+    public void plan(ListCondition condition, double presentRatio, double hitRatio) {
+        DBUpdate.Builder update = DBUpdate.set(ListConditionStatistics.FIELD_PLANNED_PRESENT_RATIO, presentRatio)
+                .set(ListConditionStatistics.FIELD_PLANNED_HIT_RATIO, hitRatio);
+        this.db.update(is(condition), update);
+    }
+
+    public void delete(ListCondition condition) {
+        this.db.remove(is(condition));
+    }
+}
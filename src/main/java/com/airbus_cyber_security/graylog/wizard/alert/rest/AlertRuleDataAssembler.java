@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.rest;
+
+import com.airbus_cyber_security.graylog.wizard.alert.business.EventDefinitionService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.NotificationService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.StreamPipelineService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.TriggeringConditionsService;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AggregationAlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPatterns;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.CorrelationAlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.DisjunctionAlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.model.FieldRule;
+import com.airbus_cyber_security.graylog.wizard.alert.model.TriggeringConditions;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.AlertRuleStream;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetDataAlertRule;
+import com.airbus_cyber_security.graylog.wizard.config.AlertWizardPluginConfiguration;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.graylog.events.notifications.NotificationDto;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog.events.processor.EventDefinitionDto;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.system.shutdown.GracefulShutdownHook;
+import org.graylog2.system.shutdown.GracefulShutdownService;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the REST representation of alert rules.
+ *
+ * The streams, event definitions and notifications referenced by a batch of rules are loaded with one query per kind
+ * of entity and then joined in memory. So the number of database round trips does not grow with the number of rules.
+ * Large batches are split into chunks which are assembled concurrently by a bounded pool of threads.
+ */
+@Singleton
+public class AlertRuleDataAssembler implements GracefulShutdownHook {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertRuleDataAssembler.class);
+    private static final int CHUNK_SIZE = 100;
+
+    private final TriggeringConditionsService triggeringConditionsService;
+    private final StreamPipelineService streamPipelineService;
+    private final EventDefinitionService eventDefinitionService;
+    private final NotificationService notificationService;
+    private final Conversions conversions;
+    private final ExecutorService executor;
+
+    @Inject
+    public AlertRuleDataAssembler(TriggeringConditionsService triggeringConditionsService,
+                                  StreamPipelineService streamPipelineService,
+                                  EventDefinitionService eventDefinitionService,
+                                  NotificationService notificationService,
+                                  Conversions conversions,
+                                  GracefulShutdownService gracefulShutdownService,
+                                  @Named(AlertWizardPluginConfiguration.ASSEMBLY_THREADS) int assemblyThreads) {
+        this.triggeringConditionsService = triggeringConditionsService;
+        this.streamPipelineService = streamPipelineService;
+        this.eventDefinitionService = eventDefinitionService;
+        this.notificationService = notificationService;
+        this.conversions = conversions;
+        // when all threads are busy and the queue is full, the calling thread assembles the chunk itself
+        this.executor = new ThreadPoolExecutor(assemblyThreads, assemblyThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(assemblyThreads * 4),
+                new ThreadFactoryBuilder().setNameFormat("alert-wizard-assembly-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        gracefulShutdownService.register(this);
+    }
+
+    @Override
+    public void doGracefulShutdown() {
+        this.executor.shutdownNow();
+    }
+
+    public GetDataAlertRule assemble(AlertRule alert) {
+        return this.assemble(List.of(alert)).get(0);
+    }
+
+    public List<GetDataAlertRule> assemble(List<AlertRule> alerts) {
+        return this.assemble(alerts, AlertRuleFields.ALL);
+    }
+
+    /**
+     * Returns the views in the same order as the rules.
+     * Only the requested fields are filled, the entities which are needed solely for the other fields are not loaded.
+     */
+    public List<GetDataAlertRule> assemble(List<AlertRule> alerts, AlertRuleFields fields) {
+        if (alerts.size() <= CHUNK_SIZE) {
+            return this.assembleChunk(alerts, fields);
+        }
+        List<Future<List<GetDataAlertRule>>> chunks = new ArrayList<>();
+        for (List<AlertRule> chunk: Lists.partition(alerts, CHUNK_SIZE)) {
+            chunks.add(this.executor.submit(() -> this.assembleChunk(chunk, fields)));
+        }
+        List<GetDataAlertRule> result = new ArrayList<>(alerts.size());
+        for (Future<List<GetDataAlertRule>> chunk: chunks) {
+            result.addAll(Futures.getUnchecked(chunk));
+        }
+        return result;
+    }
+
+    private List<GetDataAlertRule> assembleChunk(List<AlertRule> alerts, AlertRuleFields fields) {
+        Set<String> streamIdentifiers = new HashSet<>();
+        Set<String> eventIdentifiers = new HashSet<>();
+        Set<String> notificationIdentifiers = new HashSet<>();
+        for (AlertRule alert: alerts) {
+            for (TriggeringConditions conditions: AlertPatterns.getConditions(alert.pattern())) {
+                addIfNotNull(streamIdentifiers, conditions.filteringStreamIdentifier());
+            }
+            for (String eventIdentifier: AlertPatterns.getEventIdentifiers(alert.pattern())) {
+                addIfNotNull(eventIdentifiers, eventIdentifier);
+            }
+            addIfNotNull(notificationIdentifiers, alert.getNotificationID());
+        }
+
+        if (!fields.includesAny(AlertRuleFields.STREAM, AlertRuleFields.SECOND_STREAM, AlertRuleFields.DISABLED)) {
+            streamIdentifiers.clear();
+        }
+        if (!fields.includesAny(AlertRuleFields.CONDITION, AlertRuleFields.SECOND_EVENT_DEFINITION, AlertRuleFields.DESCRIPTION,
+                AlertRuleFields.PRIORITY, AlertRuleFields.CONDITION_PARAMETERS, AlertRuleFields.DISABLED)) {
+            eventIdentifiers.clear();
+        }
+        if (!fields.includes(AlertRuleFields.NOTIFICATION)) {
+            notificationIdentifiers.clear();
+        }
+
+        Dependencies dependencies = new Dependencies(
+                this.streamPipelineService.loadStreams(streamIdentifiers),
+                this.eventDefinitionService.getEventDefinitions(eventIdentifiers),
+                this.notificationService.get(notificationIdentifiers));
+
+        List<GetDataAlertRule> result = new ArrayList<>(alerts.size());
+        for (AlertRule alert: alerts) {
+            try {
+                result.add(this.constructDataAlertRule(alert, dependencies, fields));
+            } catch (RuntimeException e) {
+                // a single corrupted rule should not prevent the others from being listed
+                LOG.warn("Failed to assemble alert rule {}", alert.getTitle(), e);
+                result.add(constructPartialDataAlertRule(alert));
+            }
+        }
+        return result;
+    }
+
+    private static GetDataAlertRule constructPartialDataAlertRule(AlertRule alert) {
+        return GetDataAlertRule.create(alert.getId(),
+                alert.getTitle(),
+                null,
+                null,
+                null,
+                alert.getNotificationID(),
+                alert.getCreatedAt(),
+                alert.getCreatorUserId(),
+                alert.getLastModified(),
+                false,
+                null,
+                alert.getAlertType(),
+                null,
+                null,
+                null,
+                alert.getVersion());
+    }
+
+    private AlertRuleStream constructAlertRuleStream(TriggeringConditions conditions, Stream filteringStream, boolean isRequested) {
+        if (!isRequested) {
+            return null;
+        }
+        List<FieldRule> fieldRules = this.triggeringConditionsService.getFieldRules(conditions, filteringStream);
+        return AlertRuleStream.create(conditions.filteringStreamIdentifier(), conditions.matchingType(), fieldRules);
+    }
+
+    private GetDataAlertRule constructDataAlertRule(AlertRule alert, Dependencies dependencies, AlertRuleFields fields) {
+        boolean withStream = fields.includes(AlertRuleFields.STREAM);
+        boolean withSecondStream = fields.includes(AlertRuleFields.SECOND_STREAM);
+        boolean withConditionParameters = fields.includes(AlertRuleFields.CONDITION_PARAMETERS);
+        AlertPattern alertPattern = alert.pattern();
+        DateTime lastModified = alert.getLastModified();
+        Optional<EventDefinitionDto> event = Optional.empty();
+        Optional<EventDefinitionDto> event2 = Optional.empty();
+        Map<String, Object> parametersCondition = null;
+        Map<String, Object> parametersCondition2 = null;
+        boolean isDisabled = false;
+        AlertRuleStream alertRuleStream = null;
+        AlertRuleStream alertRuleStream2 = null;
+        String eventIdentifier2 = null;
+        if (alertPattern instanceof CorrelationAlertPattern pattern) {
+            event = dependencies.getEventDefinition(pattern.eventIdentifier());
+            parametersCondition = getConditionParameters(event, withConditionParameters);
+            TriggeringConditions conditions1 = pattern.conditions1();
+            Stream stream1 = dependencies.getFilteringStream(conditions1);
+            alertRuleStream = this.constructAlertRuleStream(conditions1, stream1, withStream);
+            TriggeringConditions conditions2 = pattern.conditions2();
+            Stream stream2 = dependencies.getFilteringStream(conditions2);
+            alertRuleStream2 = this.constructAlertRuleStream(conditions2, stream2, withSecondStream);
+            isDisabled = this.triggeringConditionsService.isDisabled(stream1) || this.triggeringConditionsService.isDisabled(stream2);
+        } else if (alertPattern instanceof DisjunctionAlertPattern pattern) {
+            event = dependencies.getEventDefinition(pattern.eventIdentifier1());
+            parametersCondition = getConditionParameters(event, withConditionParameters);
+            TriggeringConditions conditions = pattern.conditions1();
+            Stream stream = dependencies.getFilteringStream(conditions);
+            alertRuleStream = this.constructAlertRuleStream(conditions, stream, withStream);
+            TriggeringConditions conditions2 = pattern.conditions2();
+            Stream stream2 = dependencies.getFilteringStream(conditions2);
+            alertRuleStream2 = this.constructAlertRuleStream(conditions2, stream2, withSecondStream);
+            isDisabled = this.triggeringConditionsService.isDisabled(stream) || this.triggeringConditionsService.isDisabled(stream2);
+            eventIdentifier2 = pattern.eventIdentifier2();
+            event2 = dependencies.getEventDefinition(eventIdentifier2);
+            parametersCondition2 = getConditionParameters(event2, withConditionParameters);
+            if (parametersCondition != null && parametersCondition2 != null) {
+                completeParametersConditionForDisjunction(parametersCondition, parametersCondition2);
+            }
+        } else if (alertPattern instanceof AggregationAlertPattern pattern) {
+            event = dependencies.getEventDefinition(pattern.eventIdentifier());
+            parametersCondition = getConditionParameters(event, withConditionParameters);
+            TriggeringConditions conditions = pattern.conditions();
+            Stream stream = dependencies.getFilteringStream(conditions);
+            alertRuleStream = this.constructAlertRuleStream(conditions, stream, withStream);
+            isDisabled = this.triggeringConditionsService.isDisabled(stream);
+        }
+        Optional<NotificationDto> notification = dependencies.getNotification(alert.getNotificationID());
+        String notificationIdentifier = null;
+        if (notification.isPresent()) {
+            NotificationDto notificationDto = notification.get();
+            notificationIdentifier = notificationDto.id();
+        }
+
+        String eventIdentifier = null;
+        String description = null;
+        Integer priority = null;
+        if (event.isPresent()) {
+            EventDefinitionDto eventDefinitionDto = event.get();
+            eventIdentifier = eventDefinitionDto.id();
+            description = eventDefinitionDto.description();
+            priority = eventDefinitionDto.priority();
+            if (EventDefinition.State.DISABLED.equals(eventDefinitionDto.state())) {
+                isDisabled = true;
+            }
+        }
+
+        if (event2.isPresent()) {
+            EventDefinitionDto eventDefinitionDto2 = event2.get();
+            if (EventDefinition.State.DISABLED.equals(eventDefinitionDto2.state())) {
+                isDisabled = true;
+            }
+        }
+
+        return GetDataAlertRule.create(alert.getId(),
+                alert.getTitle(),
+                priority,
+                eventIdentifier,
+                eventIdentifier2,
+                notificationIdentifier,
+                alert.getCreatedAt(),
+                alert.getCreatorUserId(),
+                lastModified,
+                isDisabled,
+                description,
+                alert.getAlertType(),
+                parametersCondition,
+                alertRuleStream,
+                alertRuleStream2,
+                alert.getVersion());
+    }
+
+    private Map<String, Object> getConditionParameters(Optional<EventDefinitionDto> event, boolean isRequested) {
+        if (!isRequested || !event.isPresent()) {
+            return null;
+        }
+        return this.conversions.getConditionParameters(event.get().config());
+    }
+
+    private void completeParametersConditionForDisjunction(Map<String, Object> configParameters, Map<String, Object> configParameters2) {
+        configParameters.put("additional_search_query", configParameters2.get("search_query"));
+        configParameters.put("additional_threshold_type", configParameters2.get("threshold_type"));
+        configParameters.put("additional_threshold", configParameters2.get("threshold"));
+    }
+
+    private static void addIfNotNull(Set<String> identifiers, String identifier) {
+        if (identifier == null) {
+            return;
+        }
+        identifiers.add(identifier);
+    }
+
+    // the entities referenced by a batch of rules, indexed by identifier
+    private record Dependencies(Map<String, Stream> streams,
+                                Map<String, EventDefinitionDto> eventDefinitions,
+                                Map<String, NotificationDto> notifications) {
+
+        // null when the rule has no filtering stream, or when it was deleted (see issue 105)
+        Stream getFilteringStream(TriggeringConditions conditions) {
+            String streamIdentifier = conditions.filteringStreamIdentifier();
+            if (streamIdentifier == null) {
+                return null;
+            }
+            return this.streams.get(streamIdentifier);
+        }
+
+        Optional<EventDefinitionDto> getEventDefinition(String identifier) {
+            if (identifier == null) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(this.eventDefinitions.get(identifier));
+        }
+
+        Optional<NotificationDto> getNotification(String identifier) {
+            if (identifier == null) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(this.notifications.get(identifier));
+        }
+    }
+}
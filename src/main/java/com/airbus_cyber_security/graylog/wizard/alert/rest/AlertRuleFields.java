@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.ws.rs.BadRequestException;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The properties of GetDataAlertRule requested by a client through the fields query parameter.
+ */
+public class AlertRuleFields {
+
+    public static final String ID = "id";
+    public static final String TITLE = "title";
+    public static final String PRIORITY = "priority";
+    public static final String DESCRIPTION = "description";
+    public static final String CONDITION_TYPE = "condition_type";
+    public static final String CONDITION_PARAMETERS = "condition_parameters";
+    public static final String STREAM = "stream";
+    public static final String SECOND_STREAM = "second_stream";
+    public static final String CONDITION = "condition";
+    public static final String SECOND_EVENT_DEFINITION = "second_event_definition";
+    public static final String NOTIFICATION = "notification";
+    public static final String CREATED_AT = "created_at";
+    public static final String CREATOR_USER_ID = "creator_user_id";
+    public static final String LAST_MODIFIED = "last_modified";
+    public static final String DISABLED = "disabled";
+    public static final String VERSION = "version";
+
+    private static final Set<String> NAMES = Set.of(ID, TITLE, PRIORITY, DESCRIPTION, CONDITION_TYPE, CONDITION_PARAMETERS,
+            STREAM, SECOND_STREAM, CONDITION, SECOND_EVENT_DEFINITION, NOTIFICATION, CREATED_AT, CREATOR_USER_ID,
+            LAST_MODIFIED, DISABLED, VERSION);
+
+    public static final AlertRuleFields ALL = new AlertRuleFields(NAMES);
+
+    private final Set<String> names;
+
+    private AlertRuleFields(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Parses a comma separated list of fields. All fields are requested when the parameter is absent or empty.
+     * The title is always included since it identifies the rule.
+     */
+    public static AlertRuleFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> names = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toSet());
+        for (String name: names) {
+            if (!NAMES.contains(name)) {
+                throw new BadRequestException("Invalid field " + name + ", should be one of: " + NAMES);
+            }
+        }
+        names.add(TITLE);
+        return new AlertRuleFields(Set.copyOf(names));
+    }
+
+    public boolean isAll() {
+        return this.names.equals(NAMES);
+    }
+
+    public Set<String> names() {
+        return this.names;
+    }
+
+    public boolean includes(String name) {
+        return this.names.contains(name);
+    }
+
+    public boolean includesAny(String... names) {
+        for (String name: names) {
+            if (this.names.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Object project(ObjectMapper objectMapper, Object alert) {
+        if (this.isAll()) {
+            return alert;
+        }
+        ObjectNode result = objectMapper.valueToTree(alert);
+        result.retain(this.names);
+        return result;
+    }
+}
@@ -18,28 +18,45 @@
 // TODO should rename package rest into resources
 package com.airbus_cyber_security.graylog.wizard.alert.rest;
 
-import com.airbus_cyber_security.graylog.wizard.alert.business.TriggeringConditionsService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleDeletionService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleProvisioningService;
 import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleService;
-import com.airbus_cyber_security.graylog.wizard.alert.business.EventDefinitionService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleStateService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleStatusService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ClusterEventPublisher;
 import com.airbus_cyber_security.graylog.wizard.alert.business.NotificationService;
-import com.airbus_cyber_security.graylog.wizard.alert.model.TriggeringConditions;
-import com.airbus_cyber_security.graylog.wizard.alert.model.AlertPattern;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ProvisioningJournal;
+import com.airbus_cyber_security.graylog.wizard.alert.jobs.AlertRuleJobService;
 import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
-import com.airbus_cyber_security.graylog.wizard.alert.model.AlertType;
-import com.airbus_cyber_security.graylog.wizard.alert.model.AggregationAlertPattern;
-import com.airbus_cyber_security.graylog.wizard.alert.model.CorrelationAlertPattern;
-import com.airbus_cyber_security.graylog.wizard.alert.model.DisjunctionAlertPattern;
-import com.airbus_cyber_security.graylog.wizard.alert.model.FieldRule;
-import com.airbus_cyber_security.graylog.wizard.alert.rest.models.AlertRuleStream;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleDeletion;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleJob;
+import com.airbus_cyber_security.graylog.wizard.alert.model.ProvisionedEntities;
+import com.airbus_cyber_security.graylog.wizard.alert.persistence.AlertRuleDeletionCollection;
 import com.airbus_cyber_security.graylog.wizard.alert.rest.models.requests.AlertRuleRequest;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.requests.AlertRulesDeletionRequest;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.requests.AlertRulesStateRequest;
 import com.airbus_cyber_security.graylog.wizard.alert.rest.models.requests.CloneAlertRuleRequest;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.AlertRuleBulkResult;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetAlertRuleBulkResults;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetAlertRuleChanges;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetAlertRuleJob;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetAlertRulesDeletionResults;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetAlertRulesStateResults;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetAlertRulesStatus;
 import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetDataAlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetPageAlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleViewCache;
+import com.airbus_cyber_security.graylog.wizard.alert.views.AlertRuleViewService;
 import com.airbus_cyber_security.graylog.wizard.audit.AlertWizardAuditEventTypes;
 import com.airbus_cyber_security.graylog.wizard.config.rest.AlertWizardConfig;
 import com.airbus_cyber_security.graylog.wizard.config.rest.AlertWizardConfigurationService;
 import com.airbus_cyber_security.graylog.wizard.config.rest.ImportPolicyType;
+import com.airbus_cyber_security.graylog.wizard.database.TitleLocks;
+import com.airbus_cyber_security.graylog.wizard.database.VersionConflictException;
 import com.airbus_cyber_security.graylog.wizard.permissions.AlertRuleRestPermissions;
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.MongoException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -47,44 +64,53 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import org.apache.shiro.authz.annotation.RequiresAuthentication;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
-import org.graylog.events.notifications.NotificationDto;
-import org.graylog.events.processor.EventDefinition;
-import org.graylog.events.processor.EventDefinitionDto;
-import org.graylog.events.processor.EventProcessorConfig;
+import org.bson.types.ObjectId;
 import org.graylog.events.processor.aggregation.AggregationEventProcessorConfig;
-import org.graylog.events.rest.EventNotificationsResource;
-import org.graylog.security.UserContext;
 import org.graylog2.audit.jersey.AuditEvent;
 import org.graylog2.database.NotFoundException;
+import org.graylog2.database.PaginatedList;
 import org.graylog2.plugin.database.ValidationException;
+import org.graylog2.plugin.database.users.User;
 import org.graylog2.plugin.rest.PluginRestResource;
 import org.graylog2.shared.rest.resources.RestResource;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.mongojack.DBCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.core.CacheControl;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Api(value = "Wizard/Alerts", description = "Management of Wizard alerts rules.")
 @Path("/alerts")
@@ -95,196 +121,291 @@ public class AlertRuleResource extends RestResource implements PluginRestResourc
 
     private static final String ENCODING = "UTF-8";
     private static final String TITLE = "title";
+    private static final int MAXIMUM_PER_PAGE = 500;
+    private static final int STREAMING_BATCH_SIZE = 500;
+    // last_modified and deletion dates are assigned by the clock of the node which wrote them, hence possibly behind
+    // the clock of the node which answered the previous request for changes
+    private static final int CHANGES_OVERLAP_SECONDS = 60;
+    private static final int MAXIMUM_BULK_SIZE = 1000;
 
     // TODO try to remove this field => move it down in business
     private final AlertWizardConfigurationService configurationService;
 
-    // TODO try to remove this field => Use AlertRuleUtilsService
-    private final EventNotificationsResource eventNotificationsResource;
-    private final EventDefinitionService eventDefinitionService;
-
     private final AlertRuleService alertRuleService;
     private final Conversions conversions;
-    private final TriggeringConditionsService triggeringConditionsService;
     private final NotificationService notificationService;
+    private final AlertRuleDataAssembler alertRuleDataAssembler;
+    private final AlertRuleViewService alertRuleViewService;
+    private final AlertRuleViewCache alertRuleViewCache;
+    private final AlertRuleDeletionCollection alertRuleDeletionCollection;
+    private final AlertRuleStatusService alertRuleStatusService;
+    private final AlertRuleStateService alertRuleStateService;
+    private final AlertRuleDeletionService alertRuleDeletionService;
+    private final AlertRuleProvisioningService alertRuleProvisioningService;
+    private final ProvisioningJournal provisioningJournal;
+    private final TitleLocks titleLocks;
+    private final ClusterEventPublisher clusterEventPublisher;
+    private final AlertRuleJobService alertRuleJobService;
+    private final ObjectMapper objectMapper;
 
     @Inject
     public AlertRuleResource(AlertRuleService alertRuleService,
-                             TriggeringConditionsService triggeringConditionsService,
                              AlertWizardConfigurationService configurationService,
-                             EventNotificationsResource eventNotificationsResource,
                              Conversions conversions,
-                             EventDefinitionService eventDefinitionService,
-                             NotificationService notificationService) {
+                             NotificationService notificationService,
+                             AlertRuleDataAssembler alertRuleDataAssembler,
+                             AlertRuleViewService alertRuleViewService,
+                             AlertRuleViewCache alertRuleViewCache,
+                             AlertRuleDeletionCollection alertRuleDeletionCollection,
+                             AlertRuleStatusService alertRuleStatusService,
+                             AlertRuleStateService alertRuleStateService,
+                             AlertRuleDeletionService alertRuleDeletionService,
+                             AlertRuleProvisioningService alertRuleProvisioningService,
+                             ProvisioningJournal provisioningJournal,
+                             TitleLocks titleLocks,
+                             ClusterEventPublisher clusterEventPublisher,
+                             AlertRuleJobService alertRuleJobService,
+                             ObjectMapper objectMapper) {
         // TODO should probably move these fields down into the business namespace
         this.alertRuleService = alertRuleService;
-        this.triggeringConditionsService = triggeringConditionsService;
         this.configurationService = configurationService;
-        this.eventNotificationsResource = eventNotificationsResource;
-        this.eventDefinitionService = eventDefinitionService;
 
         this.conversions = conversions;
         this.notificationService = notificationService;
+        this.alertRuleDataAssembler = alertRuleDataAssembler;
+        this.alertRuleViewService = alertRuleViewService;
+        this.alertRuleViewCache = alertRuleViewCache;
+        this.alertRuleDeletionCollection = alertRuleDeletionCollection;
+        this.alertRuleStatusService = alertRuleStatusService;
+        this.alertRuleStateService = alertRuleStateService;
+        this.alertRuleDeletionService = alertRuleDeletionService;
+        this.alertRuleProvisioningService = alertRuleProvisioningService;
+        this.provisioningJournal = provisioningJournal;
+        this.titleLocks = titleLocks;
+        this.clusterEventPublisher = clusterEventPublisher;
+        this.alertRuleJobService = alertRuleJobService;
+        this.objectMapper = objectMapper;
     }
 
-    private AlertRuleStream constructAlertRuleStream(TriggeringConditions conditions) {
-        List<FieldRule> fieldRules = this.triggeringConditionsService.getFieldRules(conditions);
-        return AlertRuleStream.create(conditions.filteringStreamIdentifier(), conditions.matchingType(), fieldRules);
+    @GET
+    @Timed
+    @ApiOperation(value = "Lists all existing alerts", response = GetDataAlertRule.class, responseContainer = "List")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Unknown field.")})
+    public Response list(@ApiParam(name = "fields", value = "Comma separated list of the fields to return, all by default")
+                         @QueryParam("fields") String fields,
+                         @Context Request request) {
+        AlertRuleFields requestedFields = AlertRuleFields.parse(fields);
+        // views are missing after an upgrade, or when a write failed half-way: rebuild them before answering
+        if (!this.alertRuleViewService.isComplete()) {
+            this.alertRuleViewService.reconcile();
+        }
+        // the version of the views the response is made of, since they also follow the state of streams and event definitions
+        EntityTag entityTag = createEntityTag(this.alertRuleViewService.getVersion(), requestedFields);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+        // views are written as they are read from the cursor, so that the whole result set is never held in memory
+        StreamingOutput result = output -> {
+            try (DBCursor<GetDataAlertRule> cursor = this.alertRuleViewService.cursor(STREAMING_BATCH_SIZE, requestedFields);
+                 JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                int count = 0;
+                while (cursor.hasNext()) {
+                    generator.writeObject(requestedFields.project(this.objectMapper, cursor.next()));
+                    count++;
+                    if (count % STREAMING_BATCH_SIZE == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+            }
+        };
+        return Response.ok(result).tag(entityTag).cacheControl(revalidate()).build();
     }
 
-    private GetDataAlertRule constructDataAlertRule(AlertRule alert) {
-        AlertPattern alertPattern = alert.pattern();
-        DateTime lastModified = alert.getLastModified();
-        Optional<EventDefinitionDto> event = Optional.empty();
-        Optional<EventDefinitionDto> event2 = Optional.empty();
-        Map<String, Object> parametersCondition = null;
-        Map<String, Object> parametersCondition2 = null;
-        boolean isDisabled = false;
-        AlertRuleStream alertRuleStream = null;
-        AlertRuleStream alertRuleStream2 = null;
-        String eventIdentifier2 = null;
-        if (alertPattern instanceof CorrelationAlertPattern pattern) {
-            event = this.eventDefinitionService.getEventDefinition(pattern.eventIdentifier());
-            parametersCondition = getConditionParameters(event);
-            TriggeringConditions conditions1 = pattern.conditions1();
-            alertRuleStream = this.constructAlertRuleStream(conditions1);
-            TriggeringConditions conditions2 = pattern.conditions2();
-            alertRuleStream2 = this.constructAlertRuleStream(conditions2);
-            isDisabled = this.triggeringConditionsService.isDisabled(conditions1) || this.triggeringConditionsService.isDisabled(conditions2);
-        } else if (alertPattern instanceof DisjunctionAlertPattern pattern) {
-            event = this.eventDefinitionService.getEventDefinition(pattern.eventIdentifier1());
-            parametersCondition = getConditionParameters(event);
-            TriggeringConditions conditions = pattern.conditions1();
-            alertRuleStream = this.constructAlertRuleStream(conditions);
-            TriggeringConditions conditions2 = pattern.conditions2();
-            alertRuleStream2 = this.constructAlertRuleStream(conditions2);
-            isDisabled = this.triggeringConditionsService.isDisabled(conditions) || this.triggeringConditionsService.isDisabled(conditions2);;
-            eventIdentifier2 = pattern.eventIdentifier2();
-            event2 = this.eventDefinitionService.getEventDefinition(eventIdentifier2);
-            parametersCondition2 = getConditionParameters(event2);
-            completeParametersConditionForDisjunction(parametersCondition, parametersCondition2);
-        } else if (alertPattern instanceof AggregationAlertPattern pattern) {
-            event = this.eventDefinitionService.getEventDefinition(pattern.eventIdentifier());
-            parametersCondition = getConditionParameters(event);
-            TriggeringConditions conditions = pattern.conditions();
-            alertRuleStream = this.constructAlertRuleStream(conditions);
-            isDisabled = this.triggeringConditionsService.isDisabled(conditions);
-        }
-        Optional<NotificationDto> notification = this.notificationService.get(alert.getNotificationID());
-        String notificationIdentifier = null;
-        if (notification.isPresent()) {
-            NotificationDto notificationDto = notification.get();
-            notificationIdentifier = notificationDto.id();
-        }
-
-        String eventIdentifier = null;
-        String description = null;
-        Integer priority = null;
-        if (event.isPresent()) {
-            EventDefinitionDto eventDefinitionDto = event.get();
-            eventIdentifier = eventDefinitionDto.id();
-            description = eventDefinitionDto.description();
-            priority = eventDefinitionDto.priority();
-            if (EventDefinition.State.DISABLED.equals(eventDefinitionDto.state())) {
-                isDisabled = true;
-            }
+    // each selection of fields is a distinct representation
+    private static EntityTag createEntityTag(String version, AlertRuleFields fields) {
+        if (fields.isAll()) {
+            return new EntityTag(version);
         }
+        return new EntityTag(version + ";" + String.join(",", new TreeSet<>(fields.names())));
+    }
 
-        if (event2.isPresent()) {
-            EventDefinitionDto eventDefinitionDto2 = event2.get();
-            if (EventDefinition.State.DISABLED.equals(eventDefinitionDto2.state())) {
-                isDisabled = true;
-            }
+    // the view follows the streams and event definitions of the rule, which do not change its last_modified
+    private String getVersion(String alertTitle, String ruleVersion) throws NotFoundException {
+        String viewVersion = this.alertRuleViewService.getVersion(alertTitle);
+        if (viewVersion == null) {
+            throw new NotFoundException("Alert <" + alertTitle + "> not found!");
         }
+        return ruleVersion + "-" + viewVersion;
+    }
 
-        return GetDataAlertRule.create(alert.getTitle(),
-                priority,
-                eventIdentifier,
-                eventIdentifier2,
-                notificationIdentifier,
-                alert.getCreatedAt(),
-                alert.getCreatorUserId(),
-                lastModified,
-                isDisabled,
-                description,
-                alert.getAlertType(),
-                parametersCondition,
-                alertRuleStream,
-                alertRuleStream2);
+    // lets clients keep the response, as long as they check its entity tag before each use
+    private static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        return cacheControl;
     }
 
-    private Map<String, Object> getConditionParameters(Optional<EventDefinitionDto> event) {
-        if (!event.isPresent()) {
-            return null;
+    @GET
+    @Path("/paginated")
+    @Timed
+    @ApiOperation(value = "Lists one page of the existing alerts")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid pagination or sort parameters.")})
+    public GetPageAlertRule listPaginated(@ApiParam(name = "page") @QueryParam("page") @DefaultValue("1") int page,
+                                          @ApiParam(name = "per_page") @QueryParam("per_page") @DefaultValue("50") int perPage,
+                                          @ApiParam(name = "query", value = "Only keep rules whose title starts with this text (case sensitive)")
+                                          @QueryParam("query") @DefaultValue("") String query,
+                                          @ApiParam(name = "sort", allowableValues = "title,alert_type,created_at,creator_user_id,last_modified")
+                                          @QueryParam("sort") @DefaultValue(TITLE) String sort,
+                                          @ApiParam(name = "order", allowableValues = "asc,desc")
+                                          @QueryParam("order") @DefaultValue("asc") String order) {
+        if (page < 1 || perPage < 1 || perPage > MAXIMUM_PER_PAGE) {
+            throw new BadRequestException("Invalid pagination: page should be positive and per_page between 1 and " + MAXIMUM_PER_PAGE + ".");
+        }
+        if (!AlertRuleService.SORT_FIELDS.contains(sort)) {
+            throw new BadRequestException("Invalid sort field " + sort + ", should be one of: " + AlertRuleService.SORT_FIELDS);
         }
-        return this.conversions.getConditionParameters(event.get().config());
+        if (!order.equals("asc") && !order.equals("desc")) {
+            throw new BadRequestException("Invalid sort order " + order + ", should be either asc or desc.");
+        }
+        PaginatedList<AlertRule> alerts = this.alertRuleService.searchPaginated(query, sort, order.equals("asc"), page, perPage);
+        // only the rules of the requested page are assembled
+        List<GetDataAlertRule> alertsData = this.alertRuleDataAssembler.assemble(alerts);
+        return GetPageAlertRule.create(query, alerts.pagination().total(), page, perPage, alertsData);
     }
 
-    private void completeParametersConditionForDisjunction(Map<String, Object> configParameters, Map<String, Object> configParameters2) {
-        configParameters.put("additional_search_query", configParameters2.get("search_query"));
-        configParameters.put("additional_threshold_type", configParameters2.get("threshold_type"));
-        configParameters.put("additional_threshold", configParameters2.get("threshold"));
+    @GET
+    @Path("/status")
+    @Timed
+    @ApiOperation(value = "Tells which alerts are disabled")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
+    public GetAlertRulesStatus getStatus() {
+        return GetAlertRulesStatus.create(this.alertRuleStatusService.getDisabledStates());
     }
 
     @GET
+    @Path("/changes")
     @Timed
-    @ApiOperation(value = "Lists all existing alerts")
+    @ApiOperation(value = "Lists the alerts modified and deleted since a date",
+            notes = "Changes made up to " + CHANGES_OVERLAP_SECONDS + " seconds before the date are returned as well, so some may be returned twice")
     @RequiresAuthentication
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
-    public List<GetDataAlertRule> list() {
-        List<AlertRule> alerts = this.alertRuleService.all();
-
-        List<GetDataAlertRule> alertsData = new ArrayList<>();
-        for (AlertRule alert: alerts) {
-            alertsData.add(this.constructDataAlertRule(alert));
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid or too old date.")})
+    public GetAlertRuleChanges listChanges(@ApiParam(name = "since", value = "ISO 8601 date, usually the until field of the previous response", required = true)
+                                           @QueryParam("since") String since) {
+        if (since == null) {
+            throw new BadRequestException("Missing parameter since.");
         }
+        DateTime sinceDate;
+        try {
+            sinceDate = DateTime.parse(since).withZone(DateTimeZone.UTC);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid date " + since + ", should be in ISO 8601 format.");
+        }
+        // captured before the queries: changes made while they run will be returned again by the next request
+        DateTime until = DateTime.now(DateTimeZone.UTC);
+        if (sinceDate.isBefore(until.minusDays(AlertRuleDeletionCollection.RETENTION_DAYS))) {
+            throw new BadRequestException("Deletions are only kept " + AlertRuleDeletionCollection.RETENTION_DAYS + " days, all alerts should be read again.");
+        }
+        DateTime overlappingSinceDate = sinceDate.minusSeconds(CHANGES_OVERLAP_SECONDS);
+        List<GetDataAlertRule> alerts = this.alertRuleDataAssembler.assemble(this.alertRuleService.findModifiedSince(overlappingSinceDate));
+        List<AlertRuleDeletion> deletions = this.alertRuleDeletionCollection.findDeletedSince(overlappingSinceDate);
+        return GetAlertRuleChanges.create(sinceDate, until, alerts, deletions);
+    }
 
-        return alertsData;
+    @GET
+    @Path("/jobs/{id}")
+    @Timed
+    @ApiOperation(value = "Get the state of a background alert provisioning job", response = GetAlertRuleJob.class)
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
+    @ApiResponses(value = {@ApiResponse(code = 404, message = "Job not found.")})
+    public GetAlertRuleJob getJob(@ApiParam(name = "id", required = true) @PathParam("id") String jobIdentifier) throws NotFoundException {
+        AlertRuleJob job = this.alertRuleJobService.get(jobIdentifier)
+                .orElseThrow(() -> new NotFoundException("Job <" + jobIdentifier + "> not found!"));
+        return GetAlertRuleJob.create(job);
     }
 
     @GET
     @Path("/{title}")
     @Timed
-    @ApiOperation(value = "Get a alert")
+    @ApiOperation(value = "Get a alert", response = GetDataAlertRule.class)
     @RequiresAuthentication
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
     @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Unknown field."),
             @ApiResponse(code = 404, message = "Alert not found."),
     })
-    public GetDataAlertRule get(@ApiParam(name = TITLE, required = true) @PathParam(TITLE) String title)
+    public Response get(@ApiParam(name = TITLE, required = true) @PathParam(TITLE) String title,
+                        @ApiParam(name = "fields", value = "Comma separated list of the fields to return, all by default")
+                        @QueryParam("fields") String fields,
+                        @Context Request request)
             throws UnsupportedEncodingException, NotFoundException {
         String alertTitle = java.net.URLDecoder.decode(title, ENCODING);
-        return getGetDataAlertRuleFromTitle(alertTitle);
+        AlertRuleFields requestedFields = AlertRuleFields.parse(fields);
+        String version = this.alertRuleService.getVersion(alertTitle);
+        if (version == null) {
+            throw new NotFoundException("Alert <" + alertTitle + "> not found!");
+        }
+        EntityTag entityTag = createEntityTag(this.getVersion(alertTitle, version), requestedFields);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+        GetDataAlertRule result = this.alertRuleViewCache.get(alertTitle, requestedFields);
+        return Response.ok(requestedFields.project(this.objectMapper, result)).tag(entityTag).cacheControl(revalidate()).build();
     }
 
-    private String checkImportPolicyAndGetTitle(String title, UserContext userContext) {
-        String alertTitle = title;
-        if (this.alertRuleService.isPresent(alertTitle)) {
-            // TODO should be get or default here: it will return null when starting with a fresh instance of graylog
-            // Idem in AlertListRessource. Add a test that creates two alerts with same title
-            AlertWizardConfig configuration = this.configurationService.getConfiguration();
-            ImportPolicyType importPolicy = configuration.accessImportPolicy();
-            if (importPolicy != null && importPolicy.equals(ImportPolicyType.RENAME)) {
-                String newAlertTitle;
-                int i = 1;
-                do {
-                    newAlertTitle = alertTitle + "(" + i + ")";
-                    i++;
-                } while (this.alertRuleService.isPresent(newAlertTitle));
-                alertTitle = newAlertTitle;
-            } else if (importPolicy != null && importPolicy.equals(ImportPolicyType.REPLACE)) {
-                try {
-                    this.delete(alertTitle, userContext);
-                } catch (MongoException | UnsupportedEncodingException e) {
-                    LOG.error("Failed to replace alert rule");
-                    throw new BadRequestException("Failed to replace alert rule.");
-                }
-            } else {
-                LOG.info("Failed to create alert rule: Alert rule title already exist");
-                throw new BadRequestException("Failed to create alert rule: Alert rule title already exist.");
-            }
+    @GET
+    @Path("/id/{id}")
+    @Timed
+    @ApiOperation(value = "Get a alert by identifier", response = GetDataAlertRule.class)
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Unknown field."),
+            @ApiResponse(code = 404, message = "Alert not found."),
+    })
+    public Response getById(@ApiParam(name = "id", required = true) @PathParam("id") String identifier,
+                            @ApiParam(name = "fields", value = "Comma separated list of the fields to return, all by default")
+                            @QueryParam("fields") String fields,
+                            @Context Request request) throws NotFoundException {
+        AlertRuleFields requestedFields = AlertRuleFields.parse(fields);
+        String version = this.alertRuleService.getVersionById(identifier);
+        if (version == null) {
+            throw new NotFoundException("Alert <" + identifier + "> not found!");
+        }
+        AlertRule alert = this.loadById(identifier);
+        EntityTag entityTag = createEntityTag(this.getVersion(alert.getTitle(), version), requestedFields);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+        GetDataAlertRule result = this.alertRuleViewCache.get(alert.getTitle(), requestedFields);
+        return Response.ok(requestedFields.project(this.objectMapper, result)).tag(entityTag).cacheControl(revalidate()).build();
+    }
+
+    private AlertRule load(String title) throws NotFoundException {
+        AlertRule alert = this.alertRuleService.load(title);
+        if (alert == null) {
+            throw new NotFoundException("Alert <" + title + "> not found!");
+        }
+        return alert;
+    }
+
+    private AlertRule loadById(String identifier) throws NotFoundException {
+        AlertRule alert = this.alertRuleService.loadById(identifier);
+        if (alert == null) {
+            throw new NotFoundException("Alert <" + identifier + "> not found!");
         }
-        return alertTitle;
+        return alert;
     }
 
     @POST
@@ -293,147 +414,244 @@ public class AlertRuleResource extends RestResource implements PluginRestResourc
     @ApiOperation(value = "Create an alert")
     @RequiresAuthentication
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_CREATE)
-    @ApiResponses(value = {@ApiResponse(code = 400, message = "The supplied request is not valid.")})
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "The alert is being created in the background (async mode)."),
+            @ApiResponse(code = 400, message = "The supplied request is not valid.")
+    })
     @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_CREATE)
-    public Response create(@ApiParam(name = "JSON body", required = true) @Valid @NotNull AlertRuleRequest request, @Context UserContext userContext)
+    public Response create(@ApiParam(name = "JSON body", required = true) @Valid @NotNull AlertRuleRequest request,
+                           @ApiParam(name = "async", value = "Provision the alert in the background and return the job")
+                           @QueryParam("async") @DefaultValue("false") boolean async)
             throws ValidationException, BadRequestException {
 
         this.conversions.checkIsValidRequest(request);
 
-        String userName = getCurrentUser().getName();
+        User user = getCurrentUser();
         String title = request.getTitle();
-        String alertTitle = checkImportPolicyAndGetTitle(title, userContext);
-        AlertType alertType = request.getConditionType();
-
-        String notificationIdentifier = this.notificationService.createNotification(alertTitle, userContext);
-        GetDataAlertRule result = createPatternAndRule(request, userContext, notificationIdentifier, alertTitle, userName, alertType);
-        return Response.ok().entity(result).build();
+        if (async) {
+            AlertRuleJob job = this.alertRuleJobService.submit(AlertRuleJob.Type.CREATE, title, request, user);
+            return Response.accepted().entity(GetAlertRuleJob.create(job)).build();
+        }
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, title)) {
+            String alertTitle = this.alertRuleProvisioningService.checkImportPolicyAndGetTitle(title, lock);
+            GetDataAlertRule result = this.alertRuleProvisioningService.create(request, alertTitle, user);
+            return Response.ok().entity(result).build();
+        }
     }
 
-    private GetDataAlertRule createPatternAndRule(AlertRuleRequest request, UserContext userContext, String notificationIdentifier, String alertTitle, String userName, AlertType alertType) throws ValidationException {
-        AlertPattern pattern = createAlertPattern(notificationIdentifier, request, alertTitle, userContext, userName);
-
-        AlertRule alertRule = AlertRule.create(
-                alertTitle,
-                alertType,
-                pattern,
-                notificationIdentifier,
-                DateTime.now(DateTimeZone.UTC),
-                userName,
-                DateTime.now(DateTimeZone.UTC));
-        alertRule = this.alertRuleService.create(alertRule);
+    @POST
+    @Path("/bulk")
+    @Timed
+    @ApiOperation(value = "Create several alerts")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_CREATE)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Too many alerts in the request.")})
+    @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_CREATE)
+    public GetAlertRuleBulkResults createBulk(@ApiParam(name = "JSON body", required = true) @Valid @NotNull List<AlertRuleRequest> requests) {
+        if (requests.size() > MAXIMUM_BULK_SIZE) {
+            throw new BadRequestException("Too many alerts: at most " + MAXIMUM_BULK_SIZE + " alerts can be created at once.");
+        }
+        User user = getCurrentUser();
+        AlertRuleBulkResult[] results = new AlertRuleBulkResult[requests.size()];
+
+        // the whole batch is validated before anything is created
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                this.conversions.checkIsValidRequest(requests.get(i));
+            } catch (BadRequestException e) {
+                results[i] = AlertRuleBulkResult.failed(requests.get(i).getTitle(), e.getMessage());
+            }
+        }
 
-        return this.constructDataAlertRule(alertRule);
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] == null) {
+                titles.add(requests.get(i).getTitle());
+            }
+        }
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, titles)) {
+            this.clusterEventPublisher.deferred(() -> {
+                String[] alertTitles = this.resolveBulkTitles(requests, results, lock);
+                this.createBulkRules(requests, alertTitles, results, user);
+                return null;
+            });
+        }
+        return GetAlertRuleBulkResults.create(List.of(results));
     }
 
-    private AlertPattern createAlertPattern(String notificationIdentifier, AlertRuleRequest request, String alertTitle,
-                                            UserContext userContext, String userName) throws ValidationException {
-        AlertType alertType = request.getConditionType();
-
-        TriggeringConditions conditions = this.triggeringConditionsService.createTriggeringConditions(request.getStream(), alertTitle, userName, request.isDisabled());
+    @POST
+    @Path("/bulk/state")
+    @Timed
+    @ApiOperation(value = "Enable or disable several alerts")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_UPDATE)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Too many alerts in the request.")})
+    @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_UPDATE)
+    public GetAlertRulesStateResults updateState(@ApiParam(name = "JSON body", required = true) @Valid @NotNull AlertRulesStateRequest request) {
+        List<String> titles = request.getTitles();
+        if (titles.size() > MAXIMUM_BULK_SIZE) {
+            throw new BadRequestException("Too many alerts: at most " + MAXIMUM_BULK_SIZE + " alerts can be updated at once.");
+        }
+        List<AlertRule> alerts = this.alertRuleService.load(titles);
+        Set<String> updatedTitles;
+        try (ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            updatedTitles = this.alertRuleStateService.setDisabled(alerts, request.isDisabled());
+            this.alertRuleViewService.refresh(updatedTitles);
+            this.alertRuleViewCache.invalidate(updatedTitles);
+        }
 
-        switch (alertType) {
-            case THEN:
-            case AND:
-                return createCorrelationAlertPattern(notificationIdentifier, request, alertTitle, userContext, userName, conditions);
-            case OR:
-                return createDisjunctionAlertPattern(notificationIdentifier, request, alertTitle, userContext, userName, conditions);
-            default:
-                String description = request.getDescription();
-                Integer priority = request.getPriority();
-                Map<String, Object> conditionParameters = request.conditionParameters();
-                String streamIdentifier = conditions.outputStreamIdentifier();
-                EventProcessorConfig configuration = this.conversions.createEventConfiguration(alertType, conditionParameters, streamIdentifier);
+        Set<String> foundTitles = new HashSet<>();
+        for (AlertRule alert: alerts) {
+            foundTitles.add(alert.getTitle());
+        }
+        List<String> updated = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+        List<String> notFound = new ArrayList<>();
+        for (String title: new LinkedHashSet<>(titles)) {
+            if (updatedTitles.contains(title)) {
+                updated.add(title);
+            } else if (foundTitles.contains(title)) {
+                unchanged.add(title);
+            } else {
+                notFound.add(title);
+            }
+        }
+        return GetAlertRulesStateResults.create(updated, unchanged, notFound);
+    }
 
-                String eventIdentifier = this.eventDefinitionService.createEvent(alertTitle, description, priority, notificationIdentifier, configuration, userContext, request.isDisabled());
+    @POST
+    @Path("/bulk/delete")
+    @Timed
+    @ApiOperation(value = "Delete several alerts")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_DELETE)
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Too many alerts in the request.")})
+    @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_DELETE)
+    public GetAlertRulesDeletionResults deleteBulk(@ApiParam(name = "JSON body", required = true) @Valid @NotNull AlertRulesDeletionRequest request) {
+        List<String> titles = request.getTitles();
+        if (titles.size() > MAXIMUM_BULK_SIZE) {
+            throw new BadRequestException("Too many alerts: at most " + MAXIMUM_BULK_SIZE + " alerts can be deleted at once.");
+        }
+        List<AlertRule> alerts = this.alertRuleService.load(titles);
+        List<String> deleted;
+        try (ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            deleted = this.alertRuleDeletionService.delete(alerts);
+            this.alertRuleViewService.remove(deleted);
+            this.alertRuleViewCache.invalidate(deleted);
+        }
 
-                return AggregationAlertPattern.builder().conditions(conditions).eventIdentifier(eventIdentifier).build();
+        Set<String> deletedTitles = new HashSet<>(deleted);
+        List<String> notFound = new ArrayList<>();
+        for (String title: new LinkedHashSet<>(titles)) {
+            if (!deletedTitles.contains(title)) {
+                notFound.add(title);
+            }
         }
+        return GetAlertRulesDeletionResults.create(deleted, notFound);
     }
 
-    private DisjunctionAlertPattern createDisjunctionAlertPattern(String notificationIdentifier, AlertRuleRequest request, String alertTitle, UserContext userContext, String userName, TriggeringConditions conditions) throws ValidationException {
-        String description = request.getDescription();
-        Integer priority = request.getPriority();
-        Map<String, Object> conditionParameters = request.conditionParameters();
-
-        TriggeringConditions conditions2 = this.triggeringConditionsService.createTriggeringConditions(request.getSecondStream(), alertTitle + "#2", userName, request.isDisabled());
-        String streamIdentifier = conditions.outputStreamIdentifier();
-        EventProcessorConfig configuration = this.conversions.createAggregationCondition(streamIdentifier, conditionParameters);
-        String eventIdentifier = this.eventDefinitionService.createEvent(alertTitle, description, priority, notificationIdentifier, configuration, userContext, request.isDisabled());
-        String streamIdentifier2 = conditions2.outputStreamIdentifier();
-        EventProcessorConfig configuration2 = this.conversions.createAdditionalAggregationCondition(streamIdentifier2, conditionParameters);
-        String eventIdentifier2 = this.eventDefinitionService.createEvent(alertTitle + "#2", description, priority, notificationIdentifier, configuration2, userContext, request.isDisabled());
-
-        return DisjunctionAlertPattern.builder()
-                .conditions1(conditions).conditions2(conditions2).eventIdentifier1(eventIdentifier).eventIdentifier2(eventIdentifier2)
-                .build();
+    // same as checkImportPolicyAndGetTitle, but titles conflicts are looked up with a single query
+    private String[] resolveBulkTitles(List<AlertRuleRequest> requests, AlertRuleBulkResult[] results, TitleLocks.Lock lock) {
+        List<String> requestedTitles = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] == null) {
+                requestedTitles.add(requests.get(i).getTitle());
+            }
+        }
+        Set<String> existingTitles = this.alertRuleService.findExistingTitles(requestedTitles);
+        ImportPolicyType importPolicy = null;
+        AlertWizardConfig configuration = this.configurationService.getConfiguration();
+        if (configuration != null) {
+            importPolicy = configuration.accessImportPolicy();
+        }
+
+        String[] alertTitles = new String[requests.size()];
+        Set<String> usedTitles = new HashSet<>(existingTitles);
+        Set<String> batchTitles = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            String title = requests.get(i).getTitle();
+            if (!usedTitles.contains(title)) {
+                alertTitles[i] = title;
+            } else if (ImportPolicyType.RENAME.equals(importPolicy)) {
+                String newAlertTitle;
+                int suffix = 1;
+                do {
+                    newAlertTitle = title + "(" + suffix + ")";
+                    suffix++;
+                } while (usedTitles.contains(newAlertTitle) || this.alertRuleService.isPresent(newAlertTitle) || !lock.tryAdd(newAlertTitle));
+                alertTitles[i] = newAlertTitle;
+            } else if (ImportPolicyType.REPLACE.equals(importPolicy) && !batchTitles.contains(title)) {
+                try {
+                    this.alertRuleProvisioningService.delete(title);
+                    alertTitles[i] = title;
+                } catch (MongoException e) {
+                    LOG.error("Failed to replace alert rule {}", title, e);
+                    results[i] = AlertRuleBulkResult.failed(title, "Failed to replace alert rule.");
+                    continue;
+                }
+            } else {
+                results[i] = AlertRuleBulkResult.failed(title, "Failed to create alert rule: Alert rule title already exist.");
+                continue;
+            }
+            usedTitles.add(alertTitles[i]);
+            batchTitles.add(alertTitles[i]);
+        }
+        return alertTitles;
     }
 
-    private CorrelationAlertPattern createCorrelationAlertPattern(String notificationIdentifier, AlertRuleRequest request, String alertTitle, UserContext userContext, String userName, TriggeringConditions conditions) throws ValidationException {
-        String description = request.getDescription();
-        Integer priority = request.getPriority();
-        AlertType alertType = request.getConditionType();
-        Map<String, Object> conditionParameters = request.conditionParameters();
-
-        TriggeringConditions conditions2 = this.triggeringConditionsService.createTriggeringConditions(request.getSecondStream(), alertTitle + "#2", userName, request.isDisabled());
-        String streamIdentifier = conditions.outputStreamIdentifier();
-        String streamIdentifier2 = conditions2.outputStreamIdentifier();
-        EventProcessorConfig configuration = this.conversions.createCorrelationCondition(alertType, streamIdentifier, streamIdentifier2, conditionParameters);
-        String eventIdentifier = this.eventDefinitionService.createEvent(alertTitle, description, priority, notificationIdentifier, configuration, userContext, request.isDisabled());
-        return CorrelationAlertPattern.builder().conditions1(conditions).conditions2(conditions2).eventIdentifier(eventIdentifier).build();
+    // the entities of the rules which fail, before or while they are inserted, are deleted
+    private void createBulkRules(List<AlertRuleRequest> requests, String[] alertTitles, AlertRuleBulkResult[] results, User user) {
+        List<AlertRule> alertRules = new ArrayList<>();
+        Map<String, Integer> alertRuleIndexes = new HashMap<>();
+        Map<String, ProvisionedEntities> alertRuleEntities = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            AlertRuleRequest request = requests.get(i);
+            try (ProvisioningJournal.Scope scope = this.provisioningJournal.open()) {
+                try {
+                    AlertRule alertRule = this.alertRuleProvisioningService.build(request, alertTitles[i], user);
+                    alertRules.add(alertRule);
+                    alertRuleIndexes.put(alertRule.getId(), i);
+                    alertRuleEntities.put(alertRule.getId(), scope.entities());
+                } catch (ValidationException | RuntimeException e) {
+                    LOG.error("Failed to create alert rule {}", alertTitles[i], e);
+                    results[i] = AlertRuleBulkResult.failed(request.getTitle(), "Failed to create alert rule: " + e.getMessage());
+                    this.discardProvisionedEntities(alertTitles[i], scope.entities());
+                }
+            }
+        }
+
+        List<AlertRule> failedAlertRules = this.alertRuleService.createAll(alertRules);
+        for (AlertRule alertRule: failedAlertRules) {
+            int i = alertRuleIndexes.get(alertRule.getId());
+            results[i] = AlertRuleBulkResult.failed(requests.get(i).getTitle(), "Failed to save alert rule.");
+            this.discardProvisionedEntities(alertRule.getTitle(), alertRuleEntities.get(alertRule.getId()));
+        }
+        List<AlertRule> createdAlertRules = new ArrayList<>(alertRules);
+        createdAlertRules.removeAll(failedAlertRules);
+        List<GetDataAlertRule> alertsData = this.alertRuleDataAssembler.assemble(createdAlertRules);
+        List<String> createdTitles = new ArrayList<>();
+        for (int j = 0; j < alertsData.size(); j++) {
+            GetDataAlertRule alertData = alertsData.get(j);
+            int i = alertRuleIndexes.get(createdAlertRules.get(j).getId());
+            this.alertRuleViewService.save(alertData);
+            createdTitles.add(alertData.getTitle());
+            results[i] = AlertRuleBulkResult.created(requests.get(i).getTitle(), alertData.getTitle());
+        }
+        this.alertRuleViewCache.invalidate(createdTitles);
     }
 
-    private AlertPattern updateAlertPattern(AlertPattern previousAlertPattern, String notificationIdentifier,
-                                            AlertRuleRequest request, AlertType previousAlertType, String title,
-                                            UserContext userContext, String userName) throws ValidationException {
-        AlertRuleStream streamConfiguration = request.getStream();
-        AlertRuleStream streamConfiguration2 = request.getSecondStream();
-        AlertType alertType = request.getConditionType();
-        if (previousAlertType != alertType) {
-            deleteAlertPattern(previousAlertPattern);
-            return createAlertPattern(notificationIdentifier, request, title, userContext, userName);
-        }
-
-        String title2 = title + "#2";
-        // TODO increase readability: extract three methods?
-        if (previousAlertPattern instanceof CorrelationAlertPattern previousPattern) {
-            TriggeringConditions previousConditions = previousPattern.conditions1();
-            TriggeringConditions conditions = this.triggeringConditionsService.updateTriggeringConditions(previousConditions, title, streamConfiguration, userName, request.isDisabled());
-            TriggeringConditions previousConditions2 = previousPattern.conditions2();
-            TriggeringConditions conditions2 = this.triggeringConditionsService.updateTriggeringConditions(previousConditions2, title2, streamConfiguration2, userName, request.isDisabled());
-
-            String streamIdentifier = conditions.outputStreamIdentifier();
-            String streamIdentifier2 = conditions2.outputStreamIdentifier();
-            EventProcessorConfig configuration = this.conversions.createCorrelationCondition(alertType, streamIdentifier, streamIdentifier2, request.conditionParameters());
-            this.eventDefinitionService.updateEvent(title, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier(), configuration, request.isDisabled());
-
-            return previousPattern.toBuilder().conditions1(conditions).build();
-        } else if (previousAlertPattern instanceof DisjunctionAlertPattern previousPattern) {
-            TriggeringConditions previousConditions = previousPattern.conditions1();
-            TriggeringConditions conditions = this.triggeringConditionsService.updateTriggeringConditions(previousConditions, title, streamConfiguration, userName, request.isDisabled());
-            TriggeringConditions previousConditions2 = previousPattern.conditions2();
-            TriggeringConditions conditions2 = this.triggeringConditionsService.updateTriggeringConditions(previousConditions2, title2, streamConfiguration2, userName, request.isDisabled());
-
-            String streamIdentifier = conditions.outputStreamIdentifier();
-            EventProcessorConfig configuration = this.conversions.createEventConfiguration(request.getConditionType(), request.conditionParameters(), streamIdentifier);
-            this.eventDefinitionService.updateEvent(title, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier1(), configuration, request.isDisabled());
-
-            String streamIdentifier2 = conditions2.outputStreamIdentifier();
-            EventProcessorConfig configuration2 = this.conversions.createAdditionalAggregationCondition(streamIdentifier2, request.conditionParameters());
-            this.eventDefinitionService.updateEvent(title2, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier2(), configuration2, request.isDisabled());
-
-            return previousPattern.toBuilder().conditions1(conditions).build();
-        } else if (previousAlertPattern instanceof AggregationAlertPattern previousPattern) {
-            TriggeringConditions previousConditions = previousPattern.conditions();
-            TriggeringConditions conditions = this.triggeringConditionsService.updateTriggeringConditions(previousConditions, title, streamConfiguration, userName, request.isDisabled());
-            String streamIdentifier = conditions.outputStreamIdentifier();
-            EventProcessorConfig configuration = this.conversions.createEventConfiguration(request.getConditionType(), request.conditionParameters(), streamIdentifier);
-            this.eventDefinitionService.updateEvent(title, request.getDescription(), request.getPriority(), previousPattern.eventIdentifier(), configuration, request.isDisabled());
-
-            return previousPattern.toBuilder().conditions(conditions).build();
-        }
-
-        throw new RuntimeException("Unreachable code");
+    private void discardProvisionedEntities(String alertTitle, ProvisionedEntities entities) {
+        try {
+            this.alertRuleDeletionService.delete(entities);
+        } catch (RuntimeException e) {
+            LOG.error("Failed to delete the entities created for alert rule {}", alertTitle, e);
+        }
     }
 
     @PUT
@@ -442,60 +660,66 @@ public class AlertRuleResource extends RestResource implements PluginRestResourc
     @RequiresAuthentication
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_UPDATE)
     @ApiOperation(value = "Update a alert")
-    @ApiResponses(value = {@ApiResponse(code = 400, message = "The supplied request is not valid.")})
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "The alert is updated, or being updated in the background (async mode)."),
+            @ApiResponse(code = 400, message = "The supplied request is not valid."),
+            @ApiResponse(code = 404, message = "Alert not found."),
+            @ApiResponse(code = 409, message = "The alert was modified since the version of the request.")
+    })
     @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_UPDATE)
     public Response update(@ApiParam(name = TITLE, required = true)
                            @PathParam(TITLE) String title,
                            @ApiParam(name = "JSON body", required = true) @Valid @NotNull AlertRuleRequest request,
-                           @Context UserContext userContext
+                           @ApiParam(name = "async", value = "Provision the alert in the background and return the job")
+                           @QueryParam("async") @DefaultValue("false") boolean async
     ) throws UnsupportedEncodingException, NotFoundException, ValidationException {
 
         this.conversions.checkIsValidRequest(request);
 
-        AlertRule previousAlert = this.alertRuleService.load(title);
-        String notificationIdentifier = previousAlert.getNotificationID();
-        String userName = getCurrentUser().getName();
-
-        this.notificationService.updateNotification(title, notificationIdentifier);
-
-        AlertType previousAlertType = previousAlert.getAlertType();
-        AlertPattern pattern = updateAlertPattern(previousAlert.pattern(), notificationIdentifier, request,
-                previousAlertType, title, userContext, userName);
-
-        AlertRule alertRule = AlertRule.create(
-                title,
-                request.getConditionType(),
-                pattern,
-                previousAlert.getNotificationID(),
-                previousAlert.getCreatedAt(),
-                userName,
-                DateTime.now(DateTimeZone.UTC));
-        alertRule = this.alertRuleService.update(java.net.URLDecoder.decode(title, ENCODING), alertRule);
-
-        GetDataAlertRule result = this.constructDataAlertRule(alertRule);
-        return Response.accepted().entity(result).build();
-    }
-
-    private void deleteEvent(String eventIdentifier) {
-        if (eventIdentifier == null) {
-            return;
+        User user = getCurrentUser();
+        if (async) {
+            // fails right away when the alert does not exist, or was already modified
+            AlertRule previousAlert = this.load(title);
+            if (request.getVersion() != null) {
+                try {
+                    AlertRuleProvisioningService.checkVersion(previousAlert, request.getVersion());
+                } catch (VersionConflictException e) {
+                    throw new ClientErrorException(e.getMessage(), Response.Status.CONFLICT);
+                }
+            }
+            AlertRuleJob job = this.alertRuleJobService.submit(AlertRuleJob.Type.UPDATE, title, request, user);
+            return Response.accepted().entity(GetAlertRuleJob.create(job)).build();
+        }
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, title)) {
+            GetDataAlertRule result = this.alertRuleProvisioningService.update(title, request, request.getVersion(), user);
+            return Response.accepted().entity(result).build();
+        } catch (VersionConflictException e) {
+            throw new ClientErrorException(e.getMessage(), Response.Status.CONFLICT);
         }
-        this.eventDefinitionService.delete(eventIdentifier);
     }
 
-    private void deleteAlertPattern(AlertPattern alertPattern) {
-        if (alertPattern instanceof CorrelationAlertPattern pattern) {
-            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions1());
-            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions2());
-            deleteEvent(pattern.eventIdentifier());
-        } else if (alertPattern instanceof DisjunctionAlertPattern pattern) {
-            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions1());
-            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions2());
-            deleteEvent(pattern.eventIdentifier1());
-            deleteEvent(pattern.eventIdentifier2());
-        } else if (alertPattern instanceof AggregationAlertPattern pattern) {
-            this.triggeringConditionsService.deleteTriggeringConditions(pattern.conditions());
-            deleteEvent(pattern.eventIdentifier());
+    @PUT
+    @Path("/id/{id}")
+    @Timed
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_UPDATE)
+    @ApiOperation(value = "Update a alert by identifier")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "The supplied request is not valid."),
+            @ApiResponse(code = 404, message = "Alert not found."),
+            @ApiResponse(code = 409, message = "The alert was modified since the version of the request.")
+    })
+    @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_UPDATE)
+    public Response updateById(@ApiParam(name = "id", required = true) @PathParam("id") String identifier,
+                               @ApiParam(name = "JSON body", required = true) @Valid @NotNull AlertRuleRequest request) throws NotFoundException, ValidationException {
+        this.conversions.checkIsValidRequest(request);
+
+        AlertRule previousAlert = this.loadById(identifier);
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, previousAlert.getTitle())) {
+            GetDataAlertRule result = this.alertRuleProvisioningService.update(previousAlert, request, request.getVersion(), getCurrentUser());
+            return Response.accepted().entity(result).build();
+        } catch (VersionConflictException e) {
+            throw new ClientErrorException(e.getMessage(), Response.Status.CONFLICT);
         }
     }
 
@@ -505,29 +729,41 @@ public class AlertRuleResource extends RestResource implements PluginRestResourc
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_DELETE)
     @ApiOperation(value = "Delete a alert")
     @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "The alert is being deleted in the background (async mode)."),
             @ApiResponse(code = 404, message = "Alert not found."),
             @ApiResponse(code = 400, message = "Invalid ObjectId.")
     })
     @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_DELETE)
-    public void delete(@ApiParam(name = TITLE, required = true)
-                       @PathParam(TITLE) String title,
-                       @Context UserContext userContext
+    public Response delete(@ApiParam(name = TITLE, required = true)
+                           @PathParam(TITLE) String title,
+                           @ApiParam(name = "async", value = "Delete the alert in the background and return the job")
+                           @QueryParam("async") @DefaultValue("false") boolean async
     ) throws MongoException, UnsupportedEncodingException {
         String alertTitle = java.net.URLDecoder.decode(title, ENCODING);
 
-        try {
-            AlertRule alertRule = this.alertRuleService.load(alertTitle);
-
-            deleteAlertPattern(alertRule.pattern());
-            if (alertRule.getNotificationID() != null && !alertRule.getNotificationID().isEmpty()) {
-                // TODO move this down into AlertRuleUtilsService and remove the use for eventNotificationsResource
-                this.eventNotificationsResource.delete(alertRule.getNotificationID(), userContext);
-            }
-        } catch (NotFoundException e) {
-            LOG.error("Cannot find alert " + alertTitle, e);
+        if (async) {
+            AlertRuleJob job = this.alertRuleJobService.submit(AlertRuleJob.Type.DELETE, alertTitle, null, getCurrentUser());
+            return Response.accepted().entity(GetAlertRuleJob.create(job)).build();
+        }
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, alertTitle)) {
+            this.alertRuleProvisioningService.delete(alertTitle);
         }
+        return Response.noContent().build();
+    }
 
-        this.alertRuleService.destroy(alertTitle);
+    @DELETE
+    @Path("/id/{id}")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_DELETE)
+    @ApiOperation(value = "Delete a alert by identifier")
+    @ApiResponses(value = {@ApiResponse(code = 404, message = "Alert not found.")})
+    @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_DELETE)
+    public Response deleteById(@ApiParam(name = "id", required = true) @PathParam("id") String identifier) throws NotFoundException {
+        AlertRule alert = this.loadById(identifier);
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, alert.getTitle())) {
+            this.alertRuleProvisioningService.delete(alert.getTitle());
+        }
+        return Response.noContent().build();
     }
 
     @POST
@@ -538,36 +774,34 @@ public class AlertRuleResource extends RestResource implements PluginRestResourc
     @ApiResponses(value = {@ApiResponse(code = 400, message = "The supplied request is not valid.")})
     @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_CREATE)
     @Path("/clone")
-    public Response clone(@ApiParam(name = "JSON body", required = true) @Valid @NotNull CloneAlertRuleRequest request, @Context UserContext userContext)
+    public Response clone(@ApiParam(name = "JSON body", required = true) @Valid @NotNull CloneAlertRuleRequest request)
             throws ValidationException, BadRequestException, NotFoundException {
         GetDataAlertRule sourceAlert = getGetDataAlertRuleFromTitle(request.getSourceTitle());
-        String userName = getCurrentUser().getName();
+        User user = getCurrentUser();
         String title = request.getTitle();
         String description = request.getDescription();
-        String alertTitle = checkImportPolicyAndGetTitle(title, userContext);
-        AlertType alertType = sourceAlert.getConditionType();
 
-        String notificationIdentifier = createNotificationFromCloneRequest(alertTitle, userContext, sourceAlert.getNotificationID(), request.getCloneNotification());
-        AlertRuleRequest alertRuleRequest = AlertRuleRequest.create(title, sourceAlert.getPriority(), description, sourceAlert.isDisabled(), sourceAlert.getConditionType(),
-                sourceAlert.conditionParameters(), sourceAlert.getStream(), sourceAlert.getSecondStream());
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.ALERTS, title);
+             ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            String alertTitle = this.alertRuleProvisioningService.checkImportPolicyAndGetTitle(title, lock);
+            String notificationIdentifier = createNotificationFromCloneRequest(alertTitle, user, sourceAlert.getNotificationID(), request.getCloneNotification());
+            AlertRuleRequest alertRuleRequest = AlertRuleRequest.create(title, sourceAlert.getPriority(), description, sourceAlert.isDisabled(), sourceAlert.getConditionType(),
+                    sourceAlert.conditionParameters(), sourceAlert.getStream(), sourceAlert.getSecondStream(), null);
 
-        GetDataAlertRule result = createPatternAndRule(alertRuleRequest, userContext, notificationIdentifier, alertTitle, userName, alertType);
-        return Response.ok().entity(result).build();
+            GetDataAlertRule result = this.alertRuleProvisioningService.create(alertRuleRequest, alertTitle, notificationIdentifier, user);
+            return Response.ok().entity(result).build();
+        }
     }
 
     private GetDataAlertRule getGetDataAlertRuleFromTitle(String title) throws NotFoundException {
-        AlertRule loadedAlert = this.alertRuleService.load(title);
-        if (loadedAlert == null) {
-            throw new NotFoundException("Alert <" + title + "> not found!");
-        }
-        return this.constructDataAlertRule(loadedAlert);
+        return this.alertRuleViewCache.get(title);
     }
 
-    private String createNotificationFromCloneRequest(String alertTitle, UserContext userContext, String notificationID, Boolean cloneNotification) throws NotFoundException {
+    private String createNotificationFromCloneRequest(String alertTitle, User user, String notificationID, Boolean cloneNotification) throws NotFoundException {
         if(cloneNotification) {
-            return this.notificationService.cloneNotification(notificationID, alertTitle, userContext);
+            return this.notificationService.cloneNotification(notificationID, alertTitle, user);
         } else {
-            return this.notificationService.createNotification(alertTitle, userContext);
+            return this.notificationService.createNotification(alertTitle, user);
         }
     }
 }
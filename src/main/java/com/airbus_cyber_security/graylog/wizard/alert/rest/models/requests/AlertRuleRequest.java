@@ -64,6 +64,11 @@ public abstract class AlertRuleRequest {
     @Nullable
     public abstract AlertRuleStream getSecondStream();
 
+    // version of the rule the modification was made on, as returned by the GET routes, without it the update always wins
+    @JsonProperty("version")
+    @Nullable
+    public abstract Long getVersion();
+
     @JsonCreator    
     public static AlertRuleRequest create(@JsonProperty("title") String title,
                                              @JsonProperty("priority") Integer priority,
@@ -72,7 +77,8 @@ public abstract class AlertRuleRequest {
                                              @JsonProperty("condition_type") AlertType alertType,
                                              @JsonProperty("condition_parameters") Map<String, Object> conditionParameters,
                                              @JsonProperty("stream") AlertRuleStream stream,
-                                             @JsonProperty("second_stream") AlertRuleStream stream2) {
-        return new AutoValue_AlertRuleRequest(title, priority, description, disabled, alertType, conditionParameters, stream, stream2);
+                                             @JsonProperty("second_stream") AlertRuleStream stream2,
+                                             @JsonProperty("version") Long version) {
+        return new AutoValue_AlertRuleRequest(title, priority, description, disabled, alertType, conditionParameters, stream, stream2, version);
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import jakarta.annotation.Nullable;
+
+// outcome of the creation of one rule of a bulk request
+@AutoValue
+@JsonAutoDetect
+public abstract class AlertRuleBulkResult {
+
+    // the title in the request
+    @JsonProperty("title")
+    public abstract String getTitle();
+
+    // the title of the created rule, may differ from the requested one with the RENAME import policy
+    @JsonProperty("created_title")
+    @Nullable
+    public abstract String getCreatedTitle();
+
+    @JsonProperty("error")
+    @Nullable
+    public abstract String getError();
+
+    public static AlertRuleBulkResult created(String title, String createdTitle) {
+        return new AutoValue_AlertRuleBulkResult(title, createdTitle, null);
+    }
+
+    public static AlertRuleBulkResult failed(String title, String error) {
+        return new AutoValue_AlertRuleBulkResult(title, null, error);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleDeletion;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.joda.time.DateTime;
+
+import java.util.List;
+
+@AutoValue
+@JsonAutoDetect
+public abstract class GetAlertRuleChanges {
+
+    @JsonProperty("since")
+    public abstract DateTime getSince();
+
+    // to be used as since parameter of the next request
+    @JsonProperty("until")
+    public abstract DateTime getUntil();
+
+    @JsonProperty("alerts")
+    public abstract List<GetDataAlertRule> getAlerts();
+
+    @JsonProperty("deleted")
+    public abstract List<AlertRuleDeletion> getDeleted();
+
+    public static GetAlertRuleChanges create(DateTime since, DateTime until, List<GetDataAlertRule> alerts, List<AlertRuleDeletion> deleted) {
+        return new AutoValue_GetAlertRuleChanges(since, until, alerts, deleted);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRuleJob;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.joda.time.DateTime;
+
+import jakarta.annotation.Nullable;
+
+// state of an alert rule provisioning job, as returned by the async endpoints and GET /alerts/jobs/{id}
+@AutoValue
+@JsonAutoDetect
+public abstract class GetAlertRuleJob {
+
+    @JsonProperty("id")
+    public abstract String getId();
+
+    @JsonProperty("type")
+    public abstract AlertRuleJob.Type getType();
+
+    @JsonProperty("state")
+    public abstract AlertRuleJob.State getState();
+
+    @JsonProperty("title")
+    public abstract String getTitle();
+
+    // the title of the rule once it is known, may differ from the requested one with the RENAME import policy
+    @JsonProperty("alert_title")
+    @Nullable
+    public abstract String getAlertTitle();
+
+    @JsonProperty("attempts")
+    public abstract int getAttempts();
+
+    @JsonProperty("error")
+    @Nullable
+    public abstract String getError();
+
+    @JsonProperty("created_at")
+    public abstract DateTime getCreatedAt();
+
+    @JsonProperty("updated_at")
+    public abstract DateTime getUpdatedAt();
+
+    @JsonProperty("finished_at")
+    @Nullable
+    public abstract DateTime getFinishedAt();
+
+    public static GetAlertRuleJob create(AlertRuleJob job) {
+        return new AutoValue_GetAlertRuleJob(job.id(), job.type(), job.state(), job.title(), job.alertTitle(),
+                job.attempts(), job.error(), job.createdAt(), job.updatedAt(), job.finishedAt());
+    }
+}
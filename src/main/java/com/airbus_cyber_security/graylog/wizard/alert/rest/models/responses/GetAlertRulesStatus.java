@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import java.util.Map;
+
+@AutoValue
+@JsonAutoDetect
+public abstract class GetAlertRulesStatus {
+
+    // whether each rule, identified by its title, is disabled
+    @JsonProperty("disabled")
+    public abstract Map<String, Boolean> getDisabled();
+
+    public static GetAlertRulesStatus create(Map<String, Boolean> disabled) {
+        return new AutoValue_GetAlertRulesStatus(disabled);
+    }
+}
@@ -21,6 +21,7 @@ import com.airbus_cyber_security.graylog.wizard.alert.model.AlertType;
 import com.airbus_cyber_security.graylog.wizard.alert.rest.models.AlertRuleStream;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 import org.joda.time.DateTime;
@@ -33,8 +34,13 @@ import java.util.Map;
 // TODO instead of allowing some Nullable fields, such as condition, stream, condition_parameters, maybe should be either corrupted or contain correct information
 @AutoValue
 @JsonAutoDetect
+@JsonIgnoreProperties(ignoreUnknown = true)
 public abstract class GetDataAlertRule {
 
+	@JsonProperty("id")
+	@Nullable
+	public abstract String getId();
+
 	@JsonProperty("title")
 	@NotNull
 	public abstract String getTitle();
@@ -92,30 +98,31 @@ public abstract class GetDataAlertRule {
 	@JsonProperty("disabled")
 	public abstract boolean isDisabled();
 
+	// to be sent back with updates, so that they do not overwrite modifications made in the meantime
+	@JsonProperty("version")
+	public abstract long getVersion();
+
 	@JsonCreator
-	public static GetDataAlertRule create(@JsonProperty("title") String title,
+	public static GetDataAlertRule create(@JsonProperty("id") String id,
+                                          @JsonProperty("title") String title,
                                           @JsonProperty("priority") Integer priority,
                                           @JsonProperty("condition") String eventDefinitionIdentifier,
 										  @JsonProperty("second_event_definition") String secondEventDefinitionIdentifier,
                                           @JsonProperty("notification") String notificationIdentifier,
                                           @JsonProperty("created_at") DateTime createdAt,
                                           @JsonProperty("creator_user_id") String creatorUserIdentifier,
-										  // TODO shouldn't the JsonProperty here be last_modified rather than created_at?
-										  //      I guess all annotations on this method create can be removed
-										  //      since, if I understand well, this @JsonCreator is used to deserialize
-										  //      json objects to java.
-										  //      However this object is returns by the API REST, but never fed inside the request
-										  // TODO try to remove all annotations on this method
-                                          @JsonProperty("created_at") DateTime lastModified,
+										  // Note: this @JsonCreator is used to read back the views stored in the wizard_alert_views collection
+                                          @JsonProperty("last_modified") DateTime lastModified,
                                           @JsonProperty("disabled") boolean isDisabled,
                                           @JsonProperty("description") String description,
                                           @JsonProperty("condition_type") AlertType alertType,
                                           @JsonProperty("condition_parameters") Map<String, Object> conditionParameters,
                                           @JsonProperty("stream") AlertRuleStream stream,
-                                          @JsonProperty("second_stream") AlertRuleStream stream2) {
-		return new AutoValue_GetDataAlertRule(title, priority, description, alertType, conditionParameters, stream, stream2,
+                                          @JsonProperty("second_stream") AlertRuleStream stream2,
+                                          @JsonProperty("version") long version) {
+		return new AutoValue_GetDataAlertRule(id, title, priority, description, alertType, conditionParameters, stream, stream2,
 				eventDefinitionIdentifier, secondEventDefinitionIdentifier, notificationIdentifier, createdAt, creatorUserIdentifier,
-				lastModified, isDisabled);
+				lastModified, isDisabled, version);
 	}
 
 }
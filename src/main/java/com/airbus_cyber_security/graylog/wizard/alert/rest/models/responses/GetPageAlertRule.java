@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+
+package com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import jakarta.annotation.Nullable;
+import java.util.List;
+
+@AutoValue
+@JsonAutoDetect
+public abstract class GetPageAlertRule {
+
+    @JsonProperty("query")
+    @Nullable
+    public abstract String getQuery();
+
+    // the number of rules which match the query
+    @JsonProperty("total")
+    public abstract long getTotal();
+
+    @JsonProperty("page")
+    public abstract int getPage();
+
+    @JsonProperty("per_page")
+    public abstract int getPerPage();
+
+    @JsonProperty("count")
+    public abstract int getCount();
+
+    @JsonProperty("alerts")
+    public abstract List<GetDataAlertRule> getAlerts();
+
+    public static GetPageAlertRule create(String query, long total, int page, int perPage, List<GetDataAlertRule> alerts) {
+        return new AutoValue_GetPageAlertRule(query, total, page, perPage, alerts.size(), alerts);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.views;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import java.util.Set;
+
+/**
+ * Posted on the ClusterEventBus whenever alert rules are created, modified or deleted, so that every node drops its
+ * cached views of these rules.
+ */
+@AutoValue
+@JsonAutoDetect
+public abstract class AlertRuleChangedEvent {
+
+    @JsonProperty("titles")
+    public abstract Set<String> titles();
+
+    @JsonCreator
+    public static AlertRuleChangedEvent create(@JsonProperty("titles") Set<String> titles) {
+        return new AutoValue_AlertRuleChangedEvent(Set.copyOf(titles));
+    }
+
+    public static AlertRuleChangedEvent create(String title) {
+        return create(Set.of(title));
+    }
+}
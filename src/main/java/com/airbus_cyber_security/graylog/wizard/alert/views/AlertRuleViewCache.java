@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.views;
+
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleService;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ClusterEventPublisher;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.AlertRuleDataAssembler;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.AlertRuleFields;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.AlertRuleStream;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetDataAlertRule;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.graylog2.database.NotFoundException;
+import org.graylog2.shared.metrics.MetricUtils;
+import org.graylog2.streams.events.StreamDeletedEvent;
+import org.graylog2.streams.events.StreamsChangedEvent;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local cache of the assembled alert rules, keyed by title.
+ *
+ * Entries are dropped when a rule is modified on any node (through {@link AlertRuleChangedEvent}), or when one of the
+ * streams or event definitions it depends on changes (through {@link EventDefinitionsChangedEvent} for the latter).
+ * Hits, misses, evictions and size are exposed as metrics to help size the cache.
+ */
+@Singleton
+public class AlertRuleViewCache {
+
+    private static final int MAXIMUM_SIZE = 10000;
+    // bounds the staleness after changes which are not signaled by any event, such as a notification edited outside of the wizard
+    private static final int EXPIRATION_MINUTES = 5;
+
+    private final Cache<String, GetDataAlertRule> cache;
+    // incremented before each invalidation, so that a rule loaded meanwhile is not kept in the cache
+    private final AtomicLong generation = new AtomicLong();
+    private final AlertRuleService alertRuleService;
+    private final AlertRuleDataAssembler alertRuleDataAssembler;
+    private final ClusterEventPublisher clusterEventPublisher;
+
+    @Inject
+    public AlertRuleViewCache(AlertRuleService alertRuleService,
+                              AlertRuleDataAssembler alertRuleDataAssembler,
+                              EventBus serverEventBus,
+                              ClusterEventPublisher clusterEventPublisher,
+                              MetricRegistry metricRegistry) {
+        this.alertRuleService = alertRuleService;
+        this.alertRuleDataAssembler = alertRuleDataAssembler;
+        this.clusterEventPublisher = clusterEventPublisher;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(EXPIRATION_MINUTES, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        this.registerMetrics(metricRegistry);
+        serverEventBus.register(this);
+    }
+
+    private void registerMetrics(MetricRegistry metricRegistry) {
+        MetricUtils.safelyRegister(metricRegistry, MetricRegistry.name(AlertRuleViewCache.class, "hits"),
+                (Gauge<Long>) () -> this.cache.stats().hitCount());
+        MetricUtils.safelyRegister(metricRegistry, MetricRegistry.name(AlertRuleViewCache.class, "misses"),
+                (Gauge<Long>) () -> this.cache.stats().missCount());
+        MetricUtils.safelyRegister(metricRegistry, MetricRegistry.name(AlertRuleViewCache.class, "evictions"),
+                (Gauge<Long>) () -> this.cache.stats().evictionCount());
+        MetricUtils.safelyRegister(metricRegistry, MetricRegistry.name(AlertRuleViewCache.class, "size"),
+                (Gauge<Long>) this.cache::size);
+    }
+
+    public GetDataAlertRule get(String title) throws NotFoundException {
+        GetDataAlertRule result = this.cache.getIfPresent(title);
+        if (result != null) {
+            return result;
+        }
+        long loadGeneration = this.generation.get();
+        AlertRule alert = this.alertRuleService.load(title);
+        if (alert == null) {
+            throw new NotFoundException("Alert <" + title + "> not found!");
+        }
+        result = this.alertRuleDataAssembler.assemble(alert);
+        this.cache.put(title, result);
+        if (this.generation.get() != loadGeneration) {
+            this.cache.asMap().remove(title, result);
+        }
+        return result;
+    }
+
+    /**
+     * Only rules with all their fields are cached. When a subset of the fields is requested and the rule is not in
+     * the cache yet, only these fields are assembled.
+     */
+    public GetDataAlertRule get(String title, AlertRuleFields fields) throws NotFoundException {
+        if (fields.isAll()) {
+            return this.get(title);
+        }
+        GetDataAlertRule result = this.cache.getIfPresent(title);
+        if (result != null) {
+            return result;
+        }
+        AlertRule alert = this.alertRuleService.load(title);
+        if (alert == null) {
+            throw new NotFoundException("Alert <" + title + "> not found!");
+        }
+        return this.alertRuleDataAssembler.assemble(List.of(alert), fields).get(0);
+    }
+
+    /**
+     * Drops the rule from the cache of this node right away, then from the cache of the other nodes.
+     */
+    public void invalidate(String title) {
+        this.generation.incrementAndGet();
+        this.cache.invalidate(title);
+        this.clusterEventPublisher.postAlertRulesChanged(Set.of(title));
+    }
+
+    public void invalidate(Collection<String> titles) {
+        if (titles.isEmpty()) {
+            return;
+        }
+        this.generation.incrementAndGet();
+        this.cache.invalidateAll(titles);
+        this.clusterEventPublisher.postAlertRulesChanged(titles);
+    }
+
+    @Subscribe
+    public void handleAlertRuleChanged(AlertRuleChangedEvent event) {
+        this.generation.incrementAndGet();
+        this.cache.invalidateAll(event.titles());
+    }
+
+    @Subscribe
+    public void handleEventDefinitionsChanged(EventDefinitionsChangedEvent event) {
+        Set<String> eventIdentifiers = event.identifiers();
+        this.generation.incrementAndGet();
+        this.cache.asMap().values().removeIf(alert -> eventIdentifiers.contains(alert.getConditionID())
+                || eventIdentifiers.contains(alert.secondEventDefinitionIdentifier()));
+    }
+
+    @Subscribe
+    public void handleStreamsChanged(StreamsChangedEvent event) {
+        this.invalidateStreams(event.streamIds());
+    }
+
+    @Subscribe
+    public void handleStreamDeleted(StreamDeletedEvent event) {
+        this.invalidateStreams(Set.of(event.streamId()));
+    }
+
+    private void invalidateStreams(Collection<String> streamIdentifiers) {
+        this.generation.incrementAndGet();
+        this.cache.asMap().values().removeIf(alert -> dependsOn(alert.getStream(), streamIdentifiers)
+                || dependsOn(alert.getSecondStream(), streamIdentifiers));
+    }
+
+    private static boolean dependsOn(AlertRuleStream stream, Collection<String> streamIdentifiers) {
+        return stream != null && streamIdentifiers.contains(stream.getID());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.views;
+
+import com.airbus_cyber_security.graylog.wizard.alert.rest.AlertRuleFields;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetDataAlertRule;
+import com.airbus_cyber_security.graylog.wizard.database.Versions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.database.PaginatedDbService;
+import org.mongojack.DBCursor;
+import org.mongojack.DBQuery;
+
+import jakarta.inject.Inject;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read model of the alert rules: stores each rule already assembled in its REST representation.
+ */
+public class AlertRuleViewCollection extends PaginatedDbService<GetDataAlertRule> {
+
+    private static final String COLLECTION_NAME = "wizard_alert_views";
+    private static final String TITLE = "title";
+    // changes on each write of the view, even when the reconciled fields leave last_modified untouched
+    private static final String REVISION = "revision";
+    private static final String STREAM_IDENTIFIER = "stream.id";
+    private static final String SECOND_STREAM_IDENTIFIER = "second_stream.id";
+    private static final String EVENT_DEFINITION_IDENTIFIER = AlertRuleFields.CONDITION;
+    private static final String SECOND_EVENT_DEFINITION_IDENTIFIER = AlertRuleFields.SECOND_EVENT_DEFINITION;
+
+    @Inject
+    public AlertRuleViewCollection(MongoConnection mongoConnection, MongoJackObjectMapperProvider mapperProvider) {
+        super(mongoConnection, mapperProvider, GetDataAlertRule.class, COLLECTION_NAME);
+        this.db.createIndex(new BasicDBObject(TITLE, 1), new BasicDBObject("unique", true));
+        this.db.createIndex(new BasicDBObject(STREAM_IDENTIFIER, 1));
+        this.db.createIndex(new BasicDBObject(SECOND_STREAM_IDENTIFIER, 1));
+        this.db.createIndex(new BasicDBObject(EVENT_DEFINITION_IDENTIFIER, 1));
+        this.db.createIndex(new BasicDBObject(SECOND_EVENT_DEFINITION_IDENTIFIER, 1));
+    }
+
+    public void save(GetDataAlertRule view) {
+        DBObject document = this.db.convertToDbObject(view);
+        document.put(REVISION, new ObjectId().toHexString());
+        this.db.getDbCollection().update(new BasicDBObject(TITLE, view.getTitle()), document, true, false);
+    }
+
+    public GetDataAlertRule load(String title) {
+        return this.db.findOne(DBQuery.is(TITLE, title));
+    }
+
+    public Map<String, GetDataAlertRule> load(Collection<String> titles) {
+        Map<String, GetDataAlertRule> result = new HashMap<>();
+        try (DBCursor<GetDataAlertRule> cursor = this.db.find(DBQuery.in(TITLE, titles))) {
+            while (cursor.hasNext()) {
+                GetDataAlertRule view = cursor.next();
+                result.put(view.getTitle(), view);
+            }
+        }
+        return result;
+    }
+
+    public int destroy(String title) {
+        return this.db.remove(DBQuery.is(TITLE, title)).getN();
+    }
+
+    public int destroy(Collection<String> titles) {
+        return this.db.remove(DBQuery.in(TITLE, titles)).getN();
+    }
+
+    public int destroyAllExcept(Collection<String> titles) {
+        return this.db.remove(DBQuery.notIn(TITLE, titles)).getN();
+    }
+
+    public long count() {
+        return this.db.count();
+    }
+
+    /**
+     * Changes whenever a view is written, including when only its priority, its streams or its disabled state change.
+     */
+    public String getVersion() {
+        return Versions.ofCollection(this.db.getDbCollection(), REVISION);
+    }
+
+    /**
+     * Same as getVersion, for the view of a single rule. Returns null when there is no such view.
+     */
+    public String getVersion(String title) {
+        return Versions.ofDocument(this.db.getDbCollection(), new BasicDBObject(TITLE, title), REVISION);
+    }
+
+    /**
+     * Iterates over all views, sorted by title, fetching batchSize documents per round trip.
+     * The caller is responsible for closing the cursor.
+     */
+    public DBCursor<GetDataAlertRule> cursor(int batchSize) {
+        return this.db.find(DBQuery.empty()).sort(new BasicDBObject(TITLE, 1)).batchSize(batchSize);
+    }
+
+    /**
+     * Same as cursor, but only reads the given fields (and the title) of each view.
+     */
+    public DBCursor<GetDataAlertRule> cursor(int batchSize, Collection<String> fields) {
+        BasicDBObject projection = new BasicDBObject(TITLE, 1);
+        for (String field: fields) {
+            projection.append(field, 1);
+        }
+        return this.db.find(DBQuery.empty(), projection).sort(new BasicDBObject(TITLE, 1)).batchSize(batchSize);
+    }
+
+    /**
+     * Returns the titles of the rules which filter messages with one of the given streams.
+     */
+    public Set<String> getTitlesByStreams(Collection<String> streamIdentifiers) {
+        return this.getTitles(DBQuery.or(DBQuery.in(STREAM_IDENTIFIER, streamIdentifiers),
+                DBQuery.in(SECOND_STREAM_IDENTIFIER, streamIdentifiers)));
+    }
+
+    /**
+     * Returns the titles of the rules which rely on one of the given event definitions.
+     */
+    public Set<String> getTitlesByEventDefinitions(Collection<String> eventDefinitionIdentifiers) {
+        return this.getTitles(DBQuery.or(DBQuery.in(EVENT_DEFINITION_IDENTIFIER, eventDefinitionIdentifiers),
+                DBQuery.in(SECOND_EVENT_DEFINITION_IDENTIFIER, eventDefinitionIdentifiers)));
+    }
+
+    private Set<String> getTitles(DBQuery.Query query) {
+        Set<String> result = new HashSet<>();
+        try (DBCursor<GetDataAlertRule> cursor = this.db.find(query, new BasicDBObject(TITLE, 1))) {
+            while (cursor.hasNext()) {
+                result.add(cursor.next().getTitle());
+            }
+        }
+        return result;
+    }
+}
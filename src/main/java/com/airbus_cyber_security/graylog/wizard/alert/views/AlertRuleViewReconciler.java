@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.views;
+
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+
+/**
+ * Periodically brings the wizard_alert_views read model back in line with the rules and their Graylog entities.
+ */
+public class AlertRuleViewReconciler extends Periodical {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertRuleViewReconciler.class);
+
+    private final AlertRuleViewService alertRuleViewService;
+
+    @Inject
+    public AlertRuleViewReconciler(AlertRuleViewService alertRuleViewService) {
+        this.alertRuleViewService = alertRuleViewService;
+    }
+
+    @Override
+    public boolean runsForever() {
+        return false;
+    }
+
+    @Override
+    public boolean stopOnGracefulShutdown() {
+        return true;
+    }
+
+    @Override
+    public boolean leaderOnly() {
+        return true;
+    }
+
+    @Override
+    public boolean startOnThisNode() {
+        return true;
+    }
+
+    @Override
+    public boolean isDaemon() {
+        return true;
+    }
+
+    @Override
+    public int getInitialDelaySeconds() {
+        return 30;
+    }
+
+    @Override
+    public int getPeriodSeconds() {
+        return 300;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    public void doRun() {
+        try {
+            this.alertRuleViewService.reconcile();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to reconcile the alert rule views", e);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.views;
+
+import com.airbus_cyber_security.graylog.wizard.alert.business.AlertRuleService;
+import com.airbus_cyber_security.graylog.wizard.alert.model.AlertRule;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.AlertRuleDataAssembler;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.AlertRuleFields;
+import com.airbus_cyber_security.graylog.wizard.alert.rest.models.responses.GetDataAlertRule;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.graylog2.streams.events.StreamDeletedEvent;
+import org.graylog2.streams.events.StreamsChangedEvent;
+import org.mongojack.DBCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the wizard_alert_views read model.
+ *
+ * Views are written by the REST resource at the end of each modification of a rule, and refreshed here whenever
+ * Graylog signals a change on one of the streams they depend on, or the {@link EventDefinitionWatcher} one on their
+ * event definitions. Anything else is caught up by the {@link AlertRuleViewReconciler}. Only the views which differ
+ * from the stored ones are written.
+ */
+@Singleton
+public class AlertRuleViewService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertRuleViewService.class);
+    private static final int BATCH_SIZE = 500;
+    // views read back from MongoDB may hold numbers of another type than the assembled ones, an Integer for a Long...
+    private static final Comparator<JsonNode> SAME_VALUES = (node, other) -> {
+        if (node.isNumber() && other.isNumber()) {
+            return node.decimalValue().compareTo(other.decimalValue());
+        }
+        return node.equals(other) ? 0 : 1;
+    };
+
+    private final AlertRuleViewCollection views;
+    private final AlertRuleService alertRuleService;
+    private final AlertRuleDataAssembler alertRuleDataAssembler;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public AlertRuleViewService(AlertRuleViewCollection views,
+                                AlertRuleService alertRuleService,
+                                AlertRuleDataAssembler alertRuleDataAssembler,
+                                ObjectMapper objectMapper,
+                                EventBus serverEventBus) {
+        this.views = views;
+        this.alertRuleService = alertRuleService;
+        this.alertRuleDataAssembler = alertRuleDataAssembler;
+        this.objectMapper = objectMapper;
+        serverEventBus.register(this);
+    }
+
+    public void save(GetDataAlertRule view) {
+        this.views.save(view);
+    }
+
+    public void remove(String title) {
+        this.views.destroy(title);
+    }
+
+    public void remove(Collection<String> titles) {
+        if (titles.isEmpty()) {
+            return;
+        }
+        this.views.destroy(titles);
+    }
+
+    /**
+     * The caller is responsible for closing the cursor.
+     */
+    public DBCursor<GetDataAlertRule> cursor(int batchSize, AlertRuleFields fields) {
+        if (fields.isAll()) {
+            return this.views.cursor(batchSize);
+        }
+        return this.views.cursor(batchSize, fields.names());
+    }
+
+    public String getVersion() {
+        return this.views.getVersion();
+    }
+
+    /**
+     * Version of the view of the rule, built first when it is missing. Returns null when there is no such rule.
+     */
+    public String getVersion(String title) {
+        String version = this.views.getVersion(title);
+        if (version == null) {
+            this.refresh(List.of(title));
+            version = this.views.getVersion(title);
+        }
+        return version;
+    }
+
+    public boolean isComplete() {
+        return this.views.count() == this.alertRuleService.count();
+    }
+
+    /**
+     * Rebuilds the views of the given rules.
+     */
+    public void refresh(Collection<String> titles) {
+        if (titles.isEmpty()) {
+            return;
+        }
+        this.reconcile(this.alertRuleService.load(titles));
+    }
+
+    /**
+     * Rebuilds the views which are missing or stale, and removes the views of rules which do not exist anymore.
+     */
+    public void reconcile() {
+        Set<String> titles = new HashSet<>();
+        int updatedCount = 0;
+        try (DBCursor<AlertRule> cursor = this.alertRuleService.cursor(BATCH_SIZE)) {
+            List<AlertRule> batch = new ArrayList<>(BATCH_SIZE);
+            while (cursor.hasNext()) {
+                AlertRule alert = cursor.next();
+                titles.add(alert.getTitle());
+                batch.add(alert);
+                if (batch.size() == BATCH_SIZE) {
+                    updatedCount += this.reconcile(batch);
+                    batch.clear();
+                }
+            }
+            updatedCount += this.reconcile(batch);
+        }
+        int removedCount = this.views.destroyAllExcept(titles);
+        if (updatedCount > 0 || removedCount > 0) {
+            LOG.debug("Reconciled alert rule views: {} rebuilt, {} removed", updatedCount, removedCount);
+        }
+    }
+
+    private int reconcile(List<AlertRule> alerts) {
+        if (alerts.isEmpty()) {
+            return 0;
+        }
+        List<String> titles = alerts.stream().map(AlertRule::getTitle).toList();
+        Map<String, GetDataAlertRule> storedViews = this.views.load(titles);
+        int updatedCount = 0;
+        for (GetDataAlertRule view: this.alertRuleDataAssembler.assemble(alerts)) {
+            if (!this.isSame(view, storedViews.get(view.getTitle()))) {
+                this.views.save(view);
+                updatedCount++;
+            }
+        }
+        return updatedCount;
+    }
+
+    private boolean isSame(GetDataAlertRule view, GetDataAlertRule storedView) {
+        if (storedView == null) {
+            return false;
+        }
+        JsonNode node = this.objectMapper.valueToTree(view);
+        return node.equals(SAME_VALUES, this.objectMapper.valueToTree(storedView));
+    }
+
+    @Subscribe
+    public void handleEventDefinitionsChanged(EventDefinitionsChangedEvent event) {
+        try {
+            this.refresh(this.views.getTitlesByEventDefinitions(event.identifiers()));
+        } catch (RuntimeException e) {
+            // the reconciler will catch up
+            LOG.warn("Failed to refresh the views of the alert rules depending on event definitions {}", event.identifiers(), e);
+        }
+    }
+
+    @Subscribe
+    public void handleStreamsChanged(StreamsChangedEvent event) {
+        this.refreshStreams(event.streamIds());
+    }
+
+    @Subscribe
+    public void handleStreamDeleted(StreamDeletedEvent event) {
+        this.refreshStreams(Set.of(event.streamId()));
+    }
+
+    private void refreshStreams(Collection<String> streamIdentifiers) {
+        try {
+            this.refresh(this.views.getTitlesByStreams(streamIdentifiers));
+        } catch (RuntimeException e) {
+            // the reconciler will catch up
+            LOG.warn("Failed to refresh the views of the alert rules depending on streams {}", streamIdentifiers, e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.views;
+
+import com.airbus_cyber_security.graylog.wizard.alert.business.ClusterEventPublisher;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Detects the event definitions scheduled, unscheduled, modified or deleted outside of the wizard (through the Graylog
+ * interface or API, which post no event) and signals them with an {@link EventDefinitionsChangedEvent}.
+ *
+ * Only the state and the modification date of each event definition are read, with a single projection query.
+ */
+public class EventDefinitionWatcher extends Periodical {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventDefinitionWatcher.class);
+    private static final String ID = "_id";
+    private static final String STATE = "state";
+    private static final String UPDATED_AT = "updated_at";
+
+    private final MongoCollection<Document> eventDefinitions;
+    private final ClusterEventPublisher clusterEventPublisher;
+    // null until the first run, which only takes the snapshot
+    private Map<String, String> snapshot;
+
+    @Inject
+    public EventDefinitionWatcher(MongoConnection mongoConnection, ClusterEventPublisher clusterEventPublisher) {
+        this.eventDefinitions = mongoConnection.getMongoDatabase().getCollection("event_definitions");
+        this.clusterEventPublisher = clusterEventPublisher;
+    }
+
+    @Override
+    public boolean runsForever() {
+        return false;
+    }
+
+    @Override
+    public boolean stopOnGracefulShutdown() {
+        return true;
+    }
+
+    @Override
+    public boolean leaderOnly() {
+        return true;
+    }
+
+    @Override
+    public boolean startOnThisNode() {
+        return true;
+    }
+
+    @Override
+    public boolean isDaemon() {
+        return true;
+    }
+
+    @Override
+    public int getInitialDelaySeconds() {
+        return 10;
+    }
+
+    @Override
+    public int getPeriodSeconds() {
+        return 5;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    public void doRun() {
+        try {
+            Map<String, String> current = this.readStates();
+            if (this.snapshot != null) {
+                Set<String> changed = new HashSet<>();
+                for (Map.Entry<String, String> entry: current.entrySet()) {
+                    if (!Objects.equals(entry.getValue(), this.snapshot.get(entry.getKey()))) {
+                        changed.add(entry.getKey());
+                    }
+                }
+                for (String identifier: this.snapshot.keySet()) {
+                    if (!current.containsKey(identifier)) {
+                        changed.add(identifier);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    LOG.debug("Event definitions {} changed", changed);
+                    this.clusterEventPublisher.postEventDefinitionsChanged(changed);
+                }
+            }
+            this.snapshot = current;
+        } catch (RuntimeException e) {
+            LOG.error("Failed to watch the event definitions", e);
+        }
+    }
+
+    private Map<String, String> readStates() {
+        Map<String, String> result = new HashMap<>();
+        try (MongoCursor<Document> cursor = this.eventDefinitions.find()
+                .projection(Projections.include(STATE, UPDATED_AT))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                result.put(document.getObjectId(ID).toHexString(), document.get(STATE) + "-" + document.get(UPDATED_AT));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.alert.views;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import java.util.Set;
+
+/**
+ * Posted on the ClusterEventBus whenever event definitions are scheduled, unscheduled, modified or deleted, so that
+ * every node brings the views of the rules which depend on them up to date.
+ */
+@AutoValue
+@JsonAutoDetect
+public abstract class EventDefinitionsChangedEvent {
+
+    @JsonProperty("identifiers")
+    public abstract Set<String> identifiers();
+
+    @JsonCreator
+    public static EventDefinitionsChangedEvent create(@JsonProperty("identifiers") Set<String> identifiers) {
+        return new AutoValue_EventDefinitionsChangedEvent(Set.copyOf(identifiers));
+    }
+}
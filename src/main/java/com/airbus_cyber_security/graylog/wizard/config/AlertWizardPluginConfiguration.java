@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.config;
+
+import com.github.joschi.jadconfig.Parameter;
+import com.github.joschi.jadconfig.util.Duration;
+import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
+import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
+import org.graylog2.plugin.PluginConfigBean;
+
+/**
+ * Node configuration of the plugin, read from the Graylog server configuration file.
+ */
+public class AlertWizardPluginConfiguration implements PluginConfigBean {
+
+    public static final String ASSEMBLY_THREADS = "alert_wizard_assembly_threads";
+    public static final String JOB_THREADS = "alert_wizard_job_threads";
+    public static final String CONSOLIDATED_PIPELINE = "alert_wizard_consolidated_pipeline";
+    public static final String LOOKUP_CACHE_SIZE = "alert_wizard_lookup_cache_size";
+    public static final String LOOKUP_CACHE_TTL = "alert_wizard_lookup_cache_ttl";
+
+    // number of threads which build the views of alert rules concurrently
+    @Parameter(value = ASSEMBLY_THREADS, validators = PositiveIntegerValidator.class)
+    private int assemblyThreads = 4;
+
+    // number of threads which provision alert rules in the background
+    @Parameter(value = JOB_THREADS, validators = PositiveIntegerValidator.class)
+    private int jobThreads = 2;
+
+    // whether the list rules which filter all messages are gathered in a single pipeline, rather than one pipeline each
+    @Parameter(value = CONSOLIDATED_PIPELINE)
+    private boolean consolidatedPipeline = false;
+
+    // maximum number of entries of the cache shared by the lookup tables of lists, 0 for no cache at all
+    @Parameter(value = LOOKUP_CACHE_SIZE, validators = NonNegativeIntegerValidator.class)
+    private int lookupCacheSize = 0;
+
+    // time after which an entry of the cache of the lookup tables of lists is looked up again
+    @Parameter(value = LOOKUP_CACHE_TTL, validators = PositiveDurationValidator.class)
+    private Duration lookupCacheTTL = Duration.seconds(60);
+
+    public int getAssemblyThreads() {
+        return this.assemblyThreads;
+    }
+
+    public int getJobThreads() {
+        return this.jobThreads;
+    }
+
+    public boolean isConsolidatedPipeline() {
+        return this.consolidatedPipeline;
+    }
+
+    public int getLookupCacheSize() {
+        return this.lookupCacheSize;
+    }
+
+    public Duration getLookupCacheTTL() {
+        return this.lookupCacheTTL;
+    }
+}
@@ -17,9 +17,13 @@
 
 package com.airbus_cyber_security.graylog.wizard.database;
 
+import com.airbus_cyber_security.graylog.wizard.alert.business.ClusterEventPublisher;
+import com.airbus_cyber_security.graylog.wizard.config.AlertWizardPluginConfiguration;
+import com.github.joschi.jadconfig.util.Duration;
 import org.graylog2.database.entities.DefaultEntityScope;
 import org.graylog2.lookup.LookupDefaultMultiValue;
 import org.graylog2.lookup.LookupDefaultSingleValue;
+import org.graylog2.lookup.caches.CaffeineCache;
 import org.graylog2.lookup.caches.NullCache;
 import org.graylog2.lookup.db.DBCacheService;
 import org.graylog2.lookup.db.DBDataAdapterService;
@@ -27,24 +31,38 @@ import org.graylog2.lookup.db.DBLookupTableService;
 import org.graylog2.lookup.dto.CacheDto;
 import org.graylog2.lookup.dto.DataAdapterDto;
 import org.graylog2.lookup.dto.LookupTableDto;
+import org.graylog2.plugin.lookup.LookupCacheConfiguration;
 import org.graylog2.plugin.lookup.LookupDataAdapterConfiguration;
 
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public class LookupService {
 
+    private static final String CACHE_TITLE = "wizard cache";
+
     private final DBDataAdapterService dataAdapterService;
     private final DBCacheService cacheService;
     private final DBLookupTableService lookupTableService;
+    private final ClusterEventPublisher clusterEventPublisher;
+    private final int cacheSize;
+    private final Duration cacheTTL;
 
     @Inject
-    public LookupService(DBDataAdapterService dataAdapterService, DBCacheService cacheService, DBLookupTableService lookupTableService) {
+    public LookupService(DBDataAdapterService dataAdapterService, DBCacheService cacheService, DBLookupTableService lookupTableService,
+                         ClusterEventPublisher clusterEventPublisher,
+                         @Named(AlertWizardPluginConfiguration.LOOKUP_CACHE_SIZE) int cacheSize,
+                         @Named(AlertWizardPluginConfiguration.LOOKUP_CACHE_TTL) Duration cacheTTL) {
         this.dataAdapterService = dataAdapterService;
         this.cacheService = cacheService;
         this.lookupTableService = lookupTableService;
+        this.clusterEventPublisher = clusterEventPublisher;
+        this.cacheSize = cacheSize;
+        this.cacheTTL = cacheTTL;
     }
 
     // source of inspiration org.graylog2.rest.resources.system.lookup.LookupTableResource.createAdapter
@@ -64,33 +82,76 @@ public class LookupService {
                 .scope(DefaultEntityScope.NAME)
                 .build();
 
-        DataAdapterDto dataAdapter = this.dataAdapterService.saveAndPostEvent(dto);
+        DataAdapterDto dataAdapter = this.dataAdapterService.save(dto);
+        this.clusterEventPublisher.postDataAdapterUpdated(dataAdapter.id());
         return dataAdapter.id();
     }
 
-    // source of inspiration org.graylog2.rest.resources.system.lookup.LookupTableResource.createCache
-    private String createUniqueCache() {
+    /**
+     * Without a size, the lookups go straight to the data adapter. Otherwise entries are kept in memory, bounded in
+     * number and expiring after the configured duration, so that changes of the lists are eventually visible.
+     */
+    private LookupCacheConfiguration createCacheConfiguration() {
+        if (this.cacheSize == 0) {
+            return NullCache.Config.builder()
+                    .type(NullCache.NAME)
+                    .build();
+        }
+        return CaffeineCache.Config.builder()
+                .type(CaffeineCache.NAME)
+                .maxSize(this.cacheSize)
+                .expireAfterAccess(0)
+                .expireAfterAccessUnit(TimeUnit.SECONDS)
+                .expireAfterWrite(this.cacheTTL.toSeconds())
+                .expireAfterWriteUnit(TimeUnit.SECONDS)
+                .build();
+    }
+
+    private Optional<CacheDto> findUniqueCache() {
         Collection<CacheDto> caches = this.cacheService.findAll();
         for (CacheDto cacheDto: caches) {
-            if(cacheDto.title().equals("wizard cache")){
-                return cacheDto.id();
+            if (cacheDto.title().equals(CACHE_TITLE)) {
+                return Optional.of(cacheDto);
             }
         }
+        return Optional.empty();
+    }
+
+    /**
+     * Aligns the cache shared by all the lookup tables of lists with the plugin configuration. Since the tables
+     * reference the cache by identifier, they all switch to the new configuration at once.
+     */
+    public void updateUniqueCache() {
+        Optional<CacheDto> cache = this.findUniqueCache();
+        if (cache.isEmpty()) {
+            return;
+        }
+        LookupCacheConfiguration configuration = this.createCacheConfiguration();
+        if (configuration.equals(cache.get().config())) {
+            return;
+        }
+        CacheDto updatedCache = this.cacheService.save(cache.get().toBuilder().config(configuration).build());
+        this.clusterEventPublisher.postCacheUpdated(updatedCache.id());
+    }
 
-        NullCache.Config config = NullCache.Config.builder()
-                .type(NullCache.NAME)
-                .build();
+    // source of inspiration org.graylog2.rest.resources.system.lookup.LookupTableResource.createCache
+    private String createUniqueCache() {
+        Optional<CacheDto> existingCache = this.findUniqueCache();
+        if (existingCache.isPresent()) {
+            return existingCache.get().id();
+        }
 
         CacheDto dto = CacheDto.builder()
                 .scope(DefaultEntityScope.NAME)
                 .name("wizard-cache")
                 .description(Description.COMMENT_ALERT_WIZARD)
-                .title("wizard cache")
+                .title(CACHE_TITLE)
                 .contentPack(null)
-                .config(config)
+                .config(this.createCacheConfiguration())
                 .build();
 
-        CacheDto cache = this.cacheService.saveAndPostEvent(dto);
+        CacheDto cache = this.cacheService.save(dto);
+        this.clusterEventPublisher.postCacheUpdated(cache.id());
         return cache.id();
     }
 
@@ -121,7 +182,8 @@ public class LookupService {
                 .defaultMultiValueType(LookupDefaultMultiValue.Type.NULL)
                 .build();
 
-        this.lookupTableService.saveAndPostEvent(dto);
+        LookupTableDto lookupTable = this.lookupTableService.save(dto);
+        this.clusterEventPublisher.postLookupTableUpdated(lookupTable.id(), lookupTable.name());
     }
 
     public void deleteDataAdapter(String title) {
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.database;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.plugin.system.NodeId;
+import org.graylog2.system.shutdown.GracefulShutdownHook;
+import org.graylog2.system.shutdown.GracefulShutdownService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster wide locks on titles, so that checking whether a title is free and creating an entity under this title are
+ * not interleaved with the same operation on another thread or node.
+ *
+ * Each locked title is a lease document of the wizard_locks collection, so that operations on different titles never
+ * contend. The leases of a lock are acquired in ascending order, with a single ordered bulk write which stops at the
+ * first title held by another operation: two operations locking several titles can not deadlock, and an operation only
+ * waits for the titles which are actually taken. Leases of running operations are renewed in the background, leases
+ * left over by a node which stopped are taken over once they expire.
+ */
+@Singleton
+public class TitleLocks implements GracefulShutdownHook {
+
+    public static final String ALERTS = "alerts";
+    public static final String LISTS = "lists";
+    public static final String PIPELINES = "pipelines";
+
+    private static final Logger LOG = LoggerFactory.getLogger(TitleLocks.class);
+    private static final String COLLECTION_NAME = "wizard_locks";
+    private static final String ID = "_id";
+    private static final String OWNER = "owner";
+    private static final String EXPIRES_AT = "expires_at";
+
+    private static final long LEASE_DURATION_MILLISECONDS = TimeUnit.MINUTES.toMillis(2);
+    private static final long RENEWAL_PERIOD_MILLISECONDS = TimeUnit.SECONDS.toMillis(30);
+    private static final long RETRY_DELAY_MILLISECONDS = 50;
+    private static final long ACQUISITION_TIMEOUT_MILLISECONDS = TimeUnit.MINUTES.toMillis(10);
+
+    public interface Lock extends AutoCloseable {
+        /**
+         * Adds a title to the lock, without waiting: returns false when another operation holds it.
+         * Used for the titles which are only known once the lock is held, such as the titles produced by a rename.
+         */
+        boolean tryAdd(String title);
+
+        @Override
+        void close();
+    }
+
+    private final MongoCollection<Document> leases;
+    private final String nodeIdentifier;
+    // the leases of each lock currently held by this node, by owner
+    private final Map<String, List<String>> heldLeases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewal;
+
+    @Inject
+    public TitleLocks(MongoConnection mongoConnection, NodeId nodeId, GracefulShutdownService gracefulShutdownService) {
+        this.leases = mongoConnection.getMongoDatabase().getCollection(COLLECTION_NAME);
+        this.nodeIdentifier = nodeId.getNodeId();
+        this.renewal = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("alert-wizard-lock-renewal").setDaemon(true).build());
+        this.renewal.scheduleAtFixedRate(this::renewLeases, RENEWAL_PERIOD_MILLISECONDS, RENEWAL_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
+        gracefulShutdownService.register(this);
+    }
+
+    // the leases still held expire by themselves, and are then taken over by the other nodes
+    @Override
+    public void doGracefulShutdown() {
+        this.renewal.shutdownNow();
+    }
+
+    private static String getKey(String scope, String title) {
+        return scope + "/" + title;
+    }
+
+    public Lock lock(String scope, String title) {
+        return this.lock(scope, List.of(title));
+    }
+
+    /**
+     * Blocks until all the titles are acquired. The lock must be closed by the caller.
+     */
+    public Lock lock(String scope, Collection<String> titles) {
+        SortedSet<String> keys = new TreeSet<>();
+        for (String title: titles) {
+            keys.add(getKey(scope, title));
+        }
+        String owner = this.nodeIdentifier + "/" + UUID.randomUUID();
+        // read by the renewal thread while leases are being acquired
+        List<String> acquiredKeys = new CopyOnWriteArrayList<>();
+        this.heldLeases.put(owner, acquiredKeys);
+        try {
+            long deadline = System.currentTimeMillis() + ACQUISITION_TIMEOUT_MILLISECONDS;
+            List<String> remainingKeys = new ArrayList<>(keys);
+            while (!remainingKeys.isEmpty()) {
+                int count = this.tryAcquire(remainingKeys, owner);
+                acquiredKeys.addAll(remainingKeys.subList(0, count));
+                remainingKeys = remainingKeys.subList(count, remainingKeys.size());
+                if (!remainingKeys.isEmpty()) {
+                    this.waitRetry(remainingKeys.get(0), deadline);
+                }
+            }
+        } catch (RuntimeException e) {
+            this.release(owner);
+            throw e;
+        }
+        return new Lease(scope, owner);
+    }
+
+    private void waitRetry(String key, long deadline) {
+        if (System.currentTimeMillis() > deadline) {
+            throw new IllegalStateException("Timed out waiting for lock " + key);
+        }
+        try {
+            Thread.sleep(RETRY_DELAY_MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for lock " + key, e);
+        }
+    }
+
+    /**
+     * Acquires the leases in order, up to the first one held by another owner, and returns the number of leases
+     * acquired. A lease is taken when there is none or when it expired, otherwise the upsert fails on the unique _id.
+     */
+    private int tryAcquire(List<String> keys, String owner) {
+        Date now = new Date();
+        Bson update = Updates.combine(Updates.set(OWNER, owner), Updates.set(EXPIRES_AT, new Date(now.getTime() + LEASE_DURATION_MILLISECONDS)));
+        List<UpdateOneModel<Document>> requests = new ArrayList<>();
+        for (String key: keys) {
+            requests.add(new UpdateOneModel<>(Filters.and(Filters.eq(ID, key), Filters.lt(EXPIRES_AT, now)), update, new UpdateOptions().upsert(true)));
+        }
+        try {
+            this.leases.bulkWrite(requests, new BulkWriteOptions().ordered(true));
+            return keys.size();
+        } catch (MongoBulkWriteException e) {
+            BulkWriteError error = e.getWriteErrors().get(0);
+            if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                return error.getIndex();
+            }
+            throw e;
+        }
+    }
+
+    private void release(String owner) {
+        List<String> keys = this.heldLeases.remove(owner);
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        this.leases.deleteMany(Filters.and(Filters.in(ID, keys), Filters.eq(OWNER, owner)));
+    }
+
+    private void renewLeases() {
+        Date expiresAt = new Date(System.currentTimeMillis() + LEASE_DURATION_MILLISECONDS);
+        for (Map.Entry<String, List<String>> entry: this.heldLeases.entrySet()) {
+            try {
+                this.leases.updateMany(Filters.and(Filters.in(ID, entry.getValue()), Filters.eq(OWNER, entry.getKey())),
+                        Updates.set(EXPIRES_AT, expiresAt));
+            } catch (RuntimeException e) {
+                // retried at the next period, well before the lease expires
+                LOG.warn("Failed to renew the leases of lock {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private class Lease implements Lock {
+        private final String scope;
+        private final String owner;
+
+        private Lease(String scope, String owner) {
+            this.scope = scope;
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean tryAdd(String title) {
+            String key = getKey(this.scope, title);
+            List<String> acquiredKeys = TitleLocks.this.heldLeases.get(this.owner);
+            if (acquiredKeys.contains(key)) {
+                return true;
+            }
+            if (TitleLocks.this.tryAcquire(List.of(key), this.owner) == 0) {
+                return false;
+            }
+            acquiredKeys.add(key);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            TitleLocks.this.release(this.owner);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+
+package com.airbus_cyber_security.graylog.wizard.database;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+import java.util.Date;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Computes cheap version strings for the wizard collections, to be used as HTTP entity tags.
+ *
+ * A version only reads the last_modified field, and a few additional fields given by the caller, without loading
+ * the documents themselves.
+ */
+public class Versions {
+
+    private static final String LAST_MODIFIED = "last_modified";
+    private static final String COUNT = "count";
+
+    /**
+     * Version of the whole collection: the number of documents, the most recent last_modified and a digest of the
+     * values of each additional field. Additional fields are for data which may change without touching last_modified.
+     */
+    public static String ofCollection(DBCollection collection, String... fields) {
+        BasicDBObject group = new BasicDBObject("_id", null)
+                .append(COUNT, new BasicDBObject("$sum", 1))
+                .append(LAST_MODIFIED, new BasicDBObject("$max", "$" + LAST_MODIFIED));
+        for (String field: fields) {
+            group.append(field, new BasicDBObject("$push", "$" + field));
+        }
+        List<DBObject> pipeline = List.of(new BasicDBObject("$group", group));
+        try (Cursor cursor = collection.aggregate(pipeline, AggregationOptions.builder().build())) {
+            if (!cursor.hasNext()) {
+                return "0";
+            }
+            DBObject result = cursor.next();
+            StringJoiner version = new StringJoiner("-");
+            version.add(toString(result.get(COUNT)));
+            version.add(toString(result.get(LAST_MODIFIED)));
+            for (String field: fields) {
+                version.add(Integer.toHexString(result.get(field).hashCode()));
+            }
+            return version.toString();
+        }
+    }
+
+    /**
+     * Version of the document matching the query: its last_modified and each additional field.
+     * Returns null when there is no such document.
+     */
+    public static String ofDocument(DBCollection collection, DBObject query, String... fields) {
+        BasicDBObject projection = new BasicDBObject(LAST_MODIFIED, 1);
+        for (String field: fields) {
+            projection.append(field, 1);
+        }
+        DBObject document = collection.findOne(query, projection);
+        if (document == null) {
+            return null;
+        }
+        StringJoiner version = new StringJoiner("-");
+        version.add(toString(document.get(LAST_MODIFIED)));
+        for (String field: fields) {
+            version.add(toString(document.get(field)));
+        }
+        return version.toString();
+    }
+
+    private static String toString(Object value) {
+        // Date.toString would drop the milliseconds
+        if (value instanceof Date date) {
+            return String.valueOf(date.getTime());
+        }
+        return String.valueOf(value);
+    }
+}
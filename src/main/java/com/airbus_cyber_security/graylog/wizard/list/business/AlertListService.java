@@ -17,12 +17,15 @@
 
 package com.airbus_cyber_security.graylog.wizard.list.business;
 
+import com.airbus_cyber_security.graylog.wizard.alert.business.ClusterEventPublisher;
 import com.airbus_cyber_security.graylog.wizard.database.LookupService;
+import com.airbus_cyber_security.graylog.wizard.database.VersionConflictException;
 import com.airbus_cyber_security.graylog.wizard.list.model.AlertList;
 import com.airbus_cyber_security.graylog.wizard.list.bundles.ExportAlertList;
 import com.airbus_cyber_security.graylog.wizard.list.persistence.AlertListCollection;
 import com.airbus_cyber_security.graylog.wizard.list.rest.models.requests.AlertListRequest;
 import org.graylog2.lookup.adapters.CSVFileDataAdapter;
+import org.mongojack.DBCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,34 +51,61 @@ public class AlertListService {
     private final Validator validator;
 
     private final LookupService lookupService;
+    private final ClusterEventPublisher clusterEventPublisher;
     private static final Logger LOG = LoggerFactory.getLogger(AlertListService.class);
     private static final String TITLE = "title";
 
     @Inject
-    public AlertListService(Validator validator, LookupService lookupService, AlertListCollection collection) {
+    public AlertListService(Validator validator, LookupService lookupService, AlertListCollection collection,
+                            ClusterEventPublisher clusterEventPublisher) {
         this.validator = validator;
         this.lookupService = lookupService;
         this.collection = collection;
+        this.clusterEventPublisher = clusterEventPublisher;
     }
 
     public long count() {
         return this.collection.count();
     }
 
+    public String getVersion() {
+        return this.collection.getVersion();
+    }
+
+    public String getVersion(String title) {
+        return this.collection.getVersion(title);
+    }
+
+    public String getVersionById(String identifier) {
+        return this.collection.getVersionById(identifier);
+    }
+
     public List<AlertList> all() {
         return this.collection.all();
     }
 
+    /**
+     * Iterates over all lists, fetching batchSize documents per round trip.
+     * The caller is responsible for closing the cursor.
+     */
+    public DBCursor<AlertList> cursor(int batchSize) {
+        return this.collection.cursor(batchSize);
+    }
+
     public AlertList load(String listTitle) {
         return this.collection.load(listTitle);
     }
 
+    public AlertList loadById(String identifier) {
+        return this.collection.loadById(identifier);
+    }
+
     public boolean isPresent(String title) {
         return this.collection.isPresent(title);
     }
 
     // TODO should not need this code: the AlertList object should directly return an array of Strings
-    private String[] getListValues(AlertList list) {
+    public String[] getValues(AlertList list) {
         // TODO getLists should never return null
         String[] results = list.getLists().split(";");
         for (int i = 0; i < results.length; i++) {
@@ -111,7 +141,9 @@ public class AlertListService {
         String adapterIdentifier = this.lookupService.createDataAdapter(title, dataAdapterConfiguration);
         this.lookupService.createLookupTable(adapterIdentifier, title);
 
-        return this.collection.create(list);
+        AlertList result = this.collection.create(list);
+        this.clusterEventPublisher.postAlertListsChanged(Set.of(title));
+        return result;
     }
 
     private Path writeCSV(AlertList list) throws IOException {
@@ -123,7 +155,7 @@ public class AlertListService {
              CSVWriter csvWriter = new CSVWriter(writer)) {
             csvWriter.writeNext(new String[] {KEY_COLUMN, VALUE_COLUMN});
 
-            for (String value: this.getListValues(list)) {
+            for (String value: this.getValues(list)) {
                 csvWriter.writeNext(new String[]{value, value});
             }
         }
@@ -137,15 +169,36 @@ public class AlertListService {
         if (!violations.isEmpty()) {
             throw new IllegalArgumentException("Specified object failed validation: " + violations);
         }
+        // lists read from the database carry their identifier and version: they are replaced by primary key,
+        // provided nobody wrote them in the meantime
+        if (list.getId() != null) {
+            AlertList result = this.collection.replace(list);
+            if (result == null) {
+                throw new VersionConflictException("List " + list.getTitle() + " was modified concurrently");
+            }
+            this.writeCSV(result);
+            // on a rename, the values move from the previous title to the new one
+            this.clusterEventPublisher.postAlertListsChanged(Set.copyOf(List.of(title, result.getTitle())));
+            return result;
+        }
         this.writeCSV(list);
-        return this.collection.update(title, list);
+        AlertList result = this.collection.update(title, list);
+        this.clusterEventPublisher.postAlertListsChanged(Set.copyOf(List.of(title, list.getTitle())));
+        return result;
+    }
+
+    // only the usage counter changes, so neither the CSV file nor the lookup table need to be written again
+    public boolean addUsage(String title, int delta) {
+        return this.collection.addUsage(title, delta);
     }
 
     public int destroy(String title) throws IOException {
         this.lookupService.deleteLookupTable(title);
         this.lookupService.deleteDataAdapter(title);
         Files.delete(getCSVFilePath(title));
-        return this.collection.destroy(title);
+        int result = this.collection.destroy(title);
+        this.clusterEventPublisher.postAlertListsChanged(Set.of(title));
+        return result;
     }
 
     private boolean isValidTitle(String title) {
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.list.functions;
+
+import com.airbus_cyber_security.graylog.wizard.list.business.AlertListService;
+import com.airbus_cyber_security.graylog.wizard.list.model.AlertList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Node-local copy of the values of all lists, read by the {@link WizardInListFunction} for every message.
+ *
+ * The values are held in immutable sets, within an immutable map which is replaced as a whole whenever a list changes
+ * on any node (through {@link AlertListChangedEvent}): the message processors read it without any lock.
+ * Lists are loaded in the background by {@link AlertListValuesLoader}, so that message processors never wait for the
+ * database: until then, no value belongs to any list.
+ */
+@Singleton
+public class AlertListValues {
+
+    private final AlertListService alertListService;
+    private volatile Map<String, Set<String>> values;
+
+    @Inject
+    public AlertListValues(AlertListService alertListService, EventBus serverEventBus) {
+        this.alertListService = alertListService;
+        serverEventBus.register(this);
+    }
+
+    public boolean contains(String listTitle, String value) {
+        Map<String, Set<String>> snapshot = this.values;
+        if (snapshot == null) {
+            return false;
+        }
+        Set<String> listValues = snapshot.get(listTitle);
+        return listValues != null && listValues.contains(value);
+    }
+
+    public boolean isLoaded() {
+        return this.values != null;
+    }
+
+    public synchronized void loadAll() {
+        if (this.values != null) {
+            return;
+        }
+        ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builder();
+        for (AlertList list: this.alertListService.all()) {
+            builder.put(list.getTitle(), ImmutableSet.copyOf(this.alertListService.getValues(list)));
+        }
+        this.values = builder.build();
+    }
+
+    /**
+     * Reloads the given lists, then swaps the whole map. Lists which do not exist anymore are dropped.
+     */
+    public synchronized void reload(Collection<String> titles) {
+        if (this.values == null) {
+            // nothing loaded yet, the loader will read the current values
+            return;
+        }
+        Map<String, Set<String>> result = new HashMap<>(this.values);
+        for (String title: titles) {
+            AlertList list = this.alertListService.load(title);
+            if (list == null) {
+                result.remove(title);
+            } else {
+                result.put(title, ImmutableSet.copyOf(this.alertListService.getValues(list)));
+            }
+        }
+        this.values = ImmutableMap.copyOf(result);
+    }
+
+    @Subscribe
+    public void handleAlertListChanged(AlertListChangedEvent event) {
+        this.reload(event.titles());
+    }
+}
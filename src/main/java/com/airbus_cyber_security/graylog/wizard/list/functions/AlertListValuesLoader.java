@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.list.functions;
+
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+
+/**
+ * Loads the values of the lists on each node as soon as it starts, then retries until the database answers, so that
+ * the first messages do not load them on a processing thread.
+ */
+public class AlertListValuesLoader extends Periodical {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlertListValuesLoader.class);
+
+    private final AlertListValues alertListValues;
+
+    @Inject
+    public AlertListValuesLoader(AlertListValues alertListValues) {
+        this.alertListValues = alertListValues;
+    }
+
+    @Override
+    public boolean runsForever() {
+        return false;
+    }
+
+    @Override
+    public boolean stopOnGracefulShutdown() {
+        return true;
+    }
+
+    @Override
+    public boolean leaderOnly() {
+        return false;
+    }
+
+    @Override
+    public boolean startOnThisNode() {
+        return true;
+    }
+
+    @Override
+    public boolean isDaemon() {
+        return true;
+    }
+
+    @Override
+    public int getInitialDelaySeconds() {
+        return 0;
+    }
+
+    @Override
+    public int getPeriodSeconds() {
+        return 10;
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    public void doRun() {
+        if (this.alertListValues.isLoaded()) {
+            return;
+        }
+        try {
+            this.alertListValues.loadAll();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to load the values of the lists, retrying in {} seconds", this.getPeriodSeconds(), e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.list.functions;
+
+import com.airbus_cyber_security.graylog.wizard.alert.model.ListCondition;
+import com.google.auto.value.AutoValue;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.filters.MessageFilter;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates every list condition of the alert rules on a sample of all the messages processed by this node.
+ *
+ * The pipeline rules stop at their first decisive condition, so counting their own lookups would only measure each
+ * condition on the messages which passed the previous ones. Here every condition sees the same messages, whatever its
+ * position in the rules. This filter never drops a message.
+ */
+@Singleton
+public class ListConditionSampler implements MessageFilter {
+
+    // one message out of SAMPLING_INTERVAL is sampled, on average
+    private static final int SAMPLING_INTERVAL = 100;
+
+    private final AlertListValues alertListValues;
+    private final Map<ListCondition, Counters> counters = new ConcurrentHashMap<>();
+    private volatile Set<ListCondition> conditions = Set.of();
+
+    /**
+     * Number of sampled messages, of messages with the field and of messages whose field belongs to the list.
+     */
+    @AutoValue
+    public abstract static class Samples {
+        public abstract long sampled();
+
+        public abstract long present();
+
+        public abstract long hits();
+
+        public static Samples create(long sampled, long present, long hits) {
+            return new AutoValue_ListConditionSampler_Samples(sampled, present, hits);
+        }
+    }
+
+    @Inject
+    public ListConditionSampler(AlertListValues alertListValues) {
+        this.alertListValues = alertListValues;
+    }
+
+    @Override
+    public boolean filter(Message message) {
+        // drawn on each processor thread, so that the threads share no counter
+        if (ThreadLocalRandom.current().nextInt(SAMPLING_INTERVAL) != 0) {
+            return false;
+        }
+        for (ListCondition condition: this.conditions) {
+            Object value = message.getField(condition.field());
+            boolean hit = (value != null) && this.alertListValues.contains(condition.list(), value.toString());
+            this.counters.computeIfAbsent(condition, key -> new Counters()).record(value != null, hit);
+        }
+        return false;
+    }
+
+    public void setConditions(Set<ListCondition> conditions) {
+        this.conditions = Set.copyOf(conditions);
+        this.counters.keySet().retainAll(this.conditions);
+    }
+
+    /**
+     * Returns the samples taken since the previous call.
+     */
+    public Map<ListCondition, Samples> drain() {
+        Map<ListCondition, Samples> result = new HashMap<>();
+        for (Map.Entry<ListCondition, Counters> entry: this.counters.entrySet()) {
+            Counters conditionCounters = entry.getValue();
+            long sampled = conditionCounters.sampled.sumThenReset();
+            if (sampled == 0) {
+                continue;
+            }
+            result.put(entry.getKey(), Samples.create(sampled, conditionCounters.present.sumThenReset(), conditionCounters.hits.sumThenReset()));
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "Alert wizard list condition sampler";
+    }
+
+    @Override
+    public int getPriority() {
+        // after the filters which may drop or complete the messages
+        return 200;
+    }
+
+    private static class Counters {
+        private final LongAdder sampled = new LongAdder();
+        private final LongAdder present = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+
+        private void record(boolean present, boolean hit) {
+            this.sampled.increment();
+            if (present) {
+                this.present.increment();
+            }
+            if (hit) {
+                this.hits.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018 Airbus CyberSecurity (SAS)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package com.airbus_cyber_security.graylog.wizard.list.functions;
+
+import org.graylog.plugins.pipelineprocessor.EvaluationContext;
+import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
+import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
+import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
+import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
+
+import jakarta.inject.Inject;
+
+/**
+ * Pipeline function which checks whether a value belongs to a wizard list.
+ *
+ * It gives the same result as a lookup in the lookup table of the list (exact and case sensitive match on the
+ * trimmed values), but reads the values directly from memory, without going through the lookup table, its cache
+ * and its data adapter, nor allocating a lookup result per message.
+ */
+public class WizardInListFunction extends AbstractFunction<Boolean> {
+
+    public static final String NAME = "wizard_in_list";
+
+    private final ParameterDescriptor<String, String> listParameter = ParameterDescriptor.string("list")
+            .description("The title of the list")
+            .build();
+    private final ParameterDescriptor<Object, Object> valueParameter = ParameterDescriptor.object("value")
+            .description("The value to look for, converted to a string")
+            .build();
+
+    private final AlertListValues alertListValues;
+
+    @Inject
+    public WizardInListFunction(AlertListValues alertListValues) {
+        this.alertListValues = alertListValues;
+    }
+
+    @Override
+    public Boolean evaluate(FunctionArgs args, EvaluationContext context) {
+        String listTitle = this.listParameter.required(args, context);
+        Object value = this.valueParameter.required(args, context);
+        if (listTitle == null || value == null) {
+            return false;
+        }
+        return this.alertListValues.contains(listTitle, value.toString());
+    }
+
+    @Override
+    public FunctionDescriptor<Boolean> descriptor() {
+        return FunctionDescriptor.<Boolean>builder()
+                .name(NAME)
+                .returnType(Boolean.class)
+                .params(this.listParameter, this.valueParameter)
+                .description("Checks whether a value belongs to an alert wizard list")
+                .build();
+    }
+}
@@ -20,9 +20,12 @@ package com.airbus_cyber_security.graylog.wizard.list.model;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 import org.joda.time.DateTime;
+import org.mongojack.Id;
+import org.mongojack.ObjectId;
 
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
@@ -33,6 +36,14 @@ import jakarta.validation.constraints.NotNull;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public abstract class AlertList {
 
+    // null until the list is stored, omitted so that replacing a list by title keeps its identifier
+    @Id
+    @ObjectId
+    @JsonProperty("id")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Nullable
+    public abstract String getId();
+
     @JsonProperty("title")
     @NotNull
     public abstract String getTitle();
@@ -64,16 +75,27 @@ public abstract class AlertList {
     @Nullable
     public abstract String getLists();
 
+    // incremented by each write, usage changes included (missing, hence 0, in older documents)
+    @JsonProperty("version")
+    public abstract long getVersion();
+
+    // the list as it should be written over the current version
+    public AlertList nextVersion() {
+        return create(getId(), getTitle(), getCreatedAt(), getCreatorUserId(), getLastModified(), getDescription(),
+                getUsage(), getLists(), getVersion() + 1);
+    }
+
     @JsonCreator
-    public static AlertList create(@JsonProperty("_id") String objectId,
+    public static AlertList create(@Id @ObjectId @JsonProperty("_id") String objectId,
                                        @JsonProperty("title") String title,
                                        @JsonProperty("created_at") DateTime createdAt,
                                        @JsonProperty("creator_user_id") String creatorUserId,
                                        @JsonProperty("last_modified") DateTime lastModified,
                                        @JsonProperty("description") String description,
                                        @JsonProperty("usage") int usage,
-                                       @JsonProperty("lists") String lists){
-        return new AutoValue_AlertList(title, createdAt, creatorUserId, lastModified, description, usage, lists);
+                                       @JsonProperty("lists") String lists,
+                                       @JsonProperty("version") long version){
+        return new AutoValue_AlertList(objectId, title, createdAt, creatorUserId, lastModified, description, usage, lists, version);
     }
 
     public static AlertList create(
@@ -84,6 +106,6 @@ public abstract class AlertList {
             String description,
             int usage,
             String lists) {
-        return new AutoValue_AlertList(title, createdAt, creatorUserId, lastModified, description, usage, lists);
+        return create(null, title, createdAt, creatorUserId, lastModified, description, usage, lists, 0);
     }
 }
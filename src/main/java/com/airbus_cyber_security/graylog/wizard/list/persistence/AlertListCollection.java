@@ -17,14 +17,17 @@
 
 package com.airbus_cyber_security.graylog.wizard.list.persistence;
 
+import com.airbus_cyber_security.graylog.wizard.database.Versions;
 import com.airbus_cyber_security.graylog.wizard.list.model.AlertList;
 import com.google.common.collect.Lists;
 import com.mongodb.BasicDBObject;
+import org.bson.types.ObjectId;
 import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
 import org.graylog2.database.MongoConnection;
 import org.graylog2.database.PaginatedDbService;
 import org.mongojack.DBCursor;
 import org.mongojack.DBQuery;
+import org.mongojack.DBUpdate;
 
 import jakarta.inject.Inject;
 import java.util.List;
@@ -32,7 +35,10 @@ import java.util.List;
 public class AlertListCollection extends PaginatedDbService<AlertList>  {
 
     private static final String COLLECTION_NAME = "wizard_lists";
+    private static final String ID = "_id";
     private static final String TITLE = "title";
+    private static final String USAGE = "usage";
+    private static final String VERSION = "version";
 
     @Inject
     public AlertListCollection(MongoConnection mongoConnection, MongoJackObjectMapperProvider mapperProvider) {
@@ -44,17 +50,68 @@ public class AlertListCollection extends PaginatedDbService<AlertList>  {
         return this.save(list);
     }
 
+    /**
+     * Replaces the list, provided it is still at the version it was read. Returns null otherwise.
+     */
+    public AlertList replace(AlertList list) {
+        return this.db.findAndModify(DBQuery.is(ID, new ObjectId(list.getId())).and(hasVersion(list.getVersion())),
+                new BasicDBObject(), new BasicDBObject(), false, list.nextVersion(), true, false);
+    }
+
+    // documents written before the version field was introduced have none
+    private static DBQuery.Query hasVersion(long version) {
+        if (version == 0) {
+            return DBQuery.or(DBQuery.is(VERSION, 0L), DBQuery.notExists(VERSION));
+        }
+        return DBQuery.is(VERSION, version);
+    }
+
     public AlertList update(String title, AlertList list) {
         return this.db.findAndModify(DBQuery.is(TITLE, title), new BasicDBObject(), new BasicDBObject(),
                 false, list, true, false);
     }
 
+    /**
+     * Atomically adds delta to the usage counter of the list, which never goes below zero.
+     * Returns false when there is no such list.
+     */
+    public boolean addUsage(String title, int delta) {
+        // the version is incremented as well, so that a concurrent replacement of the list does not overwrite the usage
+        if (this.db.update(DBQuery.is(TITLE, title), DBUpdate.inc(USAGE, delta).inc(VERSION, 1)).getN() == 0) {
+            return false;
+        }
+        if (delta < 0) {
+            this.db.update(DBQuery.is(TITLE, title).lessThan(USAGE, 0), DBUpdate.set(USAGE, 0));
+        }
+        return true;
+    }
+
     public List<AlertList> all() {
         try (DBCursor<AlertList> cursor = this.db.find(DBQuery.empty())) {
             return cursor.toArray();
         }
     }
 
+    public DBCursor<AlertList> cursor(int batchSize) {
+        return this.db.find(DBQuery.empty()).batchSize(batchSize);
+    }
+
+    // the usage counter is updated without touching last_modified
+    public String getVersion() {
+        return Versions.ofCollection(this.db.getDbCollection(), USAGE);
+    }
+
+    public String getVersion(String title) {
+        return Versions.ofDocument(this.db.getDbCollection(), new BasicDBObject(TITLE, title), USAGE);
+    }
+
+    public String getVersionById(String identifier) {
+        if (!ObjectId.isValid(identifier)) {
+            return null;
+        }
+        return Versions.ofDocument(this.db.getDbCollection(), new BasicDBObject(ID, new ObjectId(identifier)), USAGE);
+    }
+
     public long count() {
         return this.db.count();
     }
@@ -67,6 +124,14 @@ public class AlertListCollection extends PaginatedDbService<AlertList>  {
         return this.db.findOne(DBQuery.is(TITLE, title));
     }
 
+    // null when there is no list with this identifier
+    public AlertList loadById(String identifier) {
+        if (!ObjectId.isValid(identifier)) {
+            return null;
+        }
+        return this.db.findOneById(new ObjectId(identifier));
+    }
+
     public boolean isPresent(String title) {
         return (this.db.getCount(DBQuery.is(TITLE, title)) > 0);
     }
@@ -17,10 +17,13 @@
 
 package com.airbus_cyber_security.graylog.wizard.list.rest;
 
+import com.airbus_cyber_security.graylog.wizard.alert.business.ClusterEventPublisher;
 import com.airbus_cyber_security.graylog.wizard.audit.AlertWizardAuditEventTypes;
 import com.airbus_cyber_security.graylog.wizard.config.rest.AlertWizardConfig;
 import com.airbus_cyber_security.graylog.wizard.config.rest.AlertWizardConfigurationService;
 import com.airbus_cyber_security.graylog.wizard.config.rest.ImportPolicyType;
+import com.airbus_cyber_security.graylog.wizard.database.TitleLocks;
+import com.airbus_cyber_security.graylog.wizard.database.VersionConflictException;
 import com.airbus_cyber_security.graylog.wizard.list.model.AlertList;
 import com.airbus_cyber_security.graylog.wizard.list.business.AlertListService;
 import com.airbus_cyber_security.graylog.wizard.list.bundles.AlertListExporter;
@@ -32,6 +35,8 @@ import com.airbus_cyber_security.graylog.wizard.list.rest.models.responses.GetLi
 import com.airbus_cyber_security.graylog.wizard.list.utilities.AlertListUtilsService;
 import com.airbus_cyber_security.graylog.wizard.permissions.AlertRuleRestPermissions;
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.MongoException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -39,6 +44,7 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
@@ -57,14 +63,20 @@ import org.graylog2.plugin.rest.PluginRestResource;
 import org.graylog2.shared.rest.resources.RestResource;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.mongojack.DBCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
@@ -79,53 +91,131 @@ public class AlertListResource extends RestResource implements PluginRestResourc
 
     private static final String ENCODING = "UTF-8";
     private static final String TITLE = "title";
+    private static final int STREAMING_BATCH_SIZE = 500;
 
     private final AlertListService alertListService;
     private final AlertWizardConfigurationService configurationService;
     private final AlertListExporter alertListExporter;
     private final AlertListUtilsService alertListUtilsService;
-
+    private final ObjectMapper objectMapper;
+    private final ClusterEventPublisher clusterEventPublisher;
+    private final TitleLocks titleLocks;
 
     @Inject
     public AlertListResource(AlertListService alertListService,
-                             AlertWizardConfigurationService configurationService) {
+                             AlertWizardConfigurationService configurationService,
+                             ObjectMapper objectMapper,
+                             ClusterEventPublisher clusterEventPublisher,
+                             TitleLocks titleLocks) {
         this.alertListService = alertListService;
         this.configurationService = configurationService;
+        this.objectMapper = objectMapper;
+        this.clusterEventPublisher = clusterEventPublisher;
+        this.titleLocks = titleLocks;
         this.alertListUtilsService = new AlertListUtilsService(alertListService);
         this.alertListExporter = new AlertListExporter(alertListService);
     }
 
     @GET
     @Timed
-    @ApiOperation(value = "AlertListDisplay all existing lists")
+    @ApiOperation(value = "AlertListDisplay all existing lists", response = GetListAlertList.class)
     @RequiresAuthentication
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
-    public GetListAlertList list() {
-        final List<AlertList> lists = this.alertListService.all();
-        return GetListAlertList.create(lists);
+    public Response list(@Context Request request) {
+        EntityTag entityTag = new EntityTag(this.alertListService.getVersion());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+
+        // writes the same document as GetListAlertList, but one list at a time
+        StreamingOutput result = output -> {
+            try (DBCursor<AlertList> cursor = this.alertListService.cursor(STREAMING_BATCH_SIZE);
+                 JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("lists");
+                while (cursor.hasNext()) {
+                    generator.writeObject(cursor.next());
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        };
+        return Response.ok(result).tag(entityTag).cacheControl(revalidate()).build();
+    }
+
+    // lets clients keep the response, as long as they check its entity tag before each use
+    private static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        return cacheControl;
     }
 
     @GET
     @Path("/{title}")
     @Timed
-    @ApiOperation(value = "Get a list")
+    @ApiOperation(value = "Get a list", response = GetAlertList.class)
     @RequiresAuthentication
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
     @ApiResponses(value = {
             @ApiResponse(code = 404, message = "List not found."),
     })
-    public GetAlertList get(@ApiParam(name = TITLE, required = true) @PathParam(TITLE) String title)
+    public Response get(@ApiParam(name = TITLE, required = true) @PathParam(TITLE) String title, @Context Request request)
             throws UnsupportedEncodingException, NotFoundException {
         String listTitle = java.net.URLDecoder.decode(title, ENCODING);
 
+        String version = this.alertListService.getVersion(listTitle);
+        if (version == null) {
+            throw new NotFoundException("List <" + listTitle + "> not found!");
+        }
+        EntityTag entityTag = new EntityTag(version);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+
         AlertList list = this.alertListService.load(listTitle);
         if (list == null) {
             throw new NotFoundException("List <" + listTitle + "> not found!");
         }
-        return GetAlertList.create(list);
+        return Response.ok(GetAlertList.create(list)).tag(entityTag).cacheControl(revalidate()).build();
+    }
+
+    @GET
+    @Path("/id/{id}")
+    @Timed
+    @ApiOperation(value = "Get a list by identifier", response = GetAlertList.class)
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_READ)
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "List not found."),
+    })
+    public Response getById(@ApiParam(name = "id", required = true) @PathParam("id") String identifier, @Context Request request)
+            throws NotFoundException {
+        String version = this.alertListService.getVersionById(identifier);
+        if (version == null) {
+            throw new NotFoundException("List <" + identifier + "> not found!");
+        }
+        EntityTag entityTag = new EntityTag(version);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+
+        AlertList list = this.loadById(identifier);
+        return Response.ok(GetAlertList.create(list)).tag(entityTag).cacheControl(revalidate()).build();
+    }
+
+    private AlertList loadById(String identifier) throws NotFoundException {
+        AlertList list = this.alertListService.loadById(identifier);
+        if (list == null) {
+            throw new NotFoundException("List <" + identifier + "> not found!");
+        }
+        return list;
     }
 
-    private String checkImportPolicyAndGetTitle(String title){
+    // with the RENAME policy, the new title is added to the lock held by the caller
+    private String checkImportPolicyAndGetTitle(String title, TitleLocks.Lock lock){
         String listTitle = title;
         if (this.alertListService.isPresent(listTitle)) {
             AlertWizardConfig configGeneral = configurationService.getConfiguration();
@@ -136,7 +226,7 @@ public class AlertListResource extends RestResource implements PluginRestResourc
                 do {
                     newListTitle = listTitle+"("+i+")";
                     i++;
-                } while (this.alertListService.isPresent(newListTitle));
+                } while (this.alertListService.isPresent(newListTitle) || !lock.tryAdd(newListTitle));
                 listTitle = newListTitle;
             } else if (importPolicy != null && importPolicy.equals(ImportPolicyType.REPLACE)) {
                 try {
@@ -164,33 +254,38 @@ public class AlertListResource extends RestResource implements PluginRestResourc
             throws ValidationException, BadRequestException, IOException {
 
         this.alertListUtilsService.checkIsValidRequest(request);
-        String listTitle = checkImportPolicyAndGetTitle(request.getTitle());
 
-        this.alertListService.create(AlertList.create(
-                listTitle,
-                DateTime.now(DateTimeZone.UTC),
-                getCurrentUser().getName(),
-                DateTime.now(DateTimeZone.UTC),
-                request.getDescription(),
-                0,
-                request.getLists()));
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.LISTS, request.getTitle());
+             ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            String listTitle = checkImportPolicyAndGetTitle(request.getTitle(), lock);
+            this.alertListService.create(AlertList.create(
+                    listTitle,
+                    DateTime.now(DateTimeZone.UTC),
+                    getCurrentUser().getName(),
+                    DateTime.now(DateTimeZone.UTC),
+                    request.getDescription(),
+                    0,
+                    request.getLists()));
 
-        return Response.accepted().build();
+            return Response.accepted().build();
+        }
     }
 
 
     private void importAlertList(ExportAlertList alertList)
             throws BadRequestException, IOException {
-        String listTitle = checkImportPolicyAndGetTitle(alertList.getTitle());
+        try (TitleLocks.Lock lock = this.titleLocks.lock(TitleLocks.LISTS, alertList.getTitle())) {
+            String listTitle = checkImportPolicyAndGetTitle(alertList.getTitle(), lock);
 
-        this.alertListService.create(AlertList.create(
-                listTitle,
-                DateTime.now(DateTimeZone.UTC),
-                getCurrentUser().getName(),
-                DateTime.now(DateTimeZone.UTC),
-                alertList.getDescription(),
-                0,
-                alertList.getLists()));
+            this.alertListService.create(AlertList.create(
+                    listTitle,
+                    DateTime.now(DateTimeZone.UTC),
+                    getCurrentUser().getName(),
+                    DateTime.now(DateTimeZone.UTC),
+                    alertList.getDescription(),
+                    0,
+                    alertList.getLists()));
+        }
     }
 
     @PUT
@@ -204,15 +299,17 @@ public class AlertListResource extends RestResource implements PluginRestResourc
     public Response importAlertLists(@ApiParam(name = "JSON body", required = true) @Valid @NotNull List<ExportAlertList> request) {
         Response responses = Response.accepted().build();
 
-        for (ExportAlertList alertList: request) {
-            if (!this.alertListService.isValidImportRequest(alertList)) {
-                LOG.error("Invalid list:" + alertList.getTitle());
-            } else {
-                try {
-                    importAlertList(alertList);
-                } catch (Exception e) {
-                    LOG.error("Cannot create list " + alertList.getTitle() + ": ", e.getMessage());
-                    responses = Response.serverError().build();
+        try (ClusterEventPublisher.Batch batch = this.clusterEventPublisher.batch()) {
+            for (ExportAlertList alertList: request) {
+                if (!this.alertListService.isValidImportRequest(alertList)) {
+                    LOG.error("Invalid list:" + alertList.getTitle());
+                } else {
+                    try {
+                        importAlertList(alertList);
+                    } catch (Exception e) {
+                        LOG.error("Cannot create list " + alertList.getTitle() + ": ", e.getMessage());
+                        responses = Response.serverError().build();
+                    }
                 }
             }
         }
@@ -226,7 +323,10 @@ public class AlertListResource extends RestResource implements PluginRestResourc
     @RequiresAuthentication
     @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_UPDATE)
     @ApiOperation(value = "Update a list")
-    @ApiResponses(value = {@ApiResponse(code = 400, message = "The supplied request is not valid.")})
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "The supplied request is not valid."),
+            @ApiResponse(code = 409, message = "The list was modified since the version of the request.")
+    })
     @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_UPDATE)
     public Response update(@ApiParam(name = TITLE, required = true)
                            @PathParam(TITLE) String title,
@@ -236,21 +336,59 @@ public class AlertListResource extends RestResource implements PluginRestResourc
         this.alertListUtilsService.checkIsValidRequest(request);
 
         AlertList oldAlert = this.alertListService.load(title);
-        String listTitle = request.getTitle();
-
-        this.alertListService.update(java.net.URLDecoder.decode(title, ENCODING),
-                AlertList.create(
-                        listTitle,
-                        oldAlert.getCreatedAt(),
-                        getCurrentUser().getName(),
-                        DateTime.now(DateTimeZone.UTC),
-                        request.getDescription(),
-                        request.getUsage(),
-                        request.getLists()));
+        if (oldAlert == null) {
+            throw new NotFoundException("List <" + title + "> not found!");
+        }
+        this.update(oldAlert, request);
 
         return Response.accepted().build();
     }
 
+    @PUT
+    @Path("/id/{id}")
+    @Timed
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_UPDATE)
+    @ApiOperation(value = "Update a list by identifier")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "The supplied request is not valid."),
+            @ApiResponse(code = 404, message = "List not found."),
+            @ApiResponse(code = 409, message = "The list was modified since the version of the request.")
+    })
+    @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_UPDATE)
+    public Response updateById(@ApiParam(name = "id", required = true) @PathParam("id") String identifier,
+                               @ApiParam(name = "JSON body", required = true) @Valid @NotNull AlertListRequest request
+    ) throws IOException, NotFoundException {
+
+        this.alertListUtilsService.checkIsValidRequest(request);
+
+        AlertList oldAlert = this.loadById(identifier);
+        this.update(oldAlert, request);
+
+        return Response.accepted().build();
+    }
+
+    // the list is only written if it is still at the version the request was made on, if any
+    private void update(AlertList oldAlert, AlertListRequest request) throws IOException {
+        long version = (request.getVersion() == null) ? oldAlert.getVersion() : request.getVersion();
+        // the usage is maintained by the rules which use the list, not by the clients
+        AlertList list = AlertList.create(
+                oldAlert.getId(),
+                request.getTitle(),
+                oldAlert.getCreatedAt(),
+                getCurrentUser().getName(),
+                DateTime.now(DateTimeZone.UTC),
+                request.getDescription(),
+                oldAlert.getUsage(),
+                request.getLists(),
+                version);
+        try {
+            this.alertListService.update(oldAlert.getTitle(), list);
+        } catch (VersionConflictException e) {
+            throw new ClientErrorException(e.getMessage(), Response.Status.CONFLICT);
+        }
+    }
+
     @DELETE
     @Path("/{title}")
     @RequiresAuthentication
@@ -274,6 +412,22 @@ public class AlertListResource extends RestResource implements PluginRestResourc
         }
     }
 
+    @DELETE
+    @Path("/id/{id}")
+    @RequiresAuthentication
+    @RequiresPermissions(AlertRuleRestPermissions.WIZARD_ALERTS_RULES_DELETE)
+    @ApiOperation(value = "Delete a list by identifier")
+    @ApiResponses(value = {@ApiResponse(code = 404, message = "List not found.")})
+    @AuditEvent(type = AlertWizardAuditEventTypes.WIZARD_ALERTS_RULES_DELETE)
+    public void deleteById(@ApiParam(name = "id", required = true) @PathParam("id") String identifier)
+            throws MongoException, IOException, NotFoundException {
+        AlertList alertList = this.loadById(identifier);
+        if (alertList.getUsage() > 0) {
+            throw new jakarta.ws.rs.BadRequestException("List " + alertList.getTitle() + " used in alert rules");
+        }
+        this.alertListService.destroy(alertList.getTitle());
+    }
+
     @POST
     @Path("/export")
     @Timed
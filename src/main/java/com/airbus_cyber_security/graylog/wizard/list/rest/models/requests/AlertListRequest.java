@@ -46,11 +46,17 @@ public abstract class AlertListRequest {
     @Nullable
     public abstract String getLists();
 
+    // version of the list the modification was made on, as returned by the GET routes, without it the update always wins
+    @JsonProperty("version")
+    @Nullable
+    public abstract Long getVersion();
+
     @JsonCreator
     public static AlertListRequest create(@JsonProperty("title") String title,
                                           @JsonProperty("description") String description,
                                           @JsonProperty("usage") int usage,
-                                          @JsonProperty("lists") String lists) {
-        return new AutoValue_AlertListRequest(title, description, usage, lists);
+                                          @JsonProperty("lists") String lists,
+                                          @JsonProperty("version") Long version) {
+        return new AutoValue_AlertListRequest(title, description, usage, lists, version);
     }
 }
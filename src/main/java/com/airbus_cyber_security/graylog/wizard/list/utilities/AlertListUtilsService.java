@@ -17,7 +17,7 @@
 
 package com.airbus_cyber_security.graylog.wizard.list.utilities;
 
-import com.airbus_cyber_security.graylog.wizard.list.model.AlertList;
+import com.airbus_cyber_security.graylog.wizard.alert.business.ProvisioningJournal;
 import com.airbus_cyber_security.graylog.wizard.list.business.AlertListService;
 import com.airbus_cyber_security.graylog.wizard.list.rest.models.requests.AlertListRequest;
 import org.slf4j.Logger;
@@ -25,18 +25,19 @@ import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.BadRequestException;
-import java.io.IOException;
+import java.util.Map;
 
 public class AlertListUtilsService {
 
-    private static final String ENCODING = "UTF-8";
     private static final Logger LOG = LoggerFactory.getLogger(AlertListUtilsService.class);
 
     private final AlertListService alertListService;
+    private final ProvisioningJournal provisioningJournal;
 
     @Inject
-    public AlertListUtilsService(AlertListService alertListService) {
+    public AlertListUtilsService(AlertListService alertListService, ProvisioningJournal provisioningJournal) {
         this.alertListService = alertListService;
+        this.provisioningJournal = provisioningJournal;
     }
 
     public void checkIsValidRequest(AlertListRequest request){
@@ -47,48 +48,30 @@ public class AlertListUtilsService {
     }
 
     public void incrementUsage(String title) {
-        try {
-            AlertList oldAlertList = alertListService.load(title);
-            if (oldAlertList != null) {
-                alertListService.update(java.net.URLDecoder.decode(title, ENCODING),
-                        AlertList.create(
-                                title,
-                                oldAlertList.getCreatedAt(),
-                                oldAlertList.getCreatorUserId(),
-                                oldAlertList.getCreatedAt(),
-                                oldAlertList.getDescription(),
-                                oldAlertList.getUsage() + 1,
-                                oldAlertList.getLists()));
-            } else {
-                LOG.error("Failed to increment list, " + title + " does not exist");
-            }
-        } catch (IOException e) {
-            LOG.error("Failed to increment list " + title);
+        if (!this.alertListService.addUsage(title, 1)) {
+            LOG.error("Failed to increment list, " + title + " does not exist");
+            return;
         }
+        this.provisioningJournal.recordListUsage(title);
     }
 
     public void decrementUsage(String title) {
-        try {
-            AlertList oldAlertList = alertListService.load(title);
-            if(oldAlertList != null) {
-                int usage = oldAlertList.getUsage() - 1;
-                if (usage < 0) {
-                    usage = 0;
-                }
-                alertListService.update(java.net.URLDecoder.decode(title, ENCODING),
-                        AlertList.create(
-                                title,
-                                oldAlertList.getCreatedAt(),
-                                oldAlertList.getCreatorUserId(),
-                                oldAlertList.getCreatedAt(),
-                                oldAlertList.getDescription(),
-                                usage,
-                                oldAlertList.getLists()));
-            }else{
-                LOG.error("Failed to decrement list, " + title + " does not exist");
+        if (!this.alertListService.addUsage(title, -1)) {
+            LOG.error("Failed to decrement list, " + title + " does not exist");
+        }
+    }
+
+    /**
+     * Applies the usage changes of several lists, with one update per list.
+     */
+    public void updateUsage(Map<String, Integer> deltas) {
+        for (Map.Entry<String, Integer> entry: deltas.entrySet()) {
+            if (entry.getValue() == 0) {
+                continue;
+            }
+            if (!this.alertListService.addUsage(entry.getKey(), entry.getValue())) {
+                LOG.error("Failed to update usage of list, " + entry.getKey() + " does not exist");
             }
-        } catch (IOException e) {
-            LOG.error("Failed to decrement list " + title);
         }
     }
 }
@@ -96,6 +96,7 @@ const AlertListStore = Reflux.createStore({
             description: updatedList.description,
             usage: updatedList.usage,
             lists: updatedList.lists,
+            version: updatedList.version,
         };
 
         const promise = fetch(method, url, request)
@@ -148,7 +148,8 @@ const AlertRuleStore = Reflux.createStore({
             condition_parameters: updatedAlert.condition_parameters,
             stream: updatedAlert.stream,
             second_stream: updatedAlert.second_stream,
-            disabled: updatedAlert.disabled
+            disabled: updatedAlert.disabled,
+            version: updatedAlert.version
         };
 
         const promise = fetch(method, url, request)
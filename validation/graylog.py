@@ -15,8 +15,9 @@ _DEFAULT_STREAM = {
 
 class Graylog:
 
-    def __init__(self):
-        self._server = GraylogServer('../runtime')
+    def __init__(self, consolidated_pipeline=False):
+        environment = {'ALERT_WIZARD_CONSOLIDATED_PIPELINE': 'true'} if consolidated_pipeline else {}
+        self._server = GraylogServer('../runtime', environment=environment)
         self._api = GraylogRestApi()
 
     def _wait(self, condition, attempts, sleep_duration=1):
@@ -96,7 +97,8 @@ class Graylog:
             'condition_type': rule['condition_type'],
             'condition_parameters': rule['condition_parameters'],
             'stream': rule['stream'],
-            'second_stream': rule['second_stream']
+            'second_stream': rule['second_stream'],
+            'version': rule['version']
         }
         return self._api.update_alert_rule(previousTitle, updated_rule)
 
@@ -112,6 +114,11 @@ class Graylog:
     def create_list(self, *args):
         return self._api.create_list(*args)
 
+    def wait_until_messages(self, query, count, stream_identifier=None):
+        has_messages = lambda: len(self._api.search_messages(query, stream_identifier)) >= count
+        self._wait(has_messages, 60)
+        return self._api.search_messages(query, stream_identifier)
+
     def wait_until_data_adapter_unavailable(self, name):
         query_adapter_is_unavailable = lambda: self._api.query_data_adapter(name, 'stopped test key').status_code == 404
         self._wait(query_adapter_is_unavailable, 10, sleep_duration=.1)
@@ -15,9 +15,9 @@ class GraylogRestApi:
     def _build_url(self, path):
         return parse.urljoin('http://127.0.0.1:9000/api/', path)
 
-    def _get(self, path, params=None):
+    def _get(self, path, params=None, headers=None):
         url = self._build_url(path)
-        response = requests.get(url, params, auth=_AUTH, headers=_HEADERS)
+        response = requests.get(url, params, auth=_AUTH, headers={**_HEADERS, **(headers or {})})
         print(f'GET {url} => {response.status_code}')
         return response
 
@@ -87,10 +87,15 @@ class GraylogRestApi:
     def delete_gelf_input(self, identifier):
         self._delete(f'system/inputs/{identifier}')
 
-    def _create_alert_rule(self, title, stream, condition_type, time,
-                           threshold_type='>', additional_threshold_type='', additional_threshold=0, second_stream=None,
-                           group_by_fields=[], distinct_by='', field='', statistics_function='', description='',
-                           search_query='', additional_search_query='', disabled=False):
+    def _create_alert_rule(self, title, stream, condition_type, time, **kwargs):
+        alert_rule = self._build_alert_rule(title, stream, condition_type, time, **kwargs)
+        response = self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts', alert_rule)
+        return response.json()
+
+    def _build_alert_rule(self, title, stream, condition_type, time,
+                          threshold_type='>', additional_threshold_type='', additional_threshold=0, second_stream=None,
+                          group_by_fields=[], distinct_by='', field='', statistics_function='', description='',
+                          search_query='', additional_search_query='', disabled=False):
         alert_rule = {
             'condition_parameters': {
                 'search_query': search_query,
@@ -118,8 +123,7 @@ class GraylogRestApi:
             alert_rule.update({
                 'second_stream': second_stream
             })
-        response = self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts', alert_rule)
-        return response.json()
+        return alert_rule
 
     def update_alert_rule(self, previousTitle, rule):
         return self._put(f'plugins/com.airbus_cyber_security.graylog.wizard/alerts/{previousTitle}', rule)
@@ -127,6 +131,29 @@ class GraylogRestApi:
     def create_alert_rule_count(self, title, time, description='', search_query='', stream=_DEFAULT_STREAM, disabled=False):
         return self._create_alert_rule(title, stream, 'COUNT', time, description=description, search_query=search_query, disabled=disabled)
 
+    def create_alert_rules_count_bulk(self, titles, time):
+        alert_rules = [self._build_alert_rule(title, _DEFAULT_STREAM, 'COUNT', time) for title in titles]
+        return self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts/bulk', alert_rules)
+
+    def create_alert_rules_bulk_with_one_then_rule(self, titles, then_title, time):
+        alert_rules = [self._build_alert_rule(title, _DEFAULT_STREAM, 'COUNT', time) for title in titles]
+        alert_rules.append(self._build_alert_rule(then_title, _DEFAULT_STREAM, 'THEN', time))
+        return self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts/bulk', alert_rules)
+
+    def update_alert_rules_state(self, titles, disabled):
+        payload = {'titles': titles, 'disabled': disabled}
+        return self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts/bulk/state', payload)
+
+    def delete_alert_rules(self, titles):
+        return self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts/bulk/delete', {'titles': titles})
+
+    def create_alert_rule_count_async(self, title, time):
+        alert_rule = self._build_alert_rule(title, _DEFAULT_STREAM, 'COUNT', time)
+        return self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts?async=true', alert_rule)
+
+    def get_alert_rule_job(self, identifier):
+        return self._get(f'plugins/com.airbus_cyber_security.graylog.wizard/alerts/jobs/{identifier}')
+
     def create_alert_rule_group_distinct(self, title, rule, group_by_fields, distinct_by, time):
         stream = {
             'field_rule': [rule],
@@ -217,14 +244,44 @@ class GraylogRestApi:
         response = self._get(f'plugins/com.airbus_cyber_security.graylog.wizard/alerts/{name}')
         return response.json()
 
+    def get_alert_rule_response(self, name, entity_tag=None, fields=None):
+        headers = None
+        if entity_tag is not None:
+            headers = {'If-None-Match': entity_tag}
+        params = None
+        if fields is not None:
+            params = {'fields': fields}
+        return self._get(f'plugins/com.airbus_cyber_security.graylog.wizard/alerts/{name}', params=params, headers=headers)
+
+    def get_alert_rule_by_id(self, identifier):
+        return self._get(f'plugins/com.airbus_cyber_security.graylog.wizard/alerts/id/{identifier}')
+
+    def delete_alert_rule_by_id(self, identifier):
+        return self._delete(f'plugins/com.airbus_cyber_security.graylog.wizard/alerts/id/{identifier}')
+
     def clone_alert_rule(self, clone_request):
         return self._post('plugins/com.airbus_cyber_security.graylog.wizard/alerts/clone', clone_request)
 
     def delete_alert_rule(self, name):
         self._delete(f'plugins/com.airbus_cyber_security.graylog.wizard/alerts/{name}')
 
-    def get_alert_rules(self):
-        return self._get('plugins/com.airbus_cyber_security.graylog.wizard/alerts')
+    def get_alert_rules(self, entity_tag=None, fields=None):
+        headers = None
+        if entity_tag is not None:
+            headers = {'If-None-Match': entity_tag}
+        params = None
+        if fields is not None:
+            params = {'fields': fields}
+        return self._get('plugins/com.airbus_cyber_security.graylog.wizard/alerts', params, headers)
+
+    def get_alert_rules_status(self):
+        return self._get('plugins/com.airbus_cyber_security.graylog.wizard/alerts/status').json()
+
+    def get_alert_rule_changes(self, since):
+        return self._get('plugins/com.airbus_cyber_security.graylog.wizard/alerts/changes', {'since': since})
+
+    def get_alert_rules_paginated(self, **params):
+        return self._get('plugins/com.airbus_cyber_security.graylog.wizard/alerts/paginated', params)
 
     def update_logging_alert_plugin_configuration(self):
         configuration = {
@@ -242,7 +299,7 @@ class GraylogRestApi:
         response = self._get('plugins/com.airbus_cyber_security.graylog.wizard/config')
         return response.json()
 
-    def update_alert_wizard_plugin_configuration(self, default_time=1, backlog_size=500):
+    def update_alert_wizard_plugin_configuration(self, default_time=1, backlog_size=500, import_policy=None):
         configuration = {
             'default_values': {
                 'matching_type': '',
@@ -252,6 +309,8 @@ class GraylogRestApi:
             },
             'field_order': []
         }
+        if import_policy:
+            configuration['import_policy'] = import_policy
         self._put('plugins/com.airbus_cyber_security.graylog.wizard/config', configuration)
 
     def create_list(self, title, values):
@@ -263,6 +322,22 @@ class GraylogRestApi:
         }
         return self._post('plugins/com.airbus_cyber_security.graylog.wizard/lists', payload)
 
+    def get_list(self, title):
+        return self._get(f'plugins/com.airbus_cyber_security.graylog.wizard/lists/{title}').json()
+
+    def get_list_by_id(self, identifier):
+        return self._get(f'plugins/com.airbus_cyber_security.graylog.wizard/lists/id/{identifier}')
+
+    def update_list(self, title, values, version, usage=0):
+        payload = {
+            'description': '',
+            'lists': ';'.join(values),
+            'title': title,
+            'usage': usage,
+            'version': version
+        }
+        return self._put(f'plugins/com.airbus_cyber_security.graylog.wizard/lists/{title}', payload)
+
     def get_lists(self):
         return self._get('plugins/com.airbus_cyber_security.graylog.wizard/lists').json()
 
@@ -324,12 +399,57 @@ class GraylogRestApi:
         identifier = event_definition['id']
         self._put(f'events/definitions/{identifier}', event_definition)
 
+    def unschedule_event_definition(self, identifier):
+        return self._put(f'events/definitions/{identifier}/unschedule', None)
+
+    def schedule_event_definition(self, identifier):
+        return self._put(f'events/definitions/{identifier}/schedule', None)
+
+    def get_streams(self):
+        response = self._get('streams')
+        return response.json()['streams']
+
     def get_stream(self, identifier):
         return self._get(f'streams/{identifier}')
 
     def delete_stream(self, identifier):
         self._delete(f'streams/{identifier}')
 
+    def get_pipeline(self, title):
+        response = self._get('system/pipelines/pipeline')
+        for pipeline in response.json():
+            if pipeline['title'] == title:
+                return pipeline
+        return None
+
+    def create_pipeline(self, title, source):
+        response = self._post('system/pipelines/pipeline', {'title': title, 'description': '', 'source': source})
+        return response.json()
+
+    def delete_pipeline(self, identifier):
+        self._delete(f'system/pipelines/pipeline/{identifier}')
+
+    def create_pipeline_rule(self, title, source):
+        response = self._post('system/pipelines/rule', {'title': title, 'description': '', 'source': source})
+        return response.json()
+
+    def connect_pipelines_to_stream(self, stream_identifier, pipeline_identifiers):
+        self._post('system/pipelines/connections/to_stream', {'stream_id': stream_identifier, 'pipeline_ids': pipeline_identifiers})
+
+    def enable_pipeline_rule_metrics(self):
+        self._put('system/pipelines/system/metrics/config', {'metrics_enabled': True})
+
+    def get_metrics(self, namespace):
+        response = self._get(f'system/metrics/namespace/{namespace}')
+        return response.json()['metrics']
+
+    def search_messages(self, query, stream_identifier=None):
+        params = {'query': query, 'range': 300}
+        if stream_identifier:
+            params['filter'] = f'streams:{stream_identifier}'
+        response = self._get('search/universal/relative', params=params)
+        return [result['message'] for result in response.json()['messages']]
+
     def get_events(self):
         response = self._post('events/search', {})
         return response.json()
@@ -1,14 +1,16 @@
+import os
 import subprocess
 
 
 class GraylogServer:
 
-    def __init__(self, docker_compose_path):
+    def __init__(self, docker_compose_path, environment=None):
         self._docker_compose_path = docker_compose_path
+        self._environment = {**os.environ, **(environment or {})}
         self._log_offset = 0
 
     def start(self):
-        subprocess.run(['docker', 'compose', 'up', '--detach'], cwd=self._docker_compose_path)
+        subprocess.run(['docker', 'compose', 'up', '--detach'], cwd=self._docker_compose_path, env=self._environment)
 
     def extract_all_logs(self):
         return subprocess.check_output(['docker', 'compose', 'logs', '--no-color', 'graylog'], cwd=self._docker_compose_path, universal_newlines=True)
@@ -22,5 +24,5 @@ class GraylogServer:
         return logs[self._log_offset:]
 
     def stop(self):
-        subprocess.run(['docker', 'compose', 'down'], cwd=self._docker_compose_path)
+        subprocess.run(['docker', 'compose', 'down'], cwd=self._docker_compose_path, env=self._environment)
         subprocess.run(['docker', 'volume', 'prune', '--force'])
@@ -17,6 +17,8 @@ import time
 from graylog import Graylog
 
 _PERIOD = 1
+_DEFAULT_STREAM_IDENTIFIER = '000000000000000000000001'
+_RULE_METRICS_NAMESPACE = 'org.graylog.plugins.pipelineprocessor.ast.Rule'
 
 
 class TestBrittle(TestCase):
@@ -43,3 +45,41 @@ class TestBrittle(TestCase):
             print('After stop')
             self._print_disk_usage()
 
+        def _get_mean_evaluation_duration(self, api, rule_identifier):
+            for metric in api.get_metrics(f'{_RULE_METRICS_NAMESPACE}.{rule_identifier}'):
+                if metric['full_name'].endswith('trace.evaluate.duration'):
+                    return metric['metric']['time']['mean'], metric['metric']['rate']['total']
+            return None, 0
+
+        # timings depend on the machine: this compares the evaluation of the same list condition by wizard_in_list and
+        # by the lookup table of the list, on the same messages, in the same pipeline stage
+        def test_wizard_in_list_should_evaluate_faster_than_the_lookup_table_of_the_list(self):
+            api = self._graylog.access_rest_api()
+            api.enable_pipeline_rule_metrics()
+            list_title = 'measured_list'
+            self._graylog.create_list(list_title, [f'value_{i}' for i in range(1000)])
+            self._graylog.query_data_adapter(list_title, 'value_0')
+            lookup_rule = api.create_pipeline_rule('lookup_table_rule', 'rule "lookup_table_rule"\nwhen\n'
+                                                   f'  has_field("x") AND is_not_null(lookup_value("alert-wizard-list-lookup-table-{list_title}", $message.x))\n'
+                                                   'then\nend')
+            in_list_rule = api.create_pipeline_rule('wizard_in_list_rule', 'rule "wizard_in_list_rule"\nwhen\n'
+                                                    f'  has_field("x") AND wizard_in_list("{list_title}", $message.x)\n'
+                                                    'then\nend')
+            pipeline = api.create_pipeline('measure', 'pipeline "measure"\nstage 0 match either\n'
+                                           'rule "lookup_table_rule"\nrule "wizard_in_list_rule"\nend')
+            api.connect_pipelines_to_stream(_DEFAULT_STREAM_IDENTIFIER, [pipeline['id']])
+
+            messages_count = 5000
+            gelf_input_identifier = api.create_gelf_input()
+            with self._graylog.access_gelf_input(gelf_input_identifier) as inputs:
+                for i in range(messages_count):
+                    # one message out of two is in the list
+                    inputs.send({'_x': f'value_{i % 2000}'})
+            for i in range(120):
+                lookup_mean, lookup_count = self._get_mean_evaluation_duration(api, lookup_rule['id'])
+                in_list_mean, in_list_count = self._get_mean_evaluation_duration(api, in_list_rule['id'])
+                if lookup_count >= messages_count and in_list_count >= messages_count:
+                    break
+                time.sleep(1)
+            print(f'mean evaluation duration over {messages_count} messages: lookup table {lookup_mean}, wizard_in_list {in_list_mean}')
+            self.assertLess(in_list_mean, lookup_mean)
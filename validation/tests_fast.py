@@ -14,7 +14,9 @@
 #   python -m unittest test.Test.test_create_alert_rule_with_list_should_generate_event_when_message_field_is_in_list
 
 from unittest import TestCase
+from concurrent.futures import ThreadPoolExecutor
 import time
+from datetime import datetime, timedelta, timezone
 from graylog import Graylog
 
 _PERIOD = 1
@@ -60,6 +62,200 @@ class TestsFast(TestCase):
         response = self._graylog.get_alert_rules()
         self.assertEqual(200, response.status_code)
 
+    def test_get_alerts_paginated_should_return_only_the_requested_page(self):
+        self._api.create_alert_rule_count('rule_a', _PERIOD)
+        self._api.create_alert_rule_count('rule_b', _PERIOD)
+        self._api.create_alert_rule_count('rule_c', _PERIOD)
+        response = self._api.get_alert_rules_paginated(page=2, per_page=2, sort='title', order='asc').json()
+        self.assertEqual(3, response['total'])
+        self.assertEqual(['rule_c'], [rule['title'] for rule in response['alerts']])
+
+    def test_get_alerts_paginated_should_filter_on_the_beginning_of_the_title(self):
+        self._api.create_alert_rule_count('matching_rule', _PERIOD)
+        self._api.create_alert_rule_count('other_matching_rule', _PERIOD)
+        response = self._api.get_alert_rules_paginated(query='matching').json()
+        self.assertEqual(['matching_rule'], [rule['title'] for rule in response['alerts']])
+
+    def test_get_alerts_should_return_not_modified_when_entity_tag_matches(self):
+        self._api.create_alert_rule_count('rule', _PERIOD)
+        entity_tag = self._api.get_alert_rules().headers['ETag']
+        response = self._api.get_alert_rules(entity_tag)
+        self.assertEqual(304, response.status_code)
+
+    def test_get_alerts_should_change_entity_tag_when_a_rule_is_added(self):
+        self._api.create_alert_rule_count('rule', _PERIOD)
+        entity_tag = self._api.get_alert_rules().headers['ETag']
+        self._api.create_alert_rule_count('other', _PERIOD)
+        response = self._api.get_alert_rules(entity_tag)
+        self.assertEqual(200, response.status_code)
+
+    def test_get_alerts_should_change_entity_tag_when_a_rule_is_disabled(self):
+        self._api.create_alert_rule_count('rule', _PERIOD)
+        entity_tag = self._api.get_alert_rules().headers['ETag']
+        self._api.update_alert_rules_state(['rule'], True)
+        response = self._api.get_alert_rules(entity_tag)
+        self.assertEqual(200, response.status_code)
+
+    def test_get_alerts_should_vary_entity_tag_with_the_requested_fields(self):
+        self._api.create_alert_rule_count('rule', _PERIOD)
+        entity_tag = self._api.get_alert_rules().headers['ETag']
+        response = self._api.get_alert_rules(entity_tag, fields='disabled')
+        self.assertEqual(200, response.status_code)
+
+    def test_get_alert_rule_should_change_entity_tag_when_its_event_definition_is_disabled(self):
+        rule = self._api.create_alert_rule_count('rule', _PERIOD)
+        entity_tag = self._api.get_alert_rule_response('rule').headers['ETag']
+        self._api.unschedule_event_definition(rule['condition'])
+        response = self._api.get_alert_rule_response('rule', entity_tag)
+        self.assertEqual(200, response.status_code)
+
+    def test_get_alerts_should_eventually_change_entity_tag_when_the_priority_of_an_event_definition_changes(self):
+        rule = self._api.create_alert_rule_count('rule', _PERIOD)
+        entity_tag = self._api.get_alert_rules().headers['ETag']
+        event_definition = self._api.get_event_definition(rule['condition'])
+        event_definition['priority'] = 3
+        self._api.update_event_definition(event_definition)
+        status_code = None
+        for _ in range(30):
+            status_code = self._api.get_alert_rules(entity_tag).status_code
+            if status_code == 200:
+                break
+            time.sleep(1)
+        self.assertEqual(200, status_code)
+
+    def test_get_alerts_should_eventually_return_rules_disabled_through_their_event_definition(self):
+        rule = self._api.create_alert_rule_count('rule', _PERIOD)
+        self._api.unschedule_event_definition(rule['condition'])
+        disabled = None
+        for _ in range(30):
+            disabled = self._api.get_alert_rules().json()[0]['disabled']
+            if disabled:
+                break
+            time.sleep(1)
+        self.assertTrue(disabled)
+
+    def test_get_alert_rule_should_eventually_return_the_rule_disabled_through_its_event_definition(self):
+        rule = self._api.create_alert_rule_count('rule', _PERIOD)
+        self._api.get_alert_rule('rule')
+        self._api.unschedule_event_definition(rule['condition'])
+        disabled = None
+        for _ in range(30):
+            disabled = self._api.get_alert_rule('rule')['disabled']
+            if disabled:
+                break
+            time.sleep(1)
+        self.assertTrue(disabled)
+
+    def test_get_alerts_should_return_only_requested_fields(self):
+        self._api.create_alert_rule_count('rule', _PERIOD)
+        alert_rules = self._api.get_alert_rules(fields='disabled,priority').json()
+        self.assertEqual({'title', 'disabled', 'priority'}, set(alert_rules[0].keys()))
+
+    def test_get_alert_rule_changes_should_return_modified_and_deleted_rules(self):
+        self._api.create_alert_rule_count('deleted_rule', _PERIOD)
+        yesterday = (datetime.now(timezone.utc) - timedelta(days=1)).isoformat()
+        since = self._api.get_alert_rule_changes(yesterday).json()['until']
+        self._api.delete_alert_rule('deleted_rule')
+        self._api.create_alert_rule_count('created_rule', _PERIOD)
+        changes = self._api.get_alert_rule_changes(since).json()
+        self.assertEqual(['created_rule'], [rule['title'] for rule in changes['alerts']])
+        # rules deleted by the previous tests fall into the overlap window
+        self.assertIn('deleted_rule', [deletion['title'] for deletion in changes['deleted']])
+
+    def test_get_alert_rule_changes_should_return_again_the_rules_modified_shortly_before_since(self):
+        self._api.create_alert_rule_count('rule', _PERIOD)
+        yesterday = (datetime.now(timezone.utc) - timedelta(days=1)).isoformat()
+        since = self._api.get_alert_rule_changes(yesterday).json()['until']
+        changes = self._api.get_alert_rule_changes(since).json()
+        self.assertEqual(['rule'], [rule['title'] for rule in changes['alerts']])
+
+    def test_get_alert_rules_status_should_return_disabled_rules(self):
+        self._api.create_alert_rule_count('enabled_rule', _PERIOD)
+        self._api.create_alert_rule_count('disabled_rule', _PERIOD, disabled=True)
+        status = self._api.get_alert_rules_status()
+        self.assertEqual({'enabled_rule': False, 'disabled_rule': True}, status['disabled'])
+
+    def test_create_alert_rules_bulk_should_return_one_result_per_rule(self):
+        self._api.create_alert_rule_count('existing_rule', _PERIOD)
+        response = self._api.create_alert_rules_count_bulk(['rule_a', 'existing_rule', 'rule_b'], _PERIOD).json()
+        self.assertEqual(['rule_a', None, 'rule_b'], [result['created_title'] for result in response['results']])
+
+    def test_create_alert_rules_bulk_should_delete_the_entities_of_the_failed_rules(self):
+        # a THEN rule without second stream can not be provisioned
+        response = self._api.create_alert_rules_bulk_with_one_then_rule(['rule_a'], 'rule_without_second_stream', _PERIOD).json()
+        self.assertEqual(['rule_a', None], [result['created_title'] for result in response['results']])
+        self.assertNotIn('rule_without_second_stream', [stream['title'] for stream in self._api.get_streams()])
+
+    def test_create_alert_rules_bulk_should_create_all_rules_when_two_bulks_run_concurrently(self):
+        batches = [[f'rule_{batch}_{i}' for i in range(10)] for batch in ['a', 'b']]
+        with ThreadPoolExecutor(max_workers=2) as executor:
+            responses = list(executor.map(lambda titles: self._api.create_alert_rules_count_bulk(titles, _PERIOD).json(), batches))
+        for titles, response in zip(batches, responses):
+            self.assertEqual(titles, [result['created_title'] for result in response['results']])
+
+    def test_create_alert_rule_with_rename_policy_should_give_distinct_titles_when_run_concurrently(self):
+        self._api.update_alert_wizard_plugin_configuration(import_policy='RENAME')
+        try:
+            self._api.create_alert_rule_count('renamed_rule', _PERIOD)
+            with ThreadPoolExecutor(max_workers=4) as executor:
+                rules = list(executor.map(lambda _: self._api.create_alert_rule_count('renamed_rule', _PERIOD), range(4)))
+            titles = [rule['title'] for rule in rules]
+            self.assertEqual(4, len(set(titles)))
+            self.assertNotIn('renamed_rule', titles)
+        finally:
+            self._api.update_alert_wizard_plugin_configuration()
+
+    def test_update_alert_rules_state_should_disable_the_rules(self):
+        self._api.create_alert_rule_count('rule_to_silence', _PERIOD)
+        response = self._api.update_alert_rules_state(['rule_to_silence', 'missing_rule'], True).json()
+        self.assertEqual(['missing_rule'], response['not_found'])
+        self.assertTrue(self._api.get_alert_rules_status()['disabled']['rule_to_silence'])
+
+    def test_delete_alert_rules_should_delete_the_rules(self):
+        self._api.create_alert_rule_count('rule_to_delete1', _PERIOD)
+        self._api.create_alert_rule_count('rule_to_delete2', _PERIOD)
+        response = self._api.delete_alert_rules(['rule_to_delete1', 'rule_to_delete2', 'missing_rule']).json()
+        self.assertEqual(['missing_rule'], response['not_found'])
+        self.assertEqual(['rule_to_delete1', 'rule_to_delete2'], sorted(response['deleted']))
+        self.assertEqual({}, self._api.get_alert_rules_status()['disabled'])
+
+    def test_get_alert_rule_by_id_should_return_the_rule(self):
+        self._api.create_alert_rule_count('rule_with_identifier', _PERIOD)
+        identifier = self._api.get_alert_rule('rule_with_identifier')['id']
+        rule = self._api.get_alert_rule_by_id(identifier).json()
+        self.assertEqual('rule_with_identifier', rule['title'])
+
+    def test_get_alert_rule_should_return_the_identifier_of_the_stored_rule(self):
+        self._api.create_alert_rule_count('rule_with_identifier', _PERIOD)
+        identifier = self._api.get_alert_rule('rule_with_identifier')['id']
+        self.assertIsNotNone(identifier)
+        self.assertEqual(identifier, self._api.get_alert_rule_by_id(identifier).json()['id'])
+
+    def test_get_list_should_return_the_identifier_of_the_stored_list(self):
+        self._api.create_list('list_with_identifier', ['a'])
+        identifier = self._api.get_list('list_with_identifier')['lists']['id']
+        self.assertIsNotNone(identifier)
+        self.assertEqual(identifier, self._api.get_list_by_id(identifier).json()['lists']['id'])
+
+    def test_delete_alert_rule_by_id_should_delete_the_rule(self):
+        self._api.create_alert_rule_count('rule_with_identifier', _PERIOD)
+        identifier = self._api.get_alert_rule('rule_with_identifier')['id']
+        self._api.delete_alert_rule_by_id(identifier)
+        self.assertEqual(404, self._api.get_alert_rule_by_id(identifier).status_code)
+
+    def test_create_alert_rule_async_should_eventually_create_the_rule(self):
+        response = self._api.create_alert_rule_count_async('async_rule', _PERIOD)
+        self.assertEqual(202, response.status_code)
+        job_identifier = response.json()['id']
+        state = None
+        for _ in range(30):
+            state = self._api.get_alert_rule_job(job_identifier).json()['state']
+            if state in ('SUCCEEDED', 'FAILED'):
+                break
+            time.sleep(1)
+        self.assertEqual('SUCCEEDED', state)
+        self.assertEqual('async_rule', self._api.get_alert_rule('async_rule')['title'])
+
     def test_create_alert_rule_should_not_fail(self):
         stream = {
             'field_rule': [{
@@ -103,6 +299,81 @@ class TestsFast(TestCase):
         default_stream = self._api.get_stream('000000000000000000000001')
         self.assertEqual(200, default_stream.status_code)
 
+    def test_update_alert_rule_should_succeed_without_version(self):
+        title = 'rule_title'
+        rule = self._api.create_alert_rule_count(title, _PERIOD)
+        self._api.update_alert_rule(title, {**rule, 'description': 'first'})
+        del rule['version']
+        response = self._api.update_alert_rule(title, {**rule, 'description': 'second'})
+        self.assertEqual(202, response.status_code)
+        self.assertEqual('second', self._api.get_alert_rule(title)['description'])
+
+    def test_update_alert_rule_should_fail_when_the_rule_was_modified_since_its_version(self):
+        title = 'rule_title'
+        rule = self._api.create_alert_rule_count(title, _PERIOD)
+        self._graylog.update_alert_rule(title, {**rule, 'description': 'first'})
+        response = self._graylog.update_alert_rule(title, {**rule, 'description': 'second'})
+        self.assertEqual(409, response.status_code)
+        self.assertEqual('first', self._api.get_alert_rule(title)['description'])
+
+    def test_update_alert_rule_should_recreate_its_conditions_when_its_output_stream_was_deleted(self):
+        self._api.create_list('list', ['a'])
+        stream = {
+            'field_rule': [{
+                'field': 'x',
+                'type': 7,
+                'value': 'list'
+            }],
+            'matching_type': 'AND'
+        }
+        rule = self._api.create_alert_rule_count('rule_title', _PERIOD, stream=stream)
+        self._api.delete_stream(rule['stream']['id'])
+        response = self._graylog.update_alert_rule('rule_title', {**rule, 'description': 'new description'})
+        self.assertEqual(202, response.status_code)
+        updated_rule = self._api.get_alert_rule('rule_title')
+        self.assertEqual(200, self._api.get_stream(updated_rule['stream']['id']).status_code)
+        self.assertEqual(1, self._api.get_list('list')['lists']['usage'])
+
+    def test_update_alert_rule_or_should_keep_the_entities_of_its_second_stream_when_their_shape_changes(self):
+        self._api.create_list('list', ['a'])
+        rule = self._api.create_alert_rule_or('rule_title', _PERIOD, '')
+        second_stream = {
+            'field_rule': [{
+                'field': 'x',
+                'type': 7,
+                'value': 'list'
+            }],
+            'matching_type': 'AND'
+        }
+        response = self._graylog.update_alert_rule('rule_title', {**rule, 'second_stream': second_stream})
+        self.assertEqual(202, response.status_code)
+        updated_rule = self._api.get_alert_rule('rule_title')
+        self.assertEqual(200, self._api.get_stream(updated_rule['second_stream']['id']).status_code)
+        self.assertEqual(1, self._api.get_list('list')['lists']['usage'])
+
+    def test_update_list_should_succeed_without_version(self):
+        self._api.create_list('unversioned_list', ['a'])
+        response = self._api.update_list('unversioned_list', ['b'], None)
+        self.assertEqual(202, response.status_code)
+        self.assertEqual('b', self._api.get_list('unversioned_list')['lists']['lists'])
+
+    def test_update_list_should_fail_when_the_list_was_modified_since_its_version(self):
+        self._api.create_list('versioned_list', ['a'])
+        version = self._api.get_list('versioned_list')['lists']['version']
+        self._api.update_list('versioned_list', ['b'], version)
+        response = self._api.update_list('versioned_list', ['c'], version)
+        self.assertEqual(409, response.status_code)
+
+    def test_update_list_should_keep_its_usage(self):
+        self._api.create_list('used_list', ['a'])
+        self._api.create_alert_rule_count('rule_with_list', _PERIOD, stream={
+            'field_rule': [{'field': 'source', 'type': 7, 'value': 'used_list'}],
+            'matching_type': 'AND'
+        })
+        version = self._api.get_list('used_list')['lists']['version']
+        self._api.update_list('used_list', ['b'], version, usage=0)
+        self.assertEqual(1, self._api.get_list('used_list')['lists']['usage'])
+
     def test_update_alert_rule_with_no_conditions_should_not_fail(self):
         title = 'rule_title'
         rule = self._api.create_alert_rule_count(title, _PERIOD)
@@ -556,3 +827,110 @@ class TestsFast(TestCase):
 
         response = self._api.get_stream(create_response['stream']['id'])
         self.assertEqual(True, response.json()['disabled'])
+
+
+class TestsConsolidatedPipeline(TestCase):
+    """
+    Same server as TestsFast, but with the list rules of the default stream gathered in the pipeline alert-wizard
+    """
+
+    @classmethod
+    def setUpClass(cls) -> None:
+        cls._graylog = Graylog(consolidated_pipeline=True)
+        cls._graylog.start()
+
+    @classmethod
+    def tearDownClass(cls) -> None:
+        cls._graylog.stop()
+
+    def setUp(self):
+        self._api = self._graylog.access_rest_api()
+        self._gelf_input_identifier = self._api.create_gelf_input()
+
+    def tearDown(self):
+        rules = self._api.get_alert_rules().json()
+        for rule in rules:
+            self._api.delete_alert_rule(rule['title'])
+        lists = self._api.get_lists()
+        for list in lists['lists']:
+            self._api.delete_list(list['title'])
+            self._graylog.wait_until_data_adapter_unavailable(list['title'])
+
+        self._api.delete_gelf_input(self._gelf_input_identifier)
+
+    def _create_list_rule(self, title, list_title, field_rule_type):
+        stream = {
+            'field_rule': [{
+                'field': 'x',
+                'type': field_rule_type,
+                'value': list_title
+            }],
+            'matching_type': 'AND'
+        }
+        return self._api.create_alert_rule_count(title, _PERIOD, stream=stream)
+
+    def test_consolidated_pipeline_should_set_then_test_then_remove_the_flags_in_stages_which_always_pass(self):
+        self._api.create_list('list', ['a'])
+        self._create_list_rule('in_list_rule', 'list', 7)
+        self._create_list_rule('not_in_list_rule', 'list', -7)
+
+        source = self._api.get_pipeline('alert-wizard')['source']
+        self.assertIn('stage 0 match pass', source)
+        self.assertIn('stage 1 match pass', source)
+        self.assertIn('stage 2 match pass', source)
+        self.assertNotIn('match either', source)
+        # both rules test the same field and list, so they share a single flag
+        self.assertEqual(1, source.count('rule "wizard flag '))
+        self.assertIn('rule "wizard flags cleanup"', source)
+
+    def test_consolidated_pipeline_should_drop_the_flags_once_no_rule_tests_them(self):
+        self._api.create_list('list', ['a'])
+        self._create_list_rule('in_list_rule', 'list', 7)
+        self._create_list_rule('other_rule', 'list', 7)
+        self._api.delete_alert_rule('in_list_rule')
+        self.assertIn('rule "wizard flags cleanup"', self._api.get_pipeline('alert-wizard')['source'])
+
+        self._api.delete_alert_rule('other_rule')
+        self.assertIsNone(self._api.get_pipeline('alert-wizard'))
+
+    def test_consolidated_pipeline_should_route_message_when_its_field_is_in_the_list(self):
+        self._api.create_list('list', ['a'])
+        rule = self._create_list_rule('in_list_rule', 'list', 7)
+        with self._graylog.access_gelf_input(self._gelf_input_identifier) as inputs:
+            inputs.send({'short_message': 'not_in_list_message', '_x': 'b'})
+            inputs.send({'short_message': 'in_list_message', '_x': 'a'})
+            messages = self._graylog.wait_until_messages('short_message:in_list_message', 1, rule['stream']['id'])
+        self.assertEqual('a', messages[0]['x'])
+        self.assertEqual([], self._api.search_messages('short_message:not_in_list_message', rule['stream']['id']))
+
+    def test_consolidated_pipeline_should_route_message_with_not_in_list_only_when_its_field_is_present_and_not_in_the_list(self):
+        self._api.create_list('list', ['a'])
+        rule = self._create_list_rule('not_in_list_rule', 'list', -7)
+        with self._graylog.access_gelf_input(self._gelf_input_identifier) as inputs:
+            inputs.send({'short_message': 'included_value_message', '_x': 'a'})
+            inputs.send({'short_message': 'missing_field_message'})
+            inputs.send({'short_message': 'excluded_value_message', '_x': 'b'})
+            self._graylog.wait_until_messages('short_message:excluded_value_message', 1, rule['stream']['id'])
+            # all three messages are indexed by now
+            self._graylog.wait_until_messages('short_message:(included_value_message OR missing_field_message OR excluded_value_message)', 3)
+        self.assertEqual([], self._api.search_messages('short_message:included_value_message', rule['stream']['id']))
+        self.assertEqual([], self._api.search_messages('short_message:missing_field_message', rule['stream']['id']))
+
+    def test_consolidated_pipeline_should_remove_the_flags_before_the_message_is_indexed(self):
+        self._api.create_list('list', ['a'])
+        self._create_list_rule('in_list_rule', 'list', 7)
+        with self._graylog.access_gelf_input(self._gelf_input_identifier) as inputs:
+            inputs.send({'short_message': 'flagged_message', '_x': 'a'})
+            messages = self._graylog.wait_until_messages('short_message:flagged_message', 1)
+        for field in messages[0]:
+            self.assertFalse(field.startswith('alert_wizard_flag_'))
+
+    def test_consolidated_pipeline_should_not_modify_a_user_pipeline_with_the_same_title(self):
+        source = 'pipeline "alert-wizard"\nstage 0 match either\nend'
+        pipeline = self._api.create_pipeline('alert-wizard', source)
+        try:
+            self._api.create_list('list', ['a'])
+            self._create_list_rule('in_list_rule', 'list', 7)
+            self.assertEqual(source, self._api.get_pipeline('alert-wizard')['source'])
+        finally:
+            self._api.delete_pipeline(pipeline['id'])